@@ -0,0 +1,47 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.Betweenness;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.NodeSimilarity;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PageRank;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.RecommendationIndex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full recomputations of the cached analytics, as run by the analytics slots on a new trust graph. Betweenness
+ * is sampled, exact betweenness on the larger graphs takes far too long for a benchmark run.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    @Benchmark
+    public double[] pageRank(TrustGraphState state) {
+        return PageRank.compute(state.graph, 0.85, 20, 0.0000001, state.pool);
+    }
+
+    @Benchmark
+    public double[] betweennessSampled(TrustGraphState state) {
+        return Betweenness.compute(state.graph, state.pool, 64, 42);
+    }
+
+    @Benchmark
+    public NodeSimilarity.Result nodeSimilarity(TrustGraphState state) {
+        return NodeSimilarity.compute(state.graph, 10, state.pool);
+    }
+
+    @Benchmark
+    public RecommendationIndex recommendationIndex(TrustGraphState state) {
+        return RecommendationIndex.build(state.graph, 100, state.pool);
+    }
+}
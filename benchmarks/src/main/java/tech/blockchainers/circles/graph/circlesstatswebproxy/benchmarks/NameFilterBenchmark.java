@@ -0,0 +1,120 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.generator.ScaleFreeTrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.NodeSimilarity;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PageRank;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoreTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoredRows;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.SimilarityTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.UserDictionary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code ?name=} lookups of the analytics endpoints: selecting the rows of a user from the cached tables
+ * and writing them the way {@code UserController} streams them, plus the rank lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameFilterBenchmark {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @State(Scope.Benchmark)
+    public static class Tables {
+
+        public ScoreTable pageRank;
+        public SimilarityTable similarity;
+        public String[] names;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(TrustGraphState state) {
+            UserDictionary dictionary = new UserDictionary();
+            pageRank = ScoreTable.fromGraph(state.graph, PageRank.compute(state.graph, 0.85, 20, 0.0000001, state.pool), dictionary);
+            similarity = SimilarityTable.fromGraph(state.graph, NodeSimilarity.compute(state.graph, 10, state.pool), dictionary);
+            names = new String[TrustGraphState.PAIRS];
+            for (int i = 0; i < names.length; i++) {
+                int user = state.senders[i];
+                names[i] = ScaleFreeTrustGraph.nameOf(user % 10 == 9 ? user - 1 : user);
+            }
+        }
+
+        String nextName() {
+            String name = names[next];
+            next = (next + 1) % names.length;
+            return name;
+        }
+    }
+
+    @Benchmark
+    public long pageRankByName(Tables tables) throws IOException {
+        return write(tables.pageRank.byName(tables.nextName()));
+    }
+
+    @Benchmark
+    public long similarityByName(Tables tables) throws IOException {
+        return write(tables.similarity.byName(tables.nextName()));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> pageRankRankByName(Tables tables) {
+        return tables.pageRank.rankByName(tables.nextName());
+    }
+
+    @Benchmark
+    public long pageRankFirstPage(Tables tables) throws IOException {
+        return write(tables.pageRank.all(), 100);
+    }
+
+    private static long write(ScoredRows rows) throws IOException {
+        return write(rows, rows.size());
+    }
+
+    private static long write(ScoredRows rows, int limit) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            generator.writeStartArray();
+            for (int row = 0, end = Math.min(limit, rows.size()); row < end; row++) {
+                rows.write(row, generator);
+            }
+            generator.writeEndArray();
+        }
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.MaxFlow;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PathEnumerator;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PathFinder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request path searches on the in-memory trust graph, with the limits of the default configuration
+ * ({@code circles.path.*}, {@code circles.flow.*}, {@code circles.allpaths.timeout-ms}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathBenchmark {
+
+    private static final int MAX_DEPTH = 10;
+    private static final int MAX_VISITED = 250_000;
+    private static final int MAX_HOPS = 6;
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    @Benchmark
+    public int[] shortestPath(TrustGraphState state) {
+        int pair = state.nextPair();
+        return PathFinder.shortestPath(state.graph, state.senders[pair], state.receivers[pair], MAX_DEPTH, MAX_VISITED);
+    }
+
+    @Benchmark
+    public int[][] shortestPathsBatch(TrustGraphState state) {
+        int pair = state.nextPair();
+        int[] receivers = Arrays.copyOfRange(state.receivers, pair & ~63, (pair & ~63) + 64);
+        return PathFinder.shortestPaths(state.graph, state.senders[pair], receivers, MAX_DEPTH, MAX_VISITED);
+    }
+
+    @Benchmark
+    public int allPaths(TrustGraphState state) {
+        int pair = state.nextPair();
+        return PathEnumerator.enumerate(state.graph, state.senders[pair], state.receivers[pair], 4, 1000,
+                System.nanoTime() + TIMEOUT_NANOS, (path, length) -> true);
+    }
+
+    @Benchmark
+    public MaxFlow.Result maxFlow(TrustGraphState state) {
+        int pair = state.nextPair();
+        return MaxFlow.compute(state.graph, state.senders[pair], state.receivers[pair], MAX_HOPS, Double.MAX_VALUE,
+                System.nanoTime() + TIMEOUT_NANOS);
+    }
+}
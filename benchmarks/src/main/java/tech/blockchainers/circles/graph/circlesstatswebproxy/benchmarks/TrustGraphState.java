@@ -0,0 +1,76 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.generator.ScaleFreeTrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A synthetic scale-free trust graph per {@code nodes} parameter, with a fixed set of sender/receiver pairs
+ * and the pool the parallel algorithms run on (sized like {@code circles.analytics.parallelism=0}).
+ */
+@State(Scope.Benchmark)
+public class TrustGraphState {
+
+    public static final int PAIRS = 1024;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int nodes;
+
+    @Param("4")
+    public int trustsPerUser;
+
+    public TrustGraph graph;
+    public ForkJoinPool pool;
+    public int[] senders;
+    public int[] receivers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = generate(nodes, trustsPerUser, ScaleFreeTrustGraph.DEFAULT_SEED);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        SplittableRandom random = new SplittableRandom(ScaleFreeTrustGraph.DEFAULT_SEED);
+        senders = new int[PAIRS];
+        receivers = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            senders[i] = random.nextInt(nodes);
+            do {
+                receivers[i] = random.nextInt(nodes);
+            } while (receivers[i] == senders[i]);
+        }
+    }
+
+    /**
+     * The {@link ScaleFreeTrustGraph} with {@code users} users as in-memory trust graph.
+     */
+    public static TrustGraph generate(int users, int trustsPerUser, long seed) {
+        TrustGraph.Builder builder = TrustGraph.builder(users, ScaleFreeTrustGraph.maxTrusts(users, trustsPerUser));
+        for (int user = 0; user < users; user++) {
+            builder.addNode(user, ScaleFreeTrustGraph.addressOf(user), ScaleFreeTrustGraph.nameOf(user), null);
+        }
+        ScaleFreeTrustGraph.generate(users, trustsPerUser, seed, builder::addEdge);
+        return builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Index of the next pair, cycling through all of them so a single lucky pair does not dominate.
+     */
+    public int nextPair() {
+        int pair = next;
+        next = (next + 1) % PAIRS;
+        return pair;
+    }
+}
@@ -0,0 +1,112 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalPath;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.internal.value.ListValue;
+import org.neo4j.driver.internal.value.NodeValue;
+import org.neo4j.driver.types.Entity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.generator.ScaleFreeTrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.FlatUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of Neo4j driver results to the response model: the paths of {@code createUserPathList} and the
+ * trusters/trustees records of {@code readTrustersForUser}/{@code readTrusteesForUser}. The records are built
+ * from driver values as the driver decodes them, so only the mapping itself is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    // a path of pathLength users, only the path benchmarks run per pathLength
+    @State(Scope.Benchmark)
+    public static class PathState {
+
+        @Param({ "3", "6", "10" })
+        public int pathLength;
+
+        private InternalPath path;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Entity[] entities = new Entity[2 * pathLength - 1];
+            for (int i = 0; i < pathLength; i++) {
+                entities[2 * i] = user(i);
+                if (i > 0) {
+                    entities[2 * i - 1] = new InternalRelationship(i, i - 1, i, "TRUSTS");
+                }
+            }
+            path = new InternalPath(entities);
+        }
+    }
+
+    // a trustee with its trusters, only the flatUser benchmark runs per number of trusters
+    @State(Scope.Benchmark)
+    public static class TrustersState {
+
+        @Param({ "10", "100", "1000" })
+        public int trusters;
+
+        private Record record;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Value[] related = new Value[trusters];
+            for (int i = 0; i < trusters; i++) {
+                related[i] = new NodeValue(user(i + 1));
+            }
+            record = new InternalRecord(List.of("trustee", "trusters"),
+                    new Value[] { new NodeValue(user(0)), new ListValue(related) });
+        }
+    }
+
+    private static InternalNode user(int id) {
+        return new InternalNode(id, List.of("User"), Map.of(
+                "address", Values.value(ScaleFreeTrustGraph.addressOf(id)),
+                "name", Values.value("user" + id),
+                "image_url", Values.value("https://example.org/" + id + ".png")));
+    }
+
+    @Benchmark
+    public List<Map<String, String>> userPath(PathState state) {
+        return UserService.toUserPath(state.path);
+    }
+
+    @Benchmark
+    public List<List<Map<String, String>>> userPaths100(PathState state) {
+        List<List<Map<String, String>>> paths = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            paths.add(UserService.toUserPath(state.path));
+        }
+        return paths;
+    }
+
+    @Benchmark
+    public FlatUser flatUser(TrustersState state) {
+        return UserService.toFlatUser(state.record, "trustee", "trusters");
+    }
+}
@@ -0,0 +1,96 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.generator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic Barabási–Albert generator for synthetic trust graphs. Every new user trusts
+ * {@code trustsPerUser} distinct existing users picked by preferential attachment (proportional to their
+ * degree), half of these trusts are returned. Like the Circles data a few trusts have amount 0 and every
+ * tenth user has no name. The same seed always yields the same graph, the benchmarks build a
+ * {@code TrustGraph} from it and the load test writes it to Neo4j.
+ */
+public final class ScaleFreeTrustGraph {
+
+    public static final long DEFAULT_SEED = 20_220_601L;
+
+    /**
+     * Receives the trusts in generation order.
+     */
+    @FunctionalInterface
+    public interface Trusts {
+        void trust(int truster, int trustee, long amount);
+    }
+
+    private ScaleFreeTrustGraph() {}
+
+    /**
+     * Upper bound of the number of trusts {@link #generate} emits.
+     */
+    public static int maxTrusts(int users, int trustsPerUser) {
+        int seedUsers = trustsPerUser + 1;
+        return seedUsers * trustsPerUser + (users - seedUsers) * trustsPerUser * 2;
+    }
+
+    /**
+     * Emits the trusts between users {@code 0 .. users - 1}, see {@link #addressOf} and {@link #nameOf} for the
+     * users themselves.
+     */
+    public static void generate(int users, int trustsPerUser, long seed, Trusts trusts) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int seedUsers = trustsPerUser + 1;
+        // every edge contributes both of its ends, a uniform pick from here is a pick proportional to degree
+        int[] ends = new int[2 * maxTrusts(users, trustsPerUser)];
+        int endCount = 0;
+        for (int truster = 0; truster < seedUsers; truster++) {
+            for (int trustee = 0; trustee < seedUsers; trustee++) {
+                if (truster != trustee) {
+                    trusts.trust(truster, trustee, amount(random));
+                    ends[endCount++] = truster;
+                    ends[endCount++] = trustee;
+                }
+            }
+        }
+        int[] picked = new int[trustsPerUser];
+        for (int truster = seedUsers; truster < users; truster++) {
+            int endsBefore = endCount;
+            for (int k = 0; k < trustsPerUser; k++) {
+                int trustee;
+                do {
+                    trustee = ends[random.nextInt(endsBefore)];
+                } while (contains(picked, k, trustee));
+                picked[k] = trustee;
+                trusts.trust(truster, trustee, amount(random));
+                ends[endCount++] = truster;
+                ends[endCount++] = trustee;
+                if (random.nextBoolean()) {
+                    trusts.trust(trustee, truster, amount(random));
+                    ends[endCount++] = trustee;
+                    ends[endCount++] = truster;
+                }
+            }
+        }
+    }
+
+    public static String addressOf(int user) {
+        return String.format("0x%040x", user);
+    }
+
+    public static String nameOf(int user) {
+        return user % 10 == 9 ? null : "user" + user;
+    }
+
+    // trust limit in percent, stored as an integer like in the Circles data
+    private static long amount(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        return roll < 5 ? 0 : (roll < 80 ? 100 : 50);
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,65 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests to one endpoint. Latencies are measured from the time a request was
+ * scheduled, not sent, so a stalled proxy shows up in the percentiles instead of lowering the request rate.
+ */
+public final class EndpointStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final String endpoint;
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public void success(long latencyNanos) {
+        latencies.recordValue(Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public void dropped() {
+        dropped.increment();
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+
+    public long completed() {
+        return latencies.getTotalCount();
+    }
+
+    public Map<String, Object> toMap(double durationSeconds) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("endpoint", endpoint);
+        map.put("completed", completed());
+        map.put("errors", errors.sum());
+        map.put("dropped", dropped.sum());
+        map.put("throughput", completed() / durationSeconds);
+        map.put("p50Ms", percentileMs(50));
+        map.put("p99Ms", percentileMs(99));
+        map.put("p999Ms", percentileMs(99.9));
+        map.put("maxMs", latencies.getMaxValue() / 1000.0);
+        return map;
+    }
+
+    private double percentileMs(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
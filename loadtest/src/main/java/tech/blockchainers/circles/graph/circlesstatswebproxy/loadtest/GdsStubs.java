@@ -0,0 +1,133 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.loadtest;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.UserFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Stand-ins for the Graph Data Science procedures the proxy calls, so the {@code gds} engines and projections
+ * can run against the embedded Neo4j. They have the GDS signatures but only compute cheap degree based
+ * values: the load test measures the proxy and the database round trips, not the algorithms.
+ */
+public class GdsStubs {
+
+    @Context
+    public Transaction tx;
+
+    // procedure results are mapped from public fields, records do not qualify
+
+    public static class ProjectResult {
+        public final String graphName;
+        public final long nodeCount;
+        public final long relationshipCount;
+
+        ProjectResult(String graphName, long nodeCount, long relationshipCount) {
+            this.graphName = graphName;
+            this.nodeCount = nodeCount;
+            this.relationshipCount = relationshipCount;
+        }
+    }
+
+    public static class GraphNameResult {
+        public final String graphName;
+
+        GraphNameResult(String graphName) {
+            this.graphName = graphName;
+        }
+    }
+
+    public static class ScoreResult {
+        public final long nodeId;
+        public final double score;
+
+        ScoreResult(long nodeId, double score) {
+            this.nodeId = nodeId;
+            this.score = score;
+        }
+    }
+
+    public static class SimilarityResult {
+        public final long node1;
+        public final long node2;
+        public final double similarity;
+
+        SimilarityResult(long node1, long node2, double similarity) {
+            this.node1 = node1;
+            this.node2 = node2;
+            this.similarity = similarity;
+        }
+    }
+
+    @Procedure(name = "gds.graph.project", mode = Mode.READ)
+    @Description("Stub: counts the nodes and relationships instead of projecting them")
+    public Stream<ProjectResult> project(@Name("graphName") String graphName, @Name("nodeProjection") Object nodes,
+                                         @Name("relationshipProjection") Object relationships,
+                                         @Name(value = "configuration", defaultValue = "{}") Map<String, Object> configuration) {
+        return Stream.of(new ProjectResult(graphName, tx.getAllNodes().stream().count(), tx.getAllRelationships().stream().count()));
+    }
+
+    @Procedure(name = "gds.graph.drop", mode = Mode.READ)
+    @Description("Stub: there is nothing to drop")
+    public Stream<GraphNameResult> drop(@Name("graphName") String graphName,
+                                        @Name(value = "failIfMissing", defaultValue = "true") boolean failIfMissing) {
+        return Stream.of(new GraphNameResult(graphName));
+    }
+
+    @Procedure(name = "gds.graph.list", mode = Mode.READ)
+    @Description("Stub: no projection outlives the embedded database")
+    public Stream<GraphNameResult> list() {
+        return Stream.empty();
+    }
+
+    @Procedure(name = "gds.pageRank.stream", mode = Mode.READ)
+    @Description("Stub: 0.15 plus 0.85 times the in-degree")
+    public Stream<ScoreResult> pageRank(@Name("graphName") String graphName,
+                                        @Name(value = "configuration", defaultValue = "{}") Map<String, Object> configuration) {
+        return tx.getAllNodes().stream().map(node -> new ScoreResult(node.getId(), 0.15 + 0.85 * node.getDegree(Direction.INCOMING)));
+    }
+
+    @Procedure(name = "gds.betweenness.stream", mode = Mode.READ)
+    @Description("Stub: product of in- and out-degree")
+    public Stream<ScoreResult> betweenness(@Name("graphName") String graphName,
+                                           @Name(value = "configuration", defaultValue = "{}") Map<String, Object> configuration) {
+        return tx.getAllNodes().stream().map(node -> new ScoreResult(node.getId(),
+                (double) node.getDegree(Direction.INCOMING) * node.getDegree(Direction.OUTGOING)));
+    }
+
+    @Procedure(name = "gds.nodeSimilarity.stream", mode = Mode.READ)
+    @Description("Stub: every user is similar to the users trusting the same first trustee")
+    public Stream<SimilarityResult> nodeSimilarity(@Name("graphName") String graphName,
+                                                   @Name(value = "configuration", defaultValue = "{}") Map<String, Object> configuration) {
+        return tx.getAllNodes().stream().flatMap(node -> {
+            List<SimilarityResult> similar = new ArrayList<>();
+            for (Relationship trust : node.getRelationships(Direction.OUTGOING)) {
+                for (Relationship other : trust.getEndNode().getRelationships(Direction.INCOMING)) {
+                    Node user = other.getStartNode();
+                    if ((user.getId() != node.getId()) && (similar.size() < 10)) {
+                        similar.add(new SimilarityResult(node.getId(), user.getId(), 1.0 / (1 + similar.size())));
+                    }
+                }
+                break;
+            }
+            return similar.stream();
+        });
+    }
+
+    @UserFunction(name = "gds.util.asNode")
+    @Description("The node with the given id")
+    public Node asNode(@Name("nodeId") Number nodeId) {
+        return tx.getNodeById(nodeId.longValue());
+    }
+}
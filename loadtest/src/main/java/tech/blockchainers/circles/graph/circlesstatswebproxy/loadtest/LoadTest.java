@@ -0,0 +1,239 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.neo4j.configuration.connectors.BoltConnector;
+import org.neo4j.configuration.helpers.SocketAddress;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilder;
+import org.neo4j.harness.Neo4jBuilders;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.generator.ScaleFreeTrustGraph;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load and latency test of the proxy: starts an embedded Neo4j seeded with a synthetic trust graph (GDS
+ * procedures stubbed by {@link GdsStubs}), starts the proxy on it and replays a weighted mix of requests at a
+ * fixed rate (open model). Reports throughput and p50/p99/p999 latency per endpoint on the console and as JSON.
+ * <p>
+ * Options ({@code --name=value}): {@code users} (100000), {@code trusts-per-user} (4), {@code seed},
+ * {@code rps} (100), {@code duration} (60s), {@code warmup} (15s), {@code mix} ({@link TrafficMix#DEFAULT}),
+ * {@code max-in-flight} (512), {@code proxy-jar}, {@code proxy-port} (18080), {@code proxy-arg} and
+ * {@code proxy-jvm-arg} (repeatable), {@code bolt-port}, {@code target} (use a running proxy instead of starting
+ * one) and {@code out} (loadtest-result.json).
+ */
+public final class LoadTest {
+
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        int users = options.integer("users", 100_000);
+        TrafficMix mix = TrafficMix.parse(options.string("mix", TrafficMix.DEFAULT), users);
+
+        Neo4jBuilder builder = Neo4jBuilders.newInProcessBuilder()
+                .withDisabledServer()
+                .withProcedure(GdsStubs.class)
+                .withFunction(GdsStubs.class);
+        if (options.has("bolt-port")) {
+            builder = builder.withConfig(BoltConnector.listen_address, new SocketAddress("localhost", options.integer("bolt-port", 7687)));
+        }
+        try (Neo4j neo4j = builder.build()) {
+            long start = System.nanoTime();
+            int trusts = new TrustGraphSeeder(neo4j.defaultDatabaseService(), users, options.integer("trusts-per-user", 4),
+                    options.longValue("seed", ScaleFreeTrustGraph.DEFAULT_SEED)).seed();
+            log("Seeded %d users and %d trusts in %d s, Neo4j listening at %s", users, trusts,
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), neo4j.boltURI());
+
+            ProxyProcess proxy = null;
+            URI target;
+            if (options.has("target")) {
+                target = URI.create(options.string("target", null));
+            } else {
+                int port = options.integer("proxy-port", 18080);
+                target = URI.create("http://localhost:" + port);
+                proxy = ProxyProcess.start(Path.of(options.string("proxy-jar", "target/circles-stats-web-proxy-0.0.1-SNAPSHOT-exec.jar")),
+                        port, neo4j.boltURI(), options.strings("proxy-jvm-arg"), options.strings("proxy-arg"), Path.of("loadtest-proxy.log"));
+                log("Started proxy at %s, logging to loadtest-proxy.log", target);
+            }
+            try {
+                ProxyProcess.awaitReady(target, Duration.ofMinutes(30), proxy);
+                run(options, mix, target);
+            } finally {
+                if (proxy != null) {
+                    proxy.close();
+                }
+            }
+        }
+    }
+
+    private static void run(Options options, TrafficMix mix, URI target) throws Exception {
+        int rps = options.integer("rps", 100);
+        Duration warmUp = options.duration("warmup", Duration.ofSeconds(15));
+        Duration duration = options.duration("duration", Duration.ofSeconds(60));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+        int maxInFlight = options.integer("max-in-flight", 512);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        SplittableRandom random = new SplittableRandom(options.longValue("seed", ScaleFreeTrustGraph.DEFAULT_SEED));
+        try {
+            log("Warming up for %s at %d requests/s with %s", warmUp, rps, mix);
+            replay(client, inFlight, maxInFlight, mix, random, target, rps, warmUp, statsOf(mix));
+            log("Measuring for %s", duration);
+            Map<String, EndpointStats> stats = statsOf(mix);
+            replay(client, inFlight, maxInFlight, mix, random, target, rps, duration, stats);
+            report(options, mix, rps, duration, stats);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, EndpointStats> statsOf(TrafficMix mix) {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        for (String endpoint : mix.endpoints()) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+        return stats;
+    }
+
+    /**
+     * Sends requests on a fixed schedule, independent of the responses. A request which cannot be sent because
+     * {@code max-in-flight} requests are outstanding is counted as dropped.
+     */
+    private static void replay(HttpClient client, Semaphore inFlight, int maxInFlight, TrafficMix mix, SplittableRandom random, URI target,
+                               int rps, Duration duration, Map<String, EndpointStats> stats) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long requests = duration.toNanos() / interval;
+        for (long i = 0; i < requests; i++) {
+            long scheduled = start + i * interval;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String endpoint = mix.nextEndpoint(random);
+            EndpointStats endpointStats = stats.get(endpoint);
+            if (!inFlight.tryAcquire()) {
+                endpointStats.dropped();
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder(target.resolve(mix.pathOf(endpoint, random)))
+                    .header("Accept", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, ex) -> {
+                inFlight.release();
+                if ((ex == null) && (response.statusCode() < 400)) {
+                    endpointStats.success(System.nanoTime() - scheduled);
+                } else {
+                    endpointStats.error();
+                }
+            });
+        }
+        // let the outstanding requests of this phase complete
+        while (!inFlight.tryAcquire(maxInFlight, 60, TimeUnit.SECONDS)) {
+            log("Waiting for %d outstanding requests", maxInFlight - inFlight.availablePermits());
+        }
+        inFlight.release(maxInFlight);
+    }
+
+    private static void report(Options options, TrafficMix mix, int rps, Duration duration, Map<String, EndpointStats> stats) throws Exception {
+        double seconds = duration.toMillis() / 1000.0;
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        System.out.printf(Locale.ROOT, "%n%-16s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "completed", "errors", "dropped", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (EndpointStats endpoint : stats.values()) {
+            Map<String, Object> row = endpoint.toMap(seconds);
+            endpoints.add(row);
+            System.out.printf(Locale.ROOT, "%-16s %10d %8d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    row.get("endpoint"), row.get("completed"), row.get("errors"), row.get("dropped"), row.get("throughput"),
+                    row.get("p50Ms"), row.get("p99Ms"), row.get("p999Ms"), row.get("maxMs"));
+        }
+        long completed = stats.values().stream().mapToLong(EndpointStats::completed).sum();
+        System.out.printf(Locale.ROOT, "%-16s %10d %39.1f%n", "total", completed, completed / seconds);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("finishedAt", Instant.now().toString());
+        result.put("users", options.integer("users", 100_000));
+        result.put("trustsPerUser", options.integer("trusts-per-user", 4));
+        result.put("targetRps", rps);
+        result.put("durationSeconds", seconds);
+        result.put("mix", mix.weights());
+        result.put("throughput", completed / seconds);
+        result.put("endpoints", endpoints);
+        Path out = Path.of(options.string("out", "loadtest-result.json"));
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out.toFile(), result);
+        log("Results written to %s", out);
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.printf(Locale.ROOT, "[LOADTEST] " + format + "%n", args);
+    }
+
+    private record Options(Map<String, List<String>> values) {
+
+        static Options parse(String[] args) {
+            Map<String, List<String>> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Invalid option '" + arg + "', expected --<name>=<value>");
+                }
+                int separator = arg.indexOf('=');
+                values.computeIfAbsent(arg.substring(2, separator), name -> new ArrayList<>()).add(arg.substring(separator + 1));
+            }
+            return new Options(values);
+        }
+
+        boolean has(String name) {
+            return values.containsKey(name);
+        }
+
+        String string(String name, String defaultValue) {
+            List<String> value = values.get(name);
+            return value == null ? defaultValue : value.get(value.size() - 1);
+        }
+
+        List<String> strings(String name) {
+            return values.getOrDefault(name, List.of());
+        }
+
+        int integer(String name, int defaultValue) {
+            return has(name) ? Integer.parseInt(string(name, null)) : defaultValue;
+        }
+
+        long longValue(String name, long defaultValue) {
+            return has(name) ? Long.parseLong(string(name, null)) : defaultValue;
+        }
+
+        // 90s, 5m or an ISO-8601 duration
+        Duration duration(String name, Duration defaultValue) {
+            if (!has(name)) {
+                return defaultValue;
+            }
+            String value = string(name, null);
+            return value.startsWith("P") ? Duration.parse(value) : Duration.parse("PT" + value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The proxy under test, started from its executable jar as a separate JVM so it runs exactly as deployed and
+ * does not share heap or threads with the load generator.
+ */
+public final class ProxyProcess implements AutoCloseable {
+
+    private final Process process;
+
+    private ProxyProcess(Process process) {
+        this.process = process;
+    }
+
+    public static ProxyProcess start(Path jar, int port, URI boltUri, List<String> jvmArgs, List<String> args, Path log) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException("Proxy jar " + jar + " not found, build it with 'mvn package' in the root directory");
+        }
+        Path snapshots = Files.createTempDirectory("loadtest-snapshots");
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", jar.toString(),
+                "--server.port=" + port,
+                "--spring.neo4j.uri=" + boltUri,
+                "--circles.analytics.snapshot-dir=" + snapshots));
+        command.addAll(args);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        return new ProxyProcess(process);
+    }
+
+    /**
+     * Waits until the proxy has warmed up its analytics caches, so the first requests do not measure the
+     * warm-up.
+     */
+    public static void awaitReady(URI target, Duration timeout, ProxyProcess process) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(target.resolve("/analytics/warmup")).timeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if ((process != null) && !process.process.isAlive()) {
+                throw new IllegalStateException("Proxy exited with " + process.process.exitValue() + " before it was ready");
+            }
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if ((response.statusCode() == 200) && response.body().contains("\"state\":\"DONE\"")) {
+                    return;
+                }
+            } catch (IOException ex) {
+                // not listening yet
+            }
+            TimeUnit.SECONDS.sleep(1);
+        }
+        throw new IllegalStateException("Proxy at " + target + " not ready after " + timeout);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
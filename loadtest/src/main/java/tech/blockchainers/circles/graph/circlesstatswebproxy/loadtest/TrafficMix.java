@@ -0,0 +1,124 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.loadtest;
+
+import tech.blockchainers.circles.graph.circlesstatswebproxy.generator.ScaleFreeTrustGraph;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted mix of the proxy endpoints, e.g. {@code path=35,allpaths=10,trusters=20}. Requests pick their users
+ * like real traffic does: most of them go to the few well connected users (the oldest ones in a
+ * Barabási–Albert graph), the rest are spread over everybody.
+ */
+public final class TrafficMix {
+
+    public static final String DEFAULT = "path=35,allpaths=10,trusters=20,recommendations=10,pagerank=10,betweenness=5,similarity=10";
+
+    private static final List<String> ENDPOINTS =
+            List.of("path", "allpaths", "flow", "trusters", "trustees", "recommendations", "pagerank", "rank", "betweenness", "similarity");
+    private static final double HOT_SHARE = 0.8;
+
+    private final String[] endpoints;
+    private final int[] cumulativeWeights;
+    private final int users;
+    private final int hotUsers;
+
+    private TrafficMix(Map<String, Integer> weights, int users) {
+        this.endpoints = weights.keySet().toArray(String[]::new);
+        this.cumulativeWeights = new int[endpoints.length];
+        int sum = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            sum += weights.get(endpoints[i]);
+            cumulativeWeights[i] = sum;
+        }
+        this.users = users;
+        this.hotUsers = Math.min(users, Math.max(100, users / 100));
+    }
+
+    public static TrafficMix parse(String mix, int users) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if ((parts.length != 2) || !ENDPOINTS.contains(parts[0])) {
+                throw new IllegalArgumentException("Invalid mix entry '" + entry + "', expected <endpoint>=<weight> with endpoint one of " + ENDPOINTS);
+            }
+            int weight = Integer.parseInt(parts[1]);
+            if (weight > 0) {
+                weights.put(parts[0], weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix '" + mix + "' has no endpoint with a positive weight");
+        }
+        return new TrafficMix(weights, users);
+    }
+
+    public List<String> endpoints() {
+        return List.of(endpoints);
+    }
+
+    public Map<String, Integer> weights() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < endpoints.length; i++) {
+            weights.put(endpoints[i], cumulativeWeights[i] - (i == 0 ? 0 : cumulativeWeights[i - 1]));
+        }
+        return weights;
+    }
+
+    public String nextEndpoint(SplittableRandom random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    public String pathOf(String endpoint, SplittableRandom random) {
+        String user = name(random);
+        return switch (endpoint) {
+            case "path" -> "/path/names/" + user + "/" + otherName(random, user);
+            case "allpaths" -> "/allpaths/names/" + user + "/" + otherName(random, user) + "?maxDepth=4&maxPaths=100";
+            case "flow" -> "/flow/names/" + user + "/" + otherName(random, user);
+            case "trusters" -> "/trusters/" + user;
+            case "trustees" -> "/trustees/" + user;
+            case "recommendations" -> "/recommendations/" + user;
+            case "pagerank" -> "/pagerank?name=" + encode(user);
+            case "rank" -> "/pagerank/rank/" + user;
+            case "betweenness" -> "/betweenness?name=" + encode(user);
+            case "similarity" -> "/similarity?name=" + encode(user);
+            default -> throw new IllegalArgumentException("Unknown endpoint " + endpoint);
+        };
+    }
+
+    private String otherName(SplittableRandom random, String user) {
+        String other;
+        do {
+            other = name(random);
+        } while (other.equals(user));
+        return other;
+    }
+
+    private String name(SplittableRandom random) {
+        int user = random.nextDouble() < HOT_SHARE ? random.nextInt(hotUsers) : random.nextInt(users);
+        // every tenth user has no name
+        return ScaleFreeTrustGraph.nameOf(user) != null ? ScaleFreeTrustGraph.nameOf(user) : ScaleFreeTrustGraph.nameOf(user - 1);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        List<String> entries = new ArrayList<>();
+        weights().forEach((endpoint, weight) -> entries.add(endpoint + "=" + weight));
+        return String.join(",", entries);
+    }
+}
@@ -0,0 +1,103 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.loadtest;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.generator.ScaleFreeTrustGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seeds a database with a synthetic scale-free trust graph from the {@link ScaleFreeTrustGraph} generator the
+ * benchmarks use as well: same seed, same users, names and trusts. Users are stored like the
+ * Circles export ({@code :User {address, name, image_url}}, {@code -[:TRUSTS {amount, blockNumber}]->}), with
+ * the indexes on {@code address} and {@code name}.
+ */
+public final class TrustGraphSeeder {
+
+    private static final Label USER = Label.label("User");
+    private static final RelationshipType TRUSTS = RelationshipType.withName("TRUSTS");
+    private static final int BATCH_SIZE = 20_000;
+
+    private final GraphDatabaseService database;
+    private final int users;
+    private final int trustsPerUser;
+    private final long seed;
+
+    public TrustGraphSeeder(GraphDatabaseService database, int users, int trustsPerUser, long seed) {
+        this.database = database;
+        this.users = users;
+        this.trustsPerUser = trustsPerUser;
+        this.seed = seed;
+    }
+
+    public int seed() {
+        try (Transaction tx = database.beginTx()) {
+            tx.schema().indexFor(USER).on("address").create();
+            tx.schema().indexFor(USER).on("name").create();
+            tx.commit();
+        }
+        long[] nodeIds = new long[users];
+        for (int from = 0; from < users; from += BATCH_SIZE) {
+            try (Transaction tx = database.beginTx()) {
+                for (int user = from, to = Math.min(users, from + BATCH_SIZE); user < to; user++) {
+                    Node node = tx.createNode(USER);
+                    node.setProperty("address", ScaleFreeTrustGraph.addressOf(user));
+                    if (ScaleFreeTrustGraph.nameOf(user) != null) {
+                        node.setProperty("name", ScaleFreeTrustGraph.nameOf(user));
+                    }
+                    node.setProperty("image_url", "https://example.org/" + user + ".png");
+                    nodeIds[user] = node.getId();
+                }
+                tx.commit();
+            }
+        }
+        int trusts;
+        try (Trusts writer = new Trusts(nodeIds)) {
+            ScaleFreeTrustGraph.generate(users, trustsPerUser, seed, writer);
+            trusts = writer.count;
+        }
+        try (Transaction tx = database.beginTx()) {
+            tx.schema().awaitIndexesOnline(10, TimeUnit.MINUTES);
+        }
+        return trusts;
+    }
+
+    // writes the trusts in batches, every trust gets the next block number
+    private final class Trusts implements ScaleFreeTrustGraph.Trusts, AutoCloseable {
+
+        private final long[] nodeIds;
+        private Transaction tx;
+        private int count;
+
+        Trusts(long[] nodeIds) {
+            this.nodeIds = nodeIds;
+        }
+
+        @Override
+        public void trust(int truster, int trustee, long amount) {
+            if (tx == null) {
+                tx = database.beginTx();
+            }
+            Relationship trust = tx.getNodeById(nodeIds[truster]).createRelationshipTo(tx.getNodeById(nodeIds[trustee]), TRUSTS);
+            trust.setProperty("amount", amount);
+            trust.setProperty("blockNumber", (long) count);
+            count++;
+            if (count % BATCH_SIZE == 0) {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (tx != null) {
+                tx.commit();
+                tx.close();
+                tx = null;
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package tech.blockchainers.circles.graph.circlesstatswebproxy;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CirclesStatsWebProxyApplication {
 
 	public static void main(String[] args) {
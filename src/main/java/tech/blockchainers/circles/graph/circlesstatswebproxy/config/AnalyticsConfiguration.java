@@ -0,0 +1,26 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class AnalyticsConfiguration {
+
+    @Bean(destroyMethod = "shutdownNow")
+    @Primary
+    public ForkJoinPool analyticsPool(@Value("${circles.analytics.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Batch path searches, kept apart from the analytics pool so they do not queue behind minutes-long jobs.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool batchPathPool(@Value("${circles.batch.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -1,262 +1,475 @@
 package tech.blockchainers.circles.graph.circlesstatswebproxy.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
 import tech.blockchainers.circles.graph.circlesstatswebproxy.model.FlatUser;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.PathRequest;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoreTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoredRows;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.SimilarityTable;
 import tech.blockchainers.circles.graph.circlesstatswebproxy.model.User;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.AnalyticsCache.Snapshot;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.AnalyticsService;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.Bulkheads;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.LookupCache;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.TrustChangeFeed;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.TrustGraphService;
 import tech.blockchainers.circles.graph.circlesstatswebproxy.service.UserService;
 
 import javax.annotation.PostConstruct;
-import java.sql.Date;
-import java.time.Instant;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 @RestController
 @Slf4j
 public class UserController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final String VERSION_HEADER = "X-Analytics-Version";
+    private static final String COMPUTED_AT_HEADER = "X-Analytics-Computed-At";
+    private static final String NEXT_OFFSET_HEADER = "X-Next-Offset";
+
     private final UserService userService;
-    private Collection<Map<String, Object>> cachedBet;
-    private Collection<Map<String, Object>> cachedSim;
-    private Collection<Map<String, Object>> cachedPagerank;
-    private Collection<Map<String, Object>> cachedBetStats;
-    private Collection<Map<String, Object>> cachedSimStats;
-    private Collection<Map<String, Object>> cachedPagerankStats;
-    private long processingSimStarted;
-    private long processingBetStarted;
-    private long processingPagerankStarted;
-    private long processingSimStatsStarted;
-    private long processingBetStatsStarted;
-    private long processingPagerankStatsStarted;
-
-    public UserController(UserService userService) {
+    private final TrustGraphService trustGraphService;
+    private final AnalyticsService analyticsService;
+    private final ObjectMapper objectMapper;
+    private final Bulkheads bulkheads;
+    private final LookupCache lookupCache;
+    private final TrustChangeFeed trustChangeFeed;
+    private final int batchMaxSize;
+    private final boolean changesEndpointEnabled;
+    private final List<RowFormat> rowFormats;
+    private final MeterRegistry registry;
+
+    public UserController(UserService userService, TrustGraphService trustGraphService, AnalyticsService analyticsService, ObjectMapper objectMapper,
+                          Bulkheads bulkheads, LookupCache lookupCache, TrustChangeFeed trustChangeFeed, MeterRegistry registry,
+                          @Value("${circles.batch.max-size:1000}") int batchMaxSize,
+                          @Value("${circles.changes.endpoint-enabled:false}") boolean changesEndpointEnabled) {
         this.userService = userService;
-        this.cachedSim = new ArrayList<>();
-        this.cachedBet = new ArrayList<>();
-        this.cachedPagerank = new ArrayList<>();
-        this.cachedSimStats = new ArrayList<>();
-        this.cachedBetStats = new ArrayList<>();
-        this.cachedPagerankStats = new ArrayList<>();
+        this.trustGraphService = trustGraphService;
+        this.analyticsService = analyticsService;
+        this.objectMapper = objectMapper;
+        this.bulkheads = bulkheads;
+        this.lookupCache = lookupCache;
+        this.trustChangeFeed = trustChangeFeed;
+        this.registry = registry;
+        this.batchMaxSize = batchMaxSize;
+        this.changesEndpointEnabled = changesEndpointEnabled;
+        this.rowFormats = List.of(
+                new RowFormat(MediaType.APPLICATION_JSON, objectMapper.getFactory(), true),
+                new RowFormat(MediaType.parseMediaType(NDJSON), objectMapper.getFactory(), false),
+                new RowFormat(MediaType.APPLICATION_CBOR, new CBORFactory(), true),
+                new RowFormat(MediaType.parseMediaType(SMILE), new SmileFactory(), true));
     }
+
     @PostConstruct
     public void setup() {
-        CompletableFuture.runAsync(() -> initCaches());
-    }
-
-    private void initCaches() {
-        log.info("[SETUP] Create Projection");
-        userService.createProjection();
-        log.info("[SETUP] Cache Similarity Stats");
-        statsSimilarity();
-        log.info("[SETUP] Cache Betweenness Stats");
-        statsBetweenness();
-        log.info("[SETUP] Cache Pagerank Stats");
-        statsPagerank();
-        log.info("[SETUP] Cache Similarity");
-        similarity(null);
-        log.info("[SETUP] Cache Betweenness");
-        readBetweenness(null);
-        log.info("[SETUP] Cache Pagerank");
-        readPagerank(null);
-        log.info("[SETUP] Setup completed");
+        CompletableFuture.runAsync(analyticsService::initCaches);
     }
 
     @GetMapping("/recommendations/{name}")
-    public List<User> trustGraphForUser(@PathVariable("name") String name) {
-        return userService.readUserGraph(name);
+    public CompletableFuture<List<User>> trustGraphForUser(@PathVariable("name") String name) {
+        return bulkheads.submit(Bulkheads.LOOKUPS, () -> userService.readUserGraph(name));
     }
 
 
     @GetMapping("/allpaths/names/{sender}/{receiver}")
-    public List<List<Map<String, String>>> allPathsForNames(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver) {
-        return userService.calcAllPathNames(sender, receiver);
+    public CompletableFuture<List<List<Map<String, String>>>> allPathsForNames(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver,
+                                                                               @RequestParam(value = "maxPaths", defaultValue = "1000") int maxPaths,
+                                                                               @RequestParam(value = "maxDepth", defaultValue = "4") int maxDepth,
+                                                                               @RequestParam(value = "timeoutMs", defaultValue = "${circles.allpaths.timeout-ms:5000}") long timeoutMs) {
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcAllPathNames(sender, receiver, maxPaths, maxDepth, timeoutMs));
+    }
+
+    @GetMapping(value = "/allpaths/names/{sender}/{receiver}", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllPathsForNames(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver,
+                                                                        @RequestParam(value = "maxPaths", defaultValue = "1000") int maxPaths,
+                                                                        @RequestParam(value = "maxDepth", defaultValue = "4") int maxDepth,
+                                                                        @RequestParam(value = "timeoutMs", defaultValue = "${circles.allpaths.timeout-ms:5000}") long timeoutMs) {
+        return streamPaths(consumer -> userService.streamAllPathNames(sender, receiver, maxPaths, maxDepth, timeoutMs, consumer));
     }
 
     @GetMapping("/allpaths/addrs/{sender}/{receiver}")
-    public List<List<Map<String, String>>> allPathsForAddrs(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver) {
-        return userService.calcAllPathAddrs(sender, receiver);
+    public CompletableFuture<List<List<Map<String, String>>>> allPathsForAddrs(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver,
+                                                                               @RequestParam(value = "maxPaths", defaultValue = "1000") int maxPaths,
+                                                                               @RequestParam(value = "maxDepth", defaultValue = "4") int maxDepth,
+                                                                               @RequestParam(value = "timeoutMs", defaultValue = "${circles.allpaths.timeout-ms:5000}") long timeoutMs) {
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcAllPathAddrs(sender, receiver, maxPaths, maxDepth, timeoutMs));
+    }
+
+    @GetMapping(value = "/allpaths/addrs/{sender}/{receiver}", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllPathsForAddrs(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver,
+                                                                        @RequestParam(value = "maxPaths", defaultValue = "1000") int maxPaths,
+                                                                        @RequestParam(value = "maxDepth", defaultValue = "4") int maxDepth,
+                                                                        @RequestParam(value = "timeoutMs", defaultValue = "${circles.allpaths.timeout-ms:5000}") long timeoutMs) {
+        return streamPaths(consumer -> userService.streamAllPathAddrs(sender, receiver, maxPaths, maxDepth, timeoutMs, consumer));
+    }
+
+    @GetMapping("/flow/names/{sender}/{receiver}")
+    public CompletableFuture<Map<String, Object>> maxFlowForNames(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver,
+                                                                  @RequestParam(value = "value", defaultValue = "0") double value,
+                                                                  @RequestParam(value = "maxHops", defaultValue = "${circles.flow.max-hops:6}") int maxHops,
+                                                                  @RequestParam(value = "timeoutMs", defaultValue = "${circles.flow.timeout-ms:5000}") long timeoutMs) {
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcMaxFlowNames(sender, receiver, value, maxHops, timeoutMs));
+    }
+
+    @GetMapping("/flow/addrs/{sender}/{receiver}")
+    public CompletableFuture<Map<String, Object>> maxFlowForAddrs(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver,
+                                                                  @RequestParam(value = "value", defaultValue = "0") double value,
+                                                                  @RequestParam(value = "maxHops", defaultValue = "${circles.flow.max-hops:6}") int maxHops,
+                                                                  @RequestParam(value = "timeoutMs", defaultValue = "${circles.flow.timeout-ms:5000}") long timeoutMs) {
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcMaxFlowAddrs(sender, receiver, value, maxHops, timeoutMs));
+    }
+
+    // the stream runs on the async executor of the web container, it holds a slot of the paths bulkhead meanwhile
+    private ResponseEntity<StreamingResponseBody> streamPaths(Consumer<Consumer<List<Map<String, String>>>> search) {
+        Bulkheads.Permit permit = bulkheads.tryAcquire(Bulkheads.PATHS);
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                generator.setRootValueSeparator(null);
+                search.accept(path -> {
+                    try {
+                        generator.writeObject(path);
+                        generator.writeRaw('\n');
+                        generator.flush();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                generator.close();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
     }
 
     @GetMapping("/path/names/{sender}/{receiver}")
-    public List<User> pathForNames(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver) {
-        return userService.calcPathNames(sender, receiver);
+    public CompletableFuture<List<User>> pathForNames(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver) {
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcPathNames(sender, receiver));
     }
 
     @GetMapping("/path/addrs/{sender}/{receiver}")
-    public List<User> pathForAddr(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver) {
-        return userService.calcPathAddrs(sender, receiver);
+    public CompletableFuture<List<User>> pathForAddr(@PathVariable("sender") String sender, @PathVariable("receiver") String receiver) {
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcPathAddrs(sender, receiver));
+    }
+
+    @GetMapping("/graph/reload")
+    public ResponseEntity<Void> reloadGraph() {
+        CompletableFuture.runAsync(trustGraphService::reload);
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/graph/load")
+    public Map<String, Object> graphLoadStats() {
+        return trustGraphService.lastLoad();
+    }
+
+    @GetMapping("/graph/changes")
+    public Map<String, Object> graphChangeStats() {
+        return trustChangeFeed.stats();
+    }
+
+    @PostMapping("/batch/path/names")
+    public CompletableFuture<List<List<String>>> batchPathNames(@RequestBody List<PathRequest> pairs) {
+        checkBatch(pairs);
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcBatchPathNames(pairs));
+    }
+
+    @PostMapping("/batch/path/addrs")
+    public CompletableFuture<List<List<String>>> batchPathAddrs(@RequestBody List<PathRequest> pairs) {
+        checkBatch(pairs);
+        return bulkheads.submit(Bulkheads.PATHS, () -> userService.calcBatchPathAddrs(pairs));
+    }
+
+    @PostMapping("/batch/recommendations")
+    public CompletableFuture<Map<String, List<String>>> batchRecommendations(@RequestBody List<String> names) {
+        checkBatch(names);
+        return bulkheads.submit(Bulkheads.LOOKUPS, () -> userService.calcBatchRecommendations(names));
+    }
+
+    private void checkBatch(List<?> entries) {
+        if (entries.size() > batchMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch size " + entries.size() + " exceeds " + batchMaxSize);
+        }
+        for (Object entry : entries) {
+            if ((entry == null) || ((entry instanceof PathRequest pair) && ((pair.sender() == null) || (pair.receiver() == null)))) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch entries must not be null");
+            }
+        }
+    }
+
+    @PostMapping("/graph/changes")
+    public ResponseEntity<Void> applyGraphChanges(@RequestBody List<TrustEdgeChange> changes) {
+        if (!changesEndpointEnabled) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Writing trust changes is disabled (circles.changes.endpoint-enabled)");
+        }
+        trustGraphService.apply(changes);
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/projection/refresh")
+    public ResponseEntity<Void> refreshProjection() {
+        CompletableFuture.runAsync(analyticsService::refreshProjection);
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/lookups/cache")
+    public Map<String, Object> lookupCacheStats() {
+        return lookupCache.stats();
+    }
+
+    @GetMapping("/analytics/warmup")
+    public Map<String, Object> warmUpProgress() {
+        return analyticsService.warmUp().toMap();
     }
 
     @GetMapping("/trusters/{name}")
-    public Collection<FlatUser> trustersForUser(@PathVariable("name") String name) {
-        return userService.readTrustersForUser(name);
+    public CompletableFuture<Collection<FlatUser>> trustersForUser(@PathVariable("name") String name) {
+        return bulkheads.submit(Bulkheads.LOOKUPS, () -> userService.readTrustersForUser(name));
     }
 
     @GetMapping("/trustees/{name}")
-    public Collection<FlatUser> trusteesForUser(@PathVariable("name") String name) {
-        return userService.readTrusteesForUser(name);
+    public CompletableFuture<Collection<FlatUser>> trusteesForUser(@PathVariable("name") String name) {
+        return bulkheads.submit(Bulkheads.LOOKUPS, () -> userService.readTrusteesForUser(name));
     }
 
     @GetMapping("/similarity/reset")
     public ResponseEntity<Void> resetSimilarity() {
-        cachedSim.clear();
-        cachedSimStats.clear();
+        analyticsService.refreshSimilarity();
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/similarity/stats")
-    public Collection<Map<String, Object>> statsSimilarity() {
-        if (processingSimStatsStarted > 0) {
-            Map<String, Object> wait = Map.of("PROCESSING", Date.from(Instant.ofEpochMilli(processingSimStatsStarted)));
-            return List.of(wait);
-        }
-        try {
-            if (cachedSimStats.isEmpty()) {
-                processingSimStatsStarted = Instant.now().toEpochMilli();
-                cachedSimStats = userService.readSimilarityJaccStats();
-            }
-        } finally {
-            processingSimStatsStarted = 0;
-        }
-        return cachedSimStats;
+    public CompletableFuture<ResponseEntity<Collection<Map<String, Object>>>> statsSimilarity() {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<Collection<Map<String, Object>>> snapshot = analyticsService.similarityStats();
+            return withVersion(snapshot, snapshot.value());
+        });
     }
 
-    @GetMapping("/similarity")
-    public Collection<Map<String, Object>> similarity(@RequestParam(value = "name", required = false) String name) {
-        if (processingSimStarted > 0) {
-            Map<String, Object> wait = Map.of("PROCESSING", Date.from(Instant.ofEpochMilli(processingSimStarted)));
-            return List.of(wait);
-        }
-        try {
-            if (cachedSim.isEmpty()) {
-                processingSimStarted = Instant.now().toEpochMilli();
-                cachedSim = userService.readSimilarityJacc();
-            }
+    @GetMapping(value = "/similarity", produces = { MediaType.APPLICATION_JSON_VALUE, NDJSON, MediaType.APPLICATION_CBOR_VALUE, SMILE })
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> similarity(@RequestParam(value = "name", required = false) String name,
+                                                                               @RequestParam(value = "address", required = false) String address,
+                                                                               @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                                               @RequestParam(value = "limit", required = false) Integer limit,
+                                                                               @RequestParam(value = "minScore", required = false) Double minScore,
+                                                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<SimilarityTable> snapshot;
+            ScoredRows rows;
             if (StringUtils.hasText(name)) {
-                List<Map<String, Object>> filteredForName = new ArrayList<>();
-                for (Map<String, Object> map : cachedSim) {
-                    if ((map.get("user1Name") != null) && map.get("user1Name").toString().equals(name) || ((map.get("user2Name") != null) && map.get("user2Name").toString().equals(name))) {
-                        filteredForName.add(map);
-                    }
-                }
-                return filteredForName;
+                snapshot = analyticsService.similarityOf(name, null);
+                rows = snapshot.value().byName(name);
+            } else if (StringUtils.hasText(address)) {
+                snapshot = analyticsService.similarityOf(null, address);
+                rows = snapshot.value().byAddress(address);
             } else {
-                return cachedSim;
+                snapshot = analyticsService.similarity();
+                rows = snapshot.value().all();
             }
-        } finally {
-            processingSimStarted = 0;
-        }
+            return page("similarity", snapshot, rows, offset, limit, minScore, accept);
+        });
     }
 
     @GetMapping("/pagerank/stats")
-    public Collection<Map<String, Object>> statsPagerank() {
-        if (processingPagerankStatsStarted > 0) {
-            Map<String, Object> wait = Map.of("PROCESSING", Date.from(Instant.ofEpochMilli(processingPagerankStatsStarted)));
-            return List.of(wait);
-        }
-        try {
-            if (cachedPagerankStats.isEmpty()) {
-                processingPagerankStatsStarted = Instant.now().toEpochMilli();
-                cachedPagerankStats = userService.readPagerankStats();
-            }
-        } finally {
-            processingPagerankStatsStarted = 0;
-        }
-        return cachedPagerankStats;
+    public CompletableFuture<ResponseEntity<Collection<Map<String, Object>>>> statsPagerank() {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<Collection<Map<String, Object>>> snapshot = analyticsService.pagerankStats();
+            return withVersion(snapshot, snapshot.value());
+        });
     }
 
     @GetMapping("/pagerank/reset")
     public ResponseEntity<Void> resetPagerank() {
-        cachedPagerank.clear();
-        cachedPagerankStats.clear();
+        analyticsService.refreshPagerank();
         return ResponseEntity.ok().build();
     }
 
-    @GetMapping("/pagerank")
-    public Collection<Map<String, Object>> readPagerank(@RequestParam(value = "name",required = false) String name) {
-        if (processingPagerankStarted > 0) {
-            Map<String, Object> wait = Map.of("PROCESSING", Date.from(Instant.ofEpochMilli(processingPagerankStarted)));
-            return List.of(wait);
-        }
-        try {
-            if (cachedPagerank.isEmpty()) {
-                processingPagerankStarted = Instant.now().toEpochMilli();
-                cachedPagerank = userService.readPagerank();
-            }
-            if (StringUtils.hasText(name)) {
-                List<Map<String, Object>> filteredForName = new ArrayList<>();
-                for (Map<String, Object> map : cachedPagerank) {
-                    if (map.containsKey("name") && map.get("name") != null && map.get("name").toString().equals(name)) {
-                        filteredForName.add(map);
-                    }
-                }
-                return filteredForName;
-            } else {
-                return cachedPagerank;
-            }
-        } finally {
-            processingPagerankStarted = 0;
-        }
+    @GetMapping(value = "/pagerank", produces = { MediaType.APPLICATION_JSON_VALUE, NDJSON, MediaType.APPLICATION_CBOR_VALUE, SMILE })
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> readPagerank(@RequestParam(value = "name",required = false) String name,
+                                                                                 @RequestParam(value = "address", required = false) String address,
+                                                                                 @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                                                 @RequestParam(value = "limit", required = false) Integer limit,
+                                                                                 @RequestParam(value = "minScore", required = false) Double minScore,
+                                                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> scores("pagerank", analyticsService.pagerank(), name, address, offset, limit, minScore, accept));
+    }
+
+    @GetMapping("/pagerank/rank/{name}")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> rankPagerank(@PathVariable("name") String name) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<ScoreTable> snapshot = analyticsService.pagerank();
+            return withVersion(snapshot, snapshot.value().rankByName(name));
+        });
+    }
+
+    @GetMapping("/pagerank/rank/addrs/{address}")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> rankPagerankForAddr(@PathVariable("address") String address) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<ScoreTable> snapshot = analyticsService.pagerank();
+            return withVersion(snapshot, snapshot.value().rankByAddress(address));
+        });
     }
 
     @GetMapping("/betweenness/reset")
     public ResponseEntity<Void> resetBetweenness() {
-        cachedBet.clear();
-        cachedBetStats.clear();
+        analyticsService.refreshBetweenness();
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/betweenness/stats")
-    public Collection<Map<String, Object>> statsBetweenness() {
-        if (processingBetStatsStarted > 0) {
-            Map<String, Object> wait = Map.of("PROCESSING", Date.from(Instant.ofEpochMilli(processingBetStatsStarted)));
-            return List.of(wait);
-        }
-        try {
-            if (cachedBetStats.isEmpty()) {
-                processingBetStatsStarted = Instant.now().toEpochMilli();
-                cachedBetStats = userService.readBetweennessStats();
-            }
-        } finally {
-            processingBetStatsStarted = 0;
+    public CompletableFuture<ResponseEntity<Collection<Map<String, Object>>>> statsBetweenness() {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<Collection<Map<String, Object>>> snapshot = analyticsService.betweennessStats();
+            return withVersion(snapshot, snapshot.value());
+        });
+    }
+
+    @GetMapping(value = "/betweenness", produces = { MediaType.APPLICATION_JSON_VALUE, NDJSON, MediaType.APPLICATION_CBOR_VALUE, SMILE })
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> readBetweenness(@RequestParam(value = "name",required = false) String name,
+                                                                                    @RequestParam(value = "address", required = false) String address,
+                                                                                    @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                                                                    @RequestParam(value = "minScore", required = false) Double minScore,
+                                                                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> scores("betweenness", analyticsService.betweenness(), name, address, offset, limit, minScore, accept));
+    }
+
+    @GetMapping("/betweenness/rank/{name}")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> rankBetweenness(@PathVariable("name") String name) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<ScoreTable> snapshot = analyticsService.betweenness();
+            return withVersion(snapshot, snapshot.value().rankByName(name));
+        });
+    }
+
+    @GetMapping("/betweenness/rank/addrs/{address}")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> rankBetweennessForAddr(@PathVariable("address") String address) {
+        return bulkheads.submit(Bulkheads.ANALYTICS, () -> {
+            Snapshot<ScoreTable> snapshot = analyticsService.betweenness();
+            return withVersion(snapshot, snapshot.value().rankByAddress(address));
+        });
+    }
+
+    @ExceptionHandler({ RejectedExecutionException.class, TimeoutException.class })
+    public ResponseEntity<Void> overloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    private ResponseEntity<StreamingResponseBody> scores(String endpoint, Snapshot<ScoreTable> snapshot, String name, String address,
+                                                         int offset, Integer limit, Double minScore, String accept) {
+        ScoredRows rows;
+        if (StringUtils.hasText(name)) {
+            rows = snapshot.value().byName(name);
+        } else if (StringUtils.hasText(address)) {
+            rows = snapshot.value().byAddress(address);
+        } else {
+            rows = snapshot.value().all();
         }
-        return cachedBetStats;
+        return page(endpoint, snapshot, rows, offset, limit, minScore, accept);
     }
 
-    @GetMapping("/betweenness")
-    public Collection<Map<String, Object>> readBetweenness(@RequestParam(value = "name",required = false) String name) {
-        if (processingBetStarted > 0) {
-            Map<String, Object> wait = Map.of("PROCESSING", Date.from(Instant.ofEpochMilli(processingBetStarted)));
-            return List.of(wait);
+    /**
+     * Writes the selected rows straight from the snapshot columns to the response, as JSON array, NDJSON, CBOR
+     * or Smile depending on the {@code Accept} header.
+     */
+    private ResponseEntity<StreamingResponseBody> page(String endpoint, Snapshot<?> snapshot, ScoredRows rows, int offset, Integer limit,
+                                                       Double minScore, String accept) {
+        int end = (minScore == null) ? rows.size() : rows.countAtLeast(minScore);
+        int from = Math.min(Math.max(offset, 0), end);
+        int to = (limit == null) ? end : (int) Math.min(end, (long) from + Math.max(limit, 0));
+        ResponseEntity.BodyBuilder response = withVersion(snapshot);
+        if (to < end) {
+            response.header(NEXT_OFFSET_HEADER, String.valueOf(to));
         }
-        try {
-            if (cachedBet.isEmpty()) {
-                processingBetStarted = Instant.now().toEpochMilli();
-                cachedBet = userService.readBetweenness();
+        RowFormat format = rowFormatOf(accept);
+        Timer serialization = serializationTimer(endpoint, format.mediaType());
+        StreamingResponseBody body = out -> serialization.record(() -> {
+            try (JsonGenerator generator = format.factory().createGenerator(out)) {
+                if (format.array()) {
+                    generator.writeStartArray();
+                    for (int row = from; row < to; row++) {
+                        rows.write(row, generator);
+                    }
+                    generator.writeEndArray();
+                } else {
+                    generator.setRootValueSeparator(null);
+                    for (int row = from; row < to; row++) {
+                        rows.write(row, generator);
+                        generator.writeRaw('\n');
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
             }
-            if (StringUtils.hasText(name)) {
-                List<Map<String, Object>> filteredForName = new ArrayList<>();
-                for (Map<String, Object> map : cachedBet) {
-                    if ((map.get("name") != null) && map.get("name").toString().equals(name)) {
-                        filteredForName.add(map);
+        });
+        return response.contentType(format.mediaType()).body(body);
+    }
+
+    private Timer serializationTimer(String endpoint, MediaType mediaType) {
+        return Timer.builder("circles.response.serialization")
+                .tag("endpoint", endpoint)
+                .tag("format", mediaType.getSubtype())
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private RowFormat rowFormatOf(String accept) {
+        if (StringUtils.hasText(accept)) {
+            List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(accepted);
+            for (MediaType type : accepted) {
+                for (RowFormat format : rowFormats) {
+                    if (type.includes(format.mediaType())) {
+                        return format;
                     }
                 }
-                return filteredForName;
-            } else {
-                return cachedBet;
             }
-        } finally {
-            processingBetStarted = 0;
         }
+        return rowFormats.get(0);
+    }
+
+    private record RowFormat(MediaType mediaType, JsonFactory factory, boolean array) {}
+
+    private ResponseEntity.BodyBuilder withVersion(Snapshot<?> snapshot) {
+        return ResponseEntity.ok()
+                .header(VERSION_HEADER, String.valueOf(snapshot.version()))
+                .header(COMPUTED_AT_HEADER, snapshot.computedAt().toString());
+    }
+
+    private <T> ResponseEntity<T> withVersion(Snapshot<?> snapshot, T body) {
+        return withVersion(snapshot).body(body);
     }
 
 }
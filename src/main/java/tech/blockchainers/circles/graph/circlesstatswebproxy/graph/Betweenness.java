@@ -0,0 +1,139 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Betweenness centrality over the directed TRUSTS edges of a {@link TrustGraph} (Brandes, unweighted), with
+ * the same unnormalized scores as {@code gds.betweenness}. The source users are split across the pool, every
+ * worker accumulates into its own primitive arrays which are summed at the end.
+ * <p>
+ * With a sampling size below the user count only that many randomly chosen sources are used and the scores
+ * are scaled by {@code nodeCount / samplingSize}, an unbiased estimate of the exact scores.
+ */
+public final class Betweenness {
+
+    private Betweenness() {}
+
+    public static double[] compute(TrustGraph graph, ForkJoinPool pool) {
+        return compute(graph, pool, 0, 0);
+    }
+
+    /**
+     * @param samplingSize number of sampled source users, {@code <= 0} or {@code >= nodeCount} computes exact scores
+     */
+    public static double[] compute(TrustGraph graph, ForkJoinPool pool, int samplingSize, long samplingSeed) {
+        int nodeCount = graph.nodeCount();
+        int[] sources = sources(nodeCount, samplingSize, samplingSeed);
+        Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+        Queue<Workspace> used = new ConcurrentLinkedQueue<>();
+        ParallelRange.forEach(pool, sources.length, 1, (from, to) -> {
+            Workspace workspace = workspaces.poll();
+            if (workspace == null) {
+                workspace = new Workspace(nodeCount);
+                used.add(workspace);
+            }
+            for (int i = from; i < to; i++) {
+                workspace.accumulate(graph, sources[i]);
+            }
+            workspaces.add(workspace);
+        });
+        double[] scores = new double[nodeCount];
+        double scale = sources.length == nodeCount ? 1 : (double) nodeCount / sources.length;
+        for (Workspace workspace : used) {
+            for (int node = 0; node < nodeCount; node++) {
+                scores[node] += workspace.centrality[node] * scale;
+            }
+        }
+        return scores;
+    }
+
+    private static int[] sources(int nodeCount, int samplingSize, long samplingSeed) {
+        int[] all = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            all[node] = node;
+        }
+        if ((samplingSize <= 0) || (samplingSize >= nodeCount)) {
+            return all;
+        }
+        Random random = new Random(samplingSeed);
+        for (int i = 0; i < samplingSize; i++) {
+            int j = i + random.nextInt(nodeCount - i);
+            int swap = all[i];
+            all[i] = all[j];
+            all[j] = swap;
+        }
+        int[] sample = new int[samplingSize];
+        System.arraycopy(all, 0, sample, 0, samplingSize);
+        return sample;
+    }
+
+    private static final class Workspace {
+
+        private final double[] centrality;
+        private final double[] sigma;
+        private final double[] delta;
+        private final int[] distance;
+        private final int[] order;
+
+        Workspace(int nodeCount) {
+            this.centrality = new double[nodeCount];
+            this.sigma = new double[nodeCount];
+            this.delta = new double[nodeCount];
+            this.distance = new int[nodeCount];
+            this.order = new int[nodeCount];
+            Arrays.fill(distance, -1);
+        }
+
+        /**
+         * One single-source shortest path pass and its dependency accumulation. The BFS order doubles as
+         * queue and stack, predecessors are found again through the in-edges instead of being stored.
+         */
+        void accumulate(TrustGraph graph, int source) {
+            int head = 0;
+            int tail = 0;
+            sigma[source] = 1;
+            distance[source] = 0;
+            order[tail++] = source;
+            while (head < tail) {
+                int node = order[head++];
+                int next = distance[node] + 1;
+                TrustGraph.Row trustees = graph.outRow(node);
+                int[] targets = trustees.nodes();
+                for (int k = trustees.start(), end = trustees.end(); k < end; k++) {
+                    int target = targets[k];
+                    if (distance[target] < 0) {
+                        distance[target] = next;
+                        order[tail++] = target;
+                    }
+                    if (distance[target] == next) {
+                        sigma[target] += sigma[node];
+                    }
+                }
+            }
+            for (int i = tail - 1; i > 0; i--) {
+                int node = order[i];
+                double factor = (1 + delta[node]) / sigma[node];
+                int previous = distance[node] - 1;
+                TrustGraph.Row trusters = graph.inRow(node);
+                int[] sources = trusters.nodes();
+                for (int k = trusters.start(), end = trusters.end(); k < end; k++) {
+                    int predecessor = sources[k];
+                    if (distance[predecessor] == previous) {
+                        delta[predecessor] += sigma[predecessor] * factor;
+                    }
+                }
+                centrality[node] += delta[node];
+            }
+            for (int i = 0; i < tail; i++) {
+                int node = order[i];
+                sigma[node] = 0;
+                delta[node] = 0;
+                distance[node] = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets the CPU-bound graph searches stop once the thread running them is interrupted, e.g. by a bulkhead whose
+ * deadline has passed, instead of running to the end for nobody. Throws rather than returning a partial result,
+ * so that nothing is cached for an interrupted search.
+ */
+final class Cancellation {
+
+    private Cancellation() {}
+
+    static void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Graph search interrupted");
+        }
+    }
+}
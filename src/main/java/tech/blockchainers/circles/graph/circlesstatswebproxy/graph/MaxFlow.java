@@ -0,0 +1,453 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Maximum transferable value from a sender to a receiver (Edmonds-Karp). Like the trust paths, value moves
+ * from a user to its trusters: a TRUSTS edge {@code x -> y} with {@code amount} lets {@code y} transfer up
+ * to {@code amount} to {@code x}.
+ * <p>
+ * The residual graph is a CSR of arcs built once per {@link TrustGraph} (parallel TRUSTS edges between the
+ * same users are one arc with the sum of their amounts, every arc has a reverse arc), the flow is a
+ * {@code double[]} indexed by arc. Augmenting paths are limited to {@code maxHops}, the search stops early
+ * once {@code requestedValue} is reached or the deadline has passed. Augmenting along reverse arcs can route
+ * value over more than {@code maxHops} users, so the flow is decomposed into sender-to-receiver routes
+ * (shortest first) and routes longer than {@code maxHops} are dropped from the result. An interrupted thread
+ * stops it with a {@link java.util.concurrent.CancellationException}.
+ */
+public final class MaxFlow {
+
+    private static final double EPSILON = 1e-9;
+
+    // residual graph of the most recent graph, rebuilt on the first flow request after a reload or change batch
+    private static volatile Cached cached;
+
+    private MaxFlow() {}
+
+    /**
+     * Transfer steps {@code from[i] -> to[i]} of {@code amounts[i]}, ordered so that every user has received
+     * its value before passing it on. {@code complete} is {@code false} if the deadline stopped the search.
+     */
+    public record Result(double value, boolean complete, int[] from, int[] to, double[] amounts) {
+
+        public int size() {
+            return from.length;
+        }
+    }
+
+    /**
+     * @param requestedValue stop once this value can be transferred, {@code <= 0} computes the maximum flow
+     */
+    public static Result compute(TrustGraph graph, int sender, int receiver, int maxHops, double requestedValue, long deadlineNanos) {
+        if ((sender < 0) || (receiver < 0) || (sender == receiver)) {
+            return new Result(0, true, new int[0], new int[0], new double[0]);
+        }
+        double target = requestedValue > 0 ? requestedValue : Double.POSITIVE_INFINITY;
+        Network network = network(graph);
+        Workspace ws = Workspace.get(graph.nodeCount(), network.arcCount());
+        try {
+            double value = 0;
+            boolean complete = true;
+            while (value < target - EPSILON) {
+                Cancellation.check();
+                if (System.nanoTime() > deadlineNanos) {
+                    complete = false;
+                    break;
+                }
+                double pushed = augment(network, sender, receiver, maxHops, target - value, ws);
+                if (pushed <= EPSILON) {
+                    break;
+                }
+                value += pushed;
+            }
+            return steps(network, sender, receiver, maxHops, complete, ws);
+        } finally {
+            ws.reset();
+        }
+    }
+
+    private static Network network(TrustGraph graph) {
+        Cached current = cached;
+        if ((current != null) && (current.graph.get() == graph)) {
+            return current.network;
+        }
+        Network network = new Network(graph);
+        cached = new Cached(new WeakReference<>(graph), network);
+        return network;
+    }
+
+    /**
+     * BFS in the residual graph, pushes the bottleneck along the shortest augmenting path.
+     */
+    private static double augment(Network network, int sender, int receiver, int maxHops, double limit, Workspace ws) {
+        int stamp = ws.nextStamp();
+        int[] queue = ws.queue;
+        int head = 0;
+        int tail = 0;
+        ws.seen[sender] = stamp;
+        ws.depth[sender] = 0;
+        ws.bottleneck[sender] = limit;
+        queue[tail++] = sender;
+        while ((head < tail) && (ws.seen[receiver] != stamp)) {
+            if ((head & 1023) == 1023) {
+                Cancellation.check();
+            }
+            int node = queue[head++];
+            if (ws.depth[node] >= maxHops) {
+                continue;
+            }
+            for (int arc = network.offsets[node]; arc < network.offsets[node + 1]; arc++) {
+                int next = network.heads[arc];
+                double residual = network.capacities[arc] - ws.flow[arc];
+                if ((residual <= EPSILON) || (ws.seen[next] == stamp)) {
+                    continue;
+                }
+                ws.seen[next] = stamp;
+                ws.parent[next] = arc;
+                ws.depth[next] = ws.depth[node] + 1;
+                ws.bottleneck[next] = Math.min(ws.bottleneck[node], residual);
+                queue[tail++] = next;
+            }
+        }
+        if (ws.seen[receiver] != stamp) {
+            return 0;
+        }
+        double pushed = ws.bottleneck[receiver];
+        for (int node = receiver; node != sender; ) {
+            int arc = ws.parent[node];
+            ws.addFlow(arc, pushed);
+            ws.addFlow(network.reverse[arc], -pushed);
+            node = network.heads[network.reverse[arc]];
+        }
+        return pushed;
+    }
+
+    private static Result steps(Network network, int sender, int receiver, int maxHops, boolean complete, Workspace ws) {
+        // arcs carrying flow, value sent both ways between two users is netted
+        int[] arcs = ws.touchedArcs();
+        int count = 0;
+        int[] from = new int[arcs.length];
+        int[] to = new int[arcs.length];
+        double[] amounts = new double[arcs.length];
+        for (int arc : arcs) {
+            double amount = ws.flow[arc];
+            if (amount <= EPSILON) {
+                continue;
+            }
+            int tail = network.heads[network.reverse[arc]];
+            int head = network.heads[arc];
+            for (int back = network.offsets[head]; (back < network.offsets[head + 1]) && (amount > EPSILON); back++) {
+                if ((network.heads[back] == tail) && (ws.flow[back] > EPSILON)) {
+                    double netted = Math.min(amount, ws.flow[back]);
+                    ws.flow[back] -= netted;
+                    amount -= netted;
+                }
+            }
+            ws.flow[arc] = amount;
+            if (amount > EPSILON) {
+                from[count] = tail;
+                to[count] = head;
+                amounts[count] = amount;
+                count++;
+            }
+        }
+        Routes routes = new Routes(ws, from, to, amounts, count);
+        double value = routes.decompose(sender, receiver, maxHops);
+        return routes.ordered(sender, value, complete);
+    }
+
+    /**
+     * Flow arcs by tail user, decomposed into routes from the sender to the receiver. Only the value of routes
+     * within {@code maxHops} is kept as transfer steps.
+     */
+    private static final class Routes {
+
+        private final Workspace ws;
+        private final int[] from;
+        private final int[] to;
+        private final double[] remaining;
+        private final double[] kept;
+        private final int[] byTail;
+        private final int count;
+
+        Routes(Workspace ws, int[] from, int[] to, double[] amounts, int count) {
+            this.ws = ws;
+            this.from = from;
+            this.to = to;
+            this.remaining = amounts;
+            this.kept = new double[count];
+            this.count = count;
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) from[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            byTail = new int[count];
+            int stamp = ws.nextStamp();
+            for (int k = 0; k < count; k++) {
+                int i = (int) keys[k];
+                byTail[k] = i;
+                if (ws.seen[from[i]] != stamp) {
+                    ws.seen[from[i]] = stamp;
+                    ws.first[from[i]] = k;
+                }
+            }
+            ws.tails = stamp;
+        }
+
+        private int first(int node) {
+            return ws.seen[node] == ws.tails ? ws.first[node] : count;
+        }
+
+        double decompose(int sender, int receiver, int maxHops) {
+            int[] marks = ws.marks;
+            int[] queue = ws.queue;
+            double value = 0;
+            while (true) {
+                Cancellation.check();
+                // BFS over the remaining flow, marks instead of seen keep the tail index valid
+                int round = ws.nextMark();
+                int head = 0;
+                int tail = 0;
+                marks[sender] = round;
+                ws.depth[sender] = 0;
+                queue[tail++] = sender;
+                while ((head < tail) && (marks[receiver] != round)) {
+                    int node = queue[head++];
+                    for (int k = first(node); (k < count) && (from[byTail[k]] == node); k++) {
+                        int i = byTail[k];
+                        if ((remaining[i] <= EPSILON) || (marks[to[i]] == round)) {
+                            continue;
+                        }
+                        marks[to[i]] = round;
+                        ws.parent[to[i]] = i;
+                        ws.depth[to[i]] = ws.depth[node] + 1;
+                        queue[tail++] = to[i];
+                    }
+                }
+                if (marks[receiver] != round) {
+                    return value;
+                }
+                double amount = Double.POSITIVE_INFINITY;
+                for (int node = receiver; node != sender; node = from[ws.parent[node]]) {
+                    amount = Math.min(amount, remaining[ws.parent[node]]);
+                }
+                boolean within = ws.depth[receiver] <= maxHops;
+                for (int node = receiver; node != sender; node = from[ws.parent[node]]) {
+                    remaining[ws.parent[node]] -= amount;
+                    if (within) {
+                        kept[ws.parent[node]] += amount;
+                    }
+                }
+                if (within) {
+                    value += amount;
+                }
+            }
+        }
+
+        /**
+         * Kahn's order starting at the sender, steps on flow cycles (if any) are appended at the end.
+         */
+        Result ordered(int sender, double value, boolean complete) {
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                if (kept[i] > EPSILON) {
+                    ws.incoming[to[i]]++;
+                    size++;
+                }
+            }
+            int[] order = new int[size];
+            boolean[] emitted = new boolean[count];
+            int steps = 0;
+            int[] queue = ws.queue;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = sender;
+            while (head < tail) {
+                int node = queue[head++];
+                for (int k = first(node); (k < count) && (from[byTail[k]] == node); k++) {
+                    int i = byTail[k];
+                    if (kept[i] <= EPSILON) {
+                        continue;
+                    }
+                    order[steps++] = i;
+                    emitted[i] = true;
+                    if (--ws.incoming[to[i]] == 0) {
+                        queue[tail++] = to[i];
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (kept[i] > EPSILON) {
+                    ws.incoming[to[i]] = 0;
+                    if (!emitted[i]) {
+                        order[steps++] = i;
+                    }
+                }
+            }
+            int[] stepFrom = new int[size];
+            int[] stepTo = new int[size];
+            double[] stepAmounts = new double[size];
+            for (int s = 0; s < size; s++) {
+                stepFrom[s] = from[order[s]];
+                stepTo[s] = to[order[s]];
+                stepAmounts[s] = kept[order[s]];
+            }
+            return new Result(value, complete, stepFrom, stepTo, stepAmounts);
+        }
+    }
+
+    private record Cached(WeakReference<TrustGraph> graph, Network network) {}
+
+    /**
+     * Residual arcs of a graph: for every user the arcs to its trusters (capacity is the summed amount) and the
+     * zero-capacity reverse arcs to its trustees, {@code reverse[arc]} is the paired arc.
+     */
+    private static final class Network {
+
+        private final int[] offsets;
+        private final int[] heads;
+        private final double[] capacities;
+        private final int[] reverse;
+
+        Network(TrustGraph graph) {
+            int nodes = graph.nodeCount();
+            offsets = new int[nodes + 1];
+            for (int node = 0; node < nodes; node++) {
+                TrustGraph.Row trusters = graph.inRow(node);
+                for (int k = trusters.start(); k < trusters.end(); ) {
+                    int truster = trusters.nodes()[k];
+                    double capacity = 0;
+                    for (; (k < trusters.end()) && (trusters.nodes()[k] == truster); k++) {
+                        capacity += trusters.amounts()[k];
+                    }
+                    if (capacity > EPSILON) {
+                        offsets[node + 1]++;
+                        offsets[truster + 1]++;
+                    }
+                }
+            }
+            for (int node = 0; node < nodes; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            heads = new int[offsets[nodes]];
+            capacities = new double[offsets[nodes]];
+            reverse = new int[offsets[nodes]];
+            int[] fill = Arrays.copyOf(offsets, nodes);
+            for (int node = 0; node < nodes; node++) {
+                TrustGraph.Row trusters = graph.inRow(node);
+                for (int k = trusters.start(); k < trusters.end(); ) {
+                    int truster = trusters.nodes()[k];
+                    double capacity = 0;
+                    for (; (k < trusters.end()) && (trusters.nodes()[k] == truster); k++) {
+                        capacity += trusters.amounts()[k];
+                    }
+                    if (capacity > EPSILON) {
+                        int arc = fill[node]++;
+                        int back = fill[truster]++;
+                        heads[arc] = truster;
+                        capacities[arc] = capacity;
+                        reverse[arc] = back;
+                        heads[back] = node;
+                        reverse[back] = arc;
+                    }
+                }
+            }
+        }
+
+        int arcCount() {
+            return heads.length;
+        }
+    }
+
+    private static final class Workspace {
+
+        private static final ThreadLocal<Workspace> LOCAL = new ThreadLocal<>();
+
+        private final int[] seen;
+        private final int[] marks;
+        private final int[] parent;
+        private final int[] depth;
+        private final int[] first;
+        private final int[] incoming;
+        private final double[] bottleneck;
+        private final int[] queue;
+        private final double[] flow;
+        private int[] touched = new int[64];
+        private int touchedCount;
+        private int stamp;
+        private int tails;
+        private int mark;
+
+        private Workspace(int nodes, int arcs) {
+            seen = new int[nodes];
+            marks = new int[nodes];
+            parent = new int[nodes];
+            depth = new int[nodes];
+            first = new int[nodes];
+            incoming = new int[nodes];
+            bottleneck = new double[nodes];
+            queue = new int[nodes];
+            flow = new double[arcs];
+        }
+
+        static Workspace get(int nodes, int arcs) {
+            Workspace ws = LOCAL.get();
+            if ((ws == null) || (ws.seen.length < nodes) || (ws.flow.length < arcs)) {
+                ws = new Workspace(Math.max(nodes, ws == null ? 0 : ws.seen.length), Math.max(arcs, ws == null ? 0 : ws.flow.length));
+                LOCAL.set(ws);
+            }
+            return ws;
+        }
+
+        int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+
+        int nextMark() {
+            if (++mark == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                mark = 1;
+            }
+            return mark;
+        }
+
+        void addFlow(int arc, double value) {
+            if (flow[arc] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = arc;
+            }
+            flow[arc] += value;
+        }
+
+        /**
+         * Distinct arcs whose flow was changed, an arc back at zero flow may be listed again later.
+         */
+        int[] touchedArcs() {
+            int[] arcs = Arrays.copyOf(touched, touchedCount);
+            Arrays.sort(arcs);
+            int distinct = 0;
+            for (int i = 0; i < arcs.length; i++) {
+                if ((i == 0) || (arcs[i] != arcs[i - 1])) {
+                    arcs[distinct++] = arcs[i];
+                }
+            }
+            return Arrays.copyOf(arcs, distinct);
+        }
+
+        // flow back to zero for the next computation on this thread
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                flow[touched[i]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+}
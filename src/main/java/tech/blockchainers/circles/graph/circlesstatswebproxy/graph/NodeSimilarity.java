@@ -0,0 +1,184 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Jaccard similarity of the trustee sets of two users, like {@code gds.nodeSimilarity} on the TRUSTS
+ * projection: only the {@code topK} most similar users are kept per user. Candidates are found through the
+ * in-edges, which act as an inverted index (trustee to trusters), so only users sharing at least one
+ * trustee are ever compared and the result needs {@code O(n * topK)} memory.
+ */
+public final class NodeSimilarity {
+
+    private NodeSimilarity() {}
+
+    /**
+     * Pairs {@code (nodes1[i], nodes2[i])} grouped by {@code nodes1}, every group sorted by descending similarity.
+     */
+    public record Result(int[] nodes1, int[] nodes2, double[] similarities) {
+
+        public int size() {
+            return nodes1.length;
+        }
+    }
+
+    public static Result compute(TrustGraph graph, int topK, ForkJoinPool pool) {
+        int nodeCount = graph.nodeCount();
+        int[] counts = new int[nodeCount];
+        int[] neighbors = new int[Math.multiplyExact(nodeCount, topK)];
+        double[] similarities = new double[neighbors.length];
+        ParallelRange.forEach(pool, nodeCount, (from, to) -> {
+            Workspace ws = Workspace.get(nodeCount, topK);
+            for (int node = from; node < to; node++) {
+                counts[node] = ws.topK(graph, node, topK, neighbors, similarities, node * topK);
+            }
+        });
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        int[] nodes1 = new int[total];
+        int[] nodes2 = new int[total];
+        double[] values = new double[total];
+        int row = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            for (int k = 0; k < counts[node]; k++) {
+                nodes1[row] = node;
+                nodes2[row] = neighbors[node * topK + k];
+                values[row] = similarities[node * topK + k];
+                row++;
+            }
+        }
+        return new Result(nodes1, nodes2, values);
+    }
+
+    /**
+     * The {@code topK} most similar users of a single user, computed on demand.
+     */
+    public static Result forNode(TrustGraph graph, int node, int topK) {
+        if (node < 0) {
+            return new Result(new int[0], new int[0], new double[0]);
+        }
+        int[] neighbors = new int[topK];
+        double[] similarities = new double[topK];
+        int count = Workspace.get(graph.nodeCount(), topK).topK(graph, node, topK, neighbors, similarities, 0);
+        int[] nodes1 = new int[count];
+        Arrays.fill(nodes1, node);
+        return new Result(nodes1, Arrays.copyOf(neighbors, count), Arrays.copyOf(similarities, count));
+    }
+
+    private static final class Workspace {
+
+        private static final ThreadLocal<Workspace> LOCAL = new ThreadLocal<>();
+
+        private final int[] shared;
+        private final int[] touched;
+        private final int[] heapNodes;
+        private final double[] heapSimilarities;
+
+        private Workspace(int size, int topK) {
+            shared = new int[size];
+            touched = new int[size];
+            heapNodes = new int[topK];
+            heapSimilarities = new double[topK];
+        }
+
+        static Workspace get(int size, int topK) {
+            Workspace ws = LOCAL.get();
+            if ((ws == null) || (ws.shared.length < size) || (ws.heapNodes.length < topK)) {
+                ws = new Workspace(size, topK);
+                LOCAL.set(ws);
+            }
+            return ws;
+        }
+
+        /**
+         * Counts the shared trustees with every candidate, keeps the best {@code topK} in a min-heap and writes
+         * them in descending order to {@code neighbors}/{@code similarities} starting at {@code offset}.
+         */
+        int topK(TrustGraph graph, int node, int topK, int[] neighbors, double[] similarities, int offset) {
+            int degree = graph.outDegree(node);
+            if (degree == 0) {
+                return 0;
+            }
+            int touchedCount = 0;
+            for (int k = 0; k < degree; k++) {
+                int trustee = graph.outTarget(node, k);
+                TrustGraph.Row trusters = graph.inRow(trustee);
+                for (int j = trusters.start(), end = trusters.end(); j < end; j++) {
+                    int candidate = trusters.nodes()[j];
+                    if (candidate != node) {
+                        if (shared[candidate] == 0) {
+                            touched[touchedCount++] = candidate;
+                        }
+                        shared[candidate]++;
+                    }
+                }
+            }
+            int heapSize = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int candidate = touched[i];
+                int intersection = shared[candidate];
+                shared[candidate] = 0;
+                double similarity = (double) intersection / (degree + graph.outDegree(candidate) - intersection);
+                if (heapSize < topK) {
+                    heapNodes[heapSize] = candidate;
+                    heapSimilarities[heapSize] = similarity;
+                    siftUp(heapSize++);
+                } else if (similarity > heapSimilarities[0]) {
+                    heapNodes[0] = candidate;
+                    heapSimilarities[0] = similarity;
+                    siftDown(0, heapSize);
+                }
+            }
+            for (int size = heapSize; size > 0; size--) {
+                neighbors[offset + size - 1] = heapNodes[0];
+                similarities[offset + size - 1] = heapSimilarities[0];
+                heapNodes[0] = heapNodes[size - 1];
+                heapSimilarities[0] = heapSimilarities[size - 1];
+                siftDown(0, size - 1);
+            }
+            return heapSize;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heapSimilarities[parent] <= heapSimilarities[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index, int size) {
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if ((left < size) && (heapSimilarities[left] < heapSimilarities[smallest])) {
+                    smallest = left;
+                }
+                if ((right < size) && (heapSimilarities[right] < heapSimilarities[smallest])) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(smallest, index);
+                index = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int node = heapNodes[a];
+            heapNodes[a] = heapNodes[b];
+            heapNodes[b] = node;
+            double similarity = heapSimilarities[a];
+            heapSimilarities[a] = heapSimilarities[b];
+            heapSimilarities[b] = similarity;
+        }
+    }
+}
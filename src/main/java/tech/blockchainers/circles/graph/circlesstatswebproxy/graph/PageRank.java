@@ -0,0 +1,62 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PageRank over the TRUSTS edges of a {@link TrustGraph} with the same (non-normalized) semantics as
+ * {@code gds.pageRank}: every user starts with {@code 1 - dampingFactor}, the iteration stops after
+ * {@code maxIterations} or when no score changes by more than {@code tolerance}.
+ */
+public final class PageRank {
+
+    private PageRank() {}
+
+    public static double[] compute(TrustGraph graph, double dampingFactor, int maxIterations, double tolerance, ForkJoinPool pool) {
+        double[] initial = new double[graph.nodeCount()];
+        Arrays.fill(initial, 1 - dampingFactor);
+        return compute(graph, dampingFactor, maxIterations, tolerance, pool, initial).scores();
+    }
+
+    public static Result compute(TrustGraph graph, double dampingFactor, int maxIterations, double tolerance, ForkJoinPool pool,
+                                 double[] initial) {
+        int nodeCount = graph.nodeCount();
+        double base = 1 - dampingFactor;
+        double[] scores = initial.clone();
+        double[] next = new double[nodeCount];
+        double[] contribution = new double[nodeCount];
+        int iteration = 0;
+        double delta = Double.MAX_VALUE;
+        while ((iteration < maxIterations) && (delta > tolerance)) {
+            double[] current = scores;
+            ParallelRange.forEach(pool, nodeCount, (from, to) -> {
+                for (int node = from; node < to; node++) {
+                    int degree = graph.outDegree(node);
+                    contribution[node] = degree == 0 ? 0 : current[node] / degree;
+                }
+            });
+            double[] target = next;
+            delta = ParallelRange.max(pool, nodeCount, (from, to) -> {
+                double max = 0;
+                for (int node = from; node < to; node++) {
+                    double sum = 0;
+                    TrustGraph.Row trusters = graph.inRow(node);
+                    int[] sources = trusters.nodes();
+                    for (int k = trusters.start(), end = trusters.end(); k < end; k++) {
+                        sum += contribution[sources[k]];
+                    }
+                    double score = base + dampingFactor * sum;
+                    max = Math.max(max, Math.abs(score - current[node]));
+                    target[node] = score;
+                }
+                return max;
+            });
+            next = scores;
+            scores = target;
+            iteration++;
+        }
+        return new Result(scores, iteration, delta <= tolerance);
+    }
+
+    public record Result(double[] scores, int iterations, boolean converged) {}
+}
@@ -0,0 +1,97 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits {@code [0, size)} into chunks which are processed on a {@link ForkJoinPool}.
+ */
+public final class ParallelRange {
+
+    private static final int MIN_CHUNK = 256;
+
+    @FunctionalInterface
+    public interface RangeAction {
+        void run(int from, int to);
+    }
+
+    @FunctionalInterface
+    public interface RangeMax {
+        double apply(int from, int to);
+    }
+
+    private ParallelRange() {}
+
+    public static void forEach(ForkJoinPool pool, int size, RangeAction action) {
+        forEach(pool, size, MIN_CHUNK, action);
+    }
+
+    /**
+     * Like {@link #forEach(ForkJoinPool, int, RangeAction)} with a smaller minimal chunk, for ranges where a
+     * single element is already expensive.
+     */
+    public static void forEach(ForkJoinPool pool, int size, int minChunk, RangeAction action) {
+        pool.invoke(new Action(action, 0, size, chunk(pool, size, minChunk)));
+    }
+
+    public static double max(ForkJoinPool pool, int size, RangeMax reducer) {
+        return pool.invoke(new Max(reducer, 0, size, chunk(pool, size, MIN_CHUNK)));
+    }
+
+    private static int chunk(ForkJoinPool pool, int size, int minChunk) {
+        return Math.max(minChunk, size / (pool.getParallelism() * 8));
+    }
+
+    private static final class Action extends RecursiveAction {
+
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Action(RangeAction action, int from, int to, int chunk) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                action.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Action(action, from, mid, chunk), new Action(action, mid, to, chunk));
+        }
+    }
+
+    private static final class Max extends RecursiveTask<Double> {
+
+        private final RangeMax reducer;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Max(RangeMax reducer, int from, int to, int chunk) {
+            this.reducer = reducer;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= chunk) {
+                return reducer.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            Max left = new Max(reducer, from, mid, chunk);
+            left.fork();
+            double right = new Max(reducer, mid, to, chunk).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+/**
+ * Depth-first enumeration of simple trust paths (same direction as {@link PathFinder}) up to a maximum
+ * depth. Paths are handed to a {@link PathConsumer} as soon as they are found, the search stops when the
+ * consumer returns {@code false}, {@code maxPaths} is reached or the deadline has passed. An interrupted thread
+ * stops it with a {@link java.util.concurrent.CancellationException}.
+ */
+public final class PathEnumerator {
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    @FunctionalInterface
+    public interface PathConsumer {
+        boolean accept(int[] path, int length);
+    }
+
+    private PathEnumerator() {}
+
+    public static int enumerate(TrustGraph graph, int sender, int receiver, int maxDepth, int maxPaths,
+                                long deadlineNanos, PathConsumer consumer) {
+        if ((sender < 0) || (receiver < 0) || (sender == receiver) || (maxDepth < 1) || (maxPaths < 1)) {
+            return 0;
+        }
+        long[] onPath = new long[(graph.nodeCount() + 63) >>> 6];
+        int[] path = new int[maxDepth + 1];
+        int[] cursor = new int[maxDepth + 1];
+        path[0] = sender;
+        set(onPath, sender);
+        int depth = 0;
+        int found = 0;
+        int steps = 0;
+        while (depth >= 0) {
+            int node = path[depth];
+            if (cursor[depth] >= graph.inDegree(node)) {
+                clear(onPath, node);
+                depth--;
+                continue;
+            }
+            int k = cursor[depth]++;
+            if (++steps % DEADLINE_CHECK_INTERVAL == 0) {
+                Cancellation.check();
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    break;
+                }
+            }
+            int next = graph.inSource(node, k);
+            if ((graph.inAmount(node, k) <= 0) || get(onPath, next)) {
+                continue;
+            }
+            path[depth + 1] = next;
+            if (next == receiver) {
+                found++;
+                if (!consumer.accept(path, depth + 2) || (found >= maxPaths)) {
+                    break;
+                }
+            } else if (depth + 1 < maxDepth) {
+                depth++;
+                cursor[depth] = 0;
+                set(onPath, next);
+            }
+        }
+        return found;
+    }
+
+    private static boolean get(long[] bits, int node) {
+        return (bits[node >>> 6] & (1L << node)) != 0;
+    }
+
+    private static void set(long[] bits, int node) {
+        bits[node >>> 6] |= 1L << node;
+    }
+
+    private static void clear(long[] bits, int node) {
+        bits[node >>> 6] &= ~(1L << node);
+    }
+}
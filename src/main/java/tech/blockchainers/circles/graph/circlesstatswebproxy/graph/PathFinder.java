@@ -0,0 +1,247 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.Arrays;
+
+/**
+ * Trust path search on a {@link TrustGraph}. A path runs from the sender over its trusters to the
+ * receiver, i.e. every hop {@code path[i] -> path[i+1]} is a TRUSTS edge {@code path[i+1] -> path[i]}
+ * with {@code amount > 0}, matching {@code (sender)<-[*]-(receiver)} in Cypher.
+ */
+public final class PathFinder {
+
+    private PathFinder() {}
+
+    public static int[] shortestPath(TrustGraph graph, int sender, int receiver, int maxDepth, int maxVisited) {
+        if ((sender < 0) || (receiver < 0)) {
+            return new int[0];
+        }
+        if (sender == receiver) {
+            return new int[] { sender };
+        }
+        Workspace ws = Workspace.get(graph.nodeCount());
+        int stamp = ws.nextStamp();
+        int[] forward = ws.frontierA;
+        int[] backward = ws.frontierB;
+        int[] next = ws.frontierC;
+        ws.visit(ws.forwardSeen, ws.forwardParent, ws.forwardDist, sender, sender, 0, stamp);
+        ws.visit(ws.backwardSeen, ws.backwardParent, ws.backwardDist, receiver, receiver, 0, stamp);
+        forward[0] = sender;
+        backward[0] = receiver;
+        int forwardSize = 1;
+        int backwardSize = 1;
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        int visited = 2;
+        while ((forwardSize > 0) && (backwardSize > 0) && (forwardDepth + backwardDepth < maxDepth) && (visited <= maxVisited)) {
+            Cancellation.check();
+            int bestLength = Integer.MAX_VALUE;
+            int bestFrom = -1;
+            int bestTo = -1;
+            int nextSize = 0;
+            if (forwardSize <= backwardSize) {
+                for (int f = 0; f < forwardSize; f++) {
+                    int node = forward[f];
+                    TrustGraph.Row trusters = graph.inRow(node);
+                    for (int k = trusters.start(), end = trusters.end(); k < end; k++) {
+                        if (trusters.amounts()[k] <= 0) {
+                            continue;
+                        }
+                        int other = trusters.nodes()[k];
+                        if (ws.backwardSeen[other] == stamp) {
+                            int length = forwardDepth + 1 + ws.backwardDist[other];
+                            if (length < bestLength) {
+                                bestLength = length;
+                                bestFrom = node;
+                                bestTo = other;
+                            }
+                        }
+                        if (ws.forwardSeen[other] != stamp) {
+                            ws.visit(ws.forwardSeen, ws.forwardParent, ws.forwardDist, other, node, forwardDepth + 1, stamp);
+                            next[nextSize++] = other;
+                            visited++;
+                        }
+                    }
+                }
+                forwardDepth++;
+                int[] swap = forward;
+                forward = next;
+                next = swap;
+                forwardSize = nextSize;
+            } else {
+                for (int b = 0; b < backwardSize; b++) {
+                    int node = backward[b];
+                    TrustGraph.Row trustees = graph.outRow(node);
+                    for (int k = trustees.start(), end = trustees.end(); k < end; k++) {
+                        if (trustees.amounts()[k] <= 0) {
+                            continue;
+                        }
+                        int other = trustees.nodes()[k];
+                        if (ws.forwardSeen[other] == stamp) {
+                            int length = backwardDepth + 1 + ws.forwardDist[other];
+                            if (length < bestLength) {
+                                bestLength = length;
+                                bestFrom = other;
+                                bestTo = node;
+                            }
+                        }
+                        if (ws.backwardSeen[other] != stamp) {
+                            ws.visit(ws.backwardSeen, ws.backwardParent, ws.backwardDist, other, node, backwardDepth + 1, stamp);
+                            next[nextSize++] = other;
+                            visited++;
+                        }
+                    }
+                }
+                backwardDepth++;
+                int[] swap = backward;
+                backward = next;
+                next = swap;
+                backwardSize = nextSize;
+            }
+            if (bestLength <= maxDepth) {
+                return join(ws, bestFrom, bestTo);
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Shortest paths from one sender to many receivers with a single BFS over the trusters of the sender,
+     * stopping as soon as all receivers are reached. {@code paths[i]} belongs to {@code receivers[i]} and is
+     * empty if it cannot be reached within {@code maxDepth} hops or {@code maxVisited} users.
+     */
+    public static int[][] shortestPaths(TrustGraph graph, int sender, int[] receivers, int maxDepth, int maxVisited) {
+        int[][] paths = new int[receivers.length][];
+        if (sender < 0) {
+            Arrays.fill(paths, new int[0]);
+            return paths;
+        }
+        Workspace ws = Workspace.get(graph.nodeCount());
+        int stamp = ws.nextStamp();
+        int pending = 0;
+        for (int receiver : receivers) {
+            if ((receiver >= 0) && (ws.backwardSeen[receiver] != stamp)) {
+                ws.backwardSeen[receiver] = stamp;
+                pending++;
+            }
+        }
+        int[] frontier = ws.frontierA;
+        int[] next = ws.frontierB;
+        ws.visit(ws.forwardSeen, ws.forwardParent, ws.forwardDist, sender, sender, 0, stamp);
+        if (ws.backwardSeen[sender] == stamp) {
+            pending--;
+        }
+        frontier[0] = sender;
+        int frontierSize = 1;
+        int depth = 0;
+        int visited = 1;
+        while ((pending > 0) && (frontierSize > 0) && (depth < maxDepth) && (visited <= maxVisited)) {
+            Cancellation.check();
+            int nextSize = 0;
+            for (int f = 0; f < frontierSize; f++) {
+                int node = frontier[f];
+                TrustGraph.Row trusters = graph.inRow(node);
+                for (int k = trusters.start(), end = trusters.end(); k < end; k++) {
+                    int other = trusters.nodes()[k];
+                    if ((trusters.amounts()[k] <= 0) || (ws.forwardSeen[other] == stamp)) {
+                        continue;
+                    }
+                    ws.visit(ws.forwardSeen, ws.forwardParent, ws.forwardDist, other, node, depth + 1, stamp);
+                    next[nextSize++] = other;
+                    visited++;
+                    if (ws.backwardSeen[other] == stamp) {
+                        pending--;
+                    }
+                }
+            }
+            depth++;
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize;
+        }
+        for (int i = 0; i < receivers.length; i++) {
+            int receiver = receivers[i];
+            if ((receiver < 0) || (ws.forwardSeen[receiver] != stamp)) {
+                paths[i] = new int[0];
+                continue;
+            }
+            int[] path = new int[ws.forwardDist[receiver] + 1];
+            int node = receiver;
+            for (int j = path.length - 1; j >= 0; j--) {
+                path[j] = node;
+                node = ws.forwardParent[node];
+            }
+            paths[i] = path;
+        }
+        return paths;
+    }
+
+    private static int[] join(Workspace ws, int forwardEnd, int backwardStart) {
+        int forwardLength = ws.forwardDist[forwardEnd] + 1;
+        int backwardLength = ws.backwardDist[backwardStart] + 1;
+        int[] path = new int[forwardLength + backwardLength];
+        int node = forwardEnd;
+        for (int i = forwardLength - 1; i >= 0; i--) {
+            path[i] = node;
+            node = ws.forwardParent[node];
+        }
+        node = backwardStart;
+        for (int i = forwardLength; i < path.length; i++) {
+            path[i] = node;
+            node = ws.backwardParent[node];
+        }
+        return path;
+    }
+
+    private static final class Workspace {
+
+        private static final ThreadLocal<Workspace> LOCAL = new ThreadLocal<>();
+
+        private final int[] forwardSeen;
+        private final int[] forwardParent;
+        private final int[] forwardDist;
+        private final int[] backwardSeen;
+        private final int[] backwardParent;
+        private final int[] backwardDist;
+        private final int[] frontierA;
+        private final int[] frontierB;
+        private final int[] frontierC;
+        private int stamp;
+
+        private Workspace(int size) {
+            forwardSeen = new int[size];
+            forwardParent = new int[size];
+            forwardDist = new int[size];
+            backwardSeen = new int[size];
+            backwardParent = new int[size];
+            backwardDist = new int[size];
+            frontierA = new int[size];
+            frontierB = new int[size];
+            frontierC = new int[size];
+        }
+
+        static Workspace get(int size) {
+            Workspace ws = LOCAL.get();
+            if ((ws == null) || (ws.forwardSeen.length < size)) {
+                ws = new Workspace(size);
+                LOCAL.set(ws);
+            }
+            return ws;
+        }
+
+        int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(forwardSeen, 0);
+                Arrays.fill(backwardSeen, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+
+        void visit(int[] seen, int[] parent, int[] dist, int node, int from, int depth, int stamp) {
+            seen[node] = stamp;
+            parent[node] = from;
+            dist[node] = depth;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Triadic closure recommendations for every user of a {@link TrustGraph}, the precomputed form of
+ * {@code (u1)<-[:TRUSTS]-(u2)-[:TRUSTS]->(u3) WHERE NOT (u1)-[:TRUSTS]->(u3)} with named (not {@code 0x...})
+ * {@code u2} and {@code u3}. Candidates {@code u3} are deduplicated and ranked by the number of mutual
+ * trusters {@code u2}.
+ */
+public final class RecommendationIndex {
+
+    private final TrustGraph graph;
+    private final int maxPerUser;
+    private final int[][] candidates;
+    private final int[][] mutualTrusters;
+
+    private RecommendationIndex(TrustGraph graph, int maxPerUser, int[][] candidates, int[][] mutualTrusters) {
+        this.graph = graph;
+        this.maxPerUser = maxPerUser;
+        this.candidates = candidates;
+        this.mutualTrusters = mutualTrusters;
+    }
+
+    /**
+     * @param maxPerUser number of candidates kept per user, {@code <= 0} keeps all
+     */
+    public static RecommendationIndex build(TrustGraph graph, int maxPerUser, ForkJoinPool pool) {
+        int nodeCount = graph.nodeCount();
+        RecommendationIndex index = new RecommendationIndex(graph, maxPerUser, new int[nodeCount][], new int[nodeCount][]);
+        boolean[] eligible = eligible(graph);
+        ParallelRange.forEach(pool, nodeCount, (from, to) -> {
+            for (int node = from; node < to; node++) {
+                index.computeRow(node, eligible);
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Index for {@code changed}, which must be {@link #graph()} with {@code changes} applied. Only the rows of
+     * users a change can affect are recomputed: for a change {@code a -> b} these are {@code a}, {@code b}
+     * and the trustees of {@code a}. Falls back to a full build when the node numbering or names differ.
+     */
+    public RecommendationIndex update(TrustGraph changed, List<TrustEdgeChange> changes, ForkJoinPool pool) {
+        if (!sameNodes(graph, changed)) {
+            return build(changed, maxPerUser, pool);
+        }
+        int nodeCount = changed.nodeCount();
+        boolean[] affected = new boolean[nodeCount];
+        for (TrustEdgeChange change : changes) {
+            int truster = changed.indexOfAddress(change.truster());
+            int trustee = changed.indexOfAddress(change.trustee());
+            if (trustee >= 0) {
+                affected[trustee] = true;
+            }
+            if (truster >= 0) {
+                affected[truster] = true;
+                for (int k = 0, degree = changed.outDegree(truster); k < degree; k++) {
+                    affected[changed.outTarget(truster, k)] = true;
+                }
+            }
+        }
+        for (int node = graph.nodeCount(); node < nodeCount; node++) {
+            affected[node] = true;
+        }
+        int[] rows = new int[nodeCount];
+        int rowCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (affected[node]) {
+                rows[rowCount++] = node;
+            }
+        }
+        RecommendationIndex index = new RecommendationIndex(changed, maxPerUser,
+                Arrays.copyOf(candidates, nodeCount), Arrays.copyOf(mutualTrusters, nodeCount));
+        boolean[] eligible = eligible(changed);
+        ParallelRange.forEach(pool, rowCount, 16, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                index.computeRow(rows[i], eligible);
+            }
+        });
+        return index;
+    }
+
+    public TrustGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Recommended users for {@code node}, best first. Empty for unknown users ({@code node < 0}).
+     */
+    public int[] candidates(int node) {
+        return node < 0 ? new int[0] : candidates[node];
+    }
+
+    public int[] mutualTrusters(int node) {
+        return node < 0 ? new int[0] : mutualTrusters[node];
+    }
+
+    private static boolean sameNodes(TrustGraph previous, TrustGraph changed) {
+        if (previous.nodeCount() > changed.nodeCount()) {
+            return false;
+        }
+        for (int node = 0; node < previous.nodeCount(); node++) {
+            if ((previous.nodeId(node) != changed.nodeId(node)) || !Objects.equals(previous.name(node), changed.name(node))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean[] eligible(TrustGraph graph) {
+        boolean[] eligible = new boolean[graph.nodeCount()];
+        for (int node = 0; node < eligible.length; node++) {
+            String name = graph.name(node);
+            eligible[node] = (name != null) && !name.startsWith("0x");
+        }
+        return eligible;
+    }
+
+    private void computeRow(int node, boolean[] eligible) {
+        Workspace ws = Workspace.get(graph.nodeCount());
+        int[] counts = ws.counts;
+        for (int k = 0, degree = graph.outDegree(node); k < degree; k++) {
+            counts[graph.outTarget(node, k)] = -1;
+        }
+        counts[node] = -1;
+        int touchedCount = 0;
+        for (int j = 0, trusters = graph.inDegree(node); j < trusters; j++) {
+            int truster = graph.inSource(node, j);
+            if (!eligible[truster]) {
+                continue;
+            }
+            for (int k = 0, degree = graph.outDegree(truster); k < degree; k++) {
+                int candidate = graph.outTarget(truster, k);
+                if (!eligible[candidate] || (counts[candidate] < 0)) {
+                    continue;
+                }
+                if (counts[candidate] == 0) {
+                    ws.touched[touchedCount++] = candidate;
+                }
+                counts[candidate]++;
+            }
+        }
+        // mutual truster count descending, then node ascending
+        long[] ranked = new long[touchedCount];
+        for (int i = 0; i < touchedCount; i++) {
+            int candidate = ws.touched[i];
+            ranked[i] = ((long) -counts[candidate] << 32) | candidate;
+            counts[candidate] = 0;
+        }
+        for (int k = 0, degree = graph.outDegree(node); k < degree; k++) {
+            counts[graph.outTarget(node, k)] = 0;
+        }
+        counts[node] = 0;
+        Arrays.sort(ranked);
+        int size = maxPerUser > 0 ? Math.min(maxPerUser, touchedCount) : touchedCount;
+        int[] rowCandidates = new int[size];
+        int[] rowMutual = new int[size];
+        for (int i = 0; i < size; i++) {
+            rowCandidates[i] = (int) ranked[i];
+            rowMutual[i] = (int) -(ranked[i] >> 32);
+        }
+        candidates[node] = rowCandidates;
+        mutualTrusters[node] = rowMutual;
+    }
+
+    private static final class Workspace {
+
+        private static final ThreadLocal<Workspace> LOCAL = new ThreadLocal<>();
+
+        private final int[] counts;
+        private final int[] touched;
+
+        private Workspace(int size) {
+            counts = new int[size];
+            touched = new int[size];
+        }
+
+        static Workspace get(int size) {
+            Workspace ws = LOCAL.get();
+            if ((ws == null) || (ws.counts.length < size)) {
+                ws = new Workspace(size);
+                LOCAL.set(ws);
+            }
+            return ws;
+        }
+    }
+}
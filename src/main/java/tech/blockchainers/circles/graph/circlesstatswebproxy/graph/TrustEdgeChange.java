@@ -0,0 +1,15 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+/**
+ * Insert, update ({@code removed == false}) or removal of the TRUSTS edge {@code truster -> trustee}.
+ */
+public record TrustEdgeChange(String truster, String trustee, double amount, boolean removed) {
+
+    public static TrustEdgeChange upsert(String truster, String trustee, double amount) {
+        return new TrustEdgeChange(truster, trustee, amount, false);
+    }
+
+    public static TrustEdgeChange remove(String truster, String trustee) {
+        return new TrustEdgeChange(truster, trustee, 0, true);
+    }
+}
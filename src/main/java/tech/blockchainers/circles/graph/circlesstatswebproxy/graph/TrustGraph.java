@@ -0,0 +1,491 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable in-memory copy of the User/TRUSTS graph in compressed sparse row layout.
+ * Nodes are dense ints, edges are stored twice (outgoing = trustees, incoming = trusters).
+ * <p>
+ * {@link #withChanges} does not copy the rows: the changed graph shares the base arrays and only holds the
+ * adjacency lists of the users touched by changes (a delta overlay). {@link #compacted()} folds the overlay into
+ * new base arrays. Both layouts have the same nodes and edges in the same order (incoming edges are sorted by
+ * source). Hot loops read a user's edges through {@link #outRow}/{@link #inRow}, which resolve the overlay once
+ * per user instead of once per edge.
+ */
+public final class TrustGraph {
+
+    private final Layout layout;
+    private final long loadedAt;
+
+    private TrustGraph(Layout layout, long loadedAt) {
+        this.layout = layout;
+        this.loadedAt = loadedAt;
+    }
+
+    public int nodeCount() {
+        return layout.nodeCount;
+    }
+
+    public int edgeCount() {
+        return layout.edgeCount;
+    }
+
+    public long loadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Number of adjacency lists held in the delta overlay, {@code 0} once compacted.
+     */
+    public int overlaySize() {
+        return layout.overlaySize;
+    }
+
+    public long nodeId(int node) {
+        return node < layout.baseNodeCount ? layout.nodeIds[node] : -1;
+    }
+
+    public String address(int node) {
+        return node < layout.baseNodeCount ? layout.addresses[node] : layout.addedAddresses[node - layout.baseNodeCount];
+    }
+
+    public String name(int node) {
+        return node < layout.baseNodeCount ? layout.names[node] : null;
+    }
+
+    public String imageUrl(int node) {
+        return node < layout.baseNodeCount ? layout.imageUrls[node] : null;
+    }
+
+    public int indexOfAddress(String address) {
+        if (address == null) {
+            return -1;
+        }
+        Integer node = layout.addressIndex.get(address);
+        if ((node == null) && !layout.addedIndex.isEmpty()) {
+            node = layout.addedIndex.get(address);
+        }
+        return node == null ? -1 : node;
+    }
+
+    public int indexOfName(String name) {
+        return name == null ? -1 : layout.nameIndex.getOrDefault(name, -1);
+    }
+
+    /**
+     * Trustees of {@code node} with the amounts of its outgoing TRUSTS edges.
+     */
+    public Row outRow(int node) {
+        Row changed = layout.changed(layout.outRows, node);
+        return changed != null ? changed : new Row(layout.outTargets, layout.outAmounts, layout.outOffsets[node], layout.outOffsets[node + 1]);
+    }
+
+    /**
+     * Trusters of {@code node} (sorted by node) with the amounts of its incoming TRUSTS edges.
+     */
+    public Row inRow(int node) {
+        Row changed = layout.changed(layout.inRows, node);
+        return changed != null ? changed : new Row(layout.inSources, layout.inAmounts, layout.inOffsets[node], layout.inOffsets[node + 1]);
+    }
+
+    public int outDegree(int node) {
+        Row changed = layout.changed(layout.outRows, node);
+        return changed != null ? changed.degree() : layout.outOffsets[node + 1] - layout.outOffsets[node];
+    }
+
+    public int outTarget(int node, int k) {
+        Row changed = layout.changed(layout.outRows, node);
+        return changed != null ? changed.nodes[k] : layout.outTargets[layout.outOffsets[node] + k];
+    }
+
+    public double outAmount(int node, int k) {
+        Row changed = layout.changed(layout.outRows, node);
+        return changed != null ? changed.amounts[k] : layout.outAmounts[layout.outOffsets[node] + k];
+    }
+
+    public int inDegree(int node) {
+        Row changed = layout.changed(layout.inRows, node);
+        return changed != null ? changed.degree() : layout.inOffsets[node + 1] - layout.inOffsets[node];
+    }
+
+    public int inSource(int node, int k) {
+        Row changed = layout.changed(layout.inRows, node);
+        return changed != null ? changed.nodes[k] : layout.inSources[layout.inOffsets[node] + k];
+    }
+
+    public double inAmount(int node, int k) {
+        Row changed = layout.changed(layout.inRows, node);
+        return changed != null ? changed.amounts[k] : layout.inAmounts[layout.inOffsets[node] + k];
+    }
+
+    /**
+     * Copy of this graph with the given edge changes applied, later changes of the same edge win. Users that
+     * are only known by address are appended with node id {@code -1}. Runs in the size of the changed
+     * adjacency lists plus one copy of the node-indexed overlay, the base arrays are shared.
+     */
+    public TrustGraph withChanges(List<TrustEdgeChange> changes) {
+        Map<String, Integer> addedIndex = new HashMap<>(layout.addedIndex);
+        String[] addedAddresses = layout.addedAddresses;
+        Map<Integer, EdgeList> outEdits = new HashMap<>();
+        Map<Integer, EdgeList> inEdits = new HashMap<>();
+        int nodeCount = layout.nodeCount;
+        int edgeCount = layout.edgeCount;
+        for (TrustEdgeChange change : changes) {
+            if (change.truster() == null || change.trustee() == null) {
+                throw new IllegalArgumentException("Trust change without address");
+            }
+            int source = indexOf(addedIndex, change.truster());
+            int target = indexOf(addedIndex, change.trustee());
+            if (change.removed() && ((source < 0) || (target < 0))) {
+                continue;
+            }
+            for (String address : new String[] { change.truster(), change.trustee() }) {
+                if (indexOf(addedIndex, address) < 0) {
+                    addedAddresses = Arrays.copyOf(addedAddresses, nodeCount - layout.baseNodeCount + 1);
+                    addedAddresses[nodeCount - layout.baseNodeCount] = address;
+                    addedIndex.put(address, nodeCount);
+                    outEdits.put(nodeCount, new EdgeList());
+                    inEdits.put(nodeCount, new EdgeList());
+                    nodeCount++;
+                }
+            }
+            source = indexOf(addedIndex, change.truster());
+            target = indexOf(addedIndex, change.trustee());
+            EdgeList out = outEdits.computeIfAbsent(source, node -> new EdgeList(outRow(node)));
+            EdgeList in = inEdits.computeIfAbsent(target, node -> new EdgeList(inRow(node)));
+            int before = out.size;
+            if (change.removed()) {
+                out.remove(target);
+                in.remove(source);
+            } else {
+                out.put(target, change.amount(), false);
+                in.put(source, change.amount(), true);
+            }
+            edgeCount += out.size - before;
+        }
+        return new TrustGraph(layout.withOverlay(nodeCount, edgeCount, addedAddresses, addedIndex, outEdits, inEdits), System.currentTimeMillis());
+    }
+
+    private int indexOf(Map<String, Integer> addedIndex, String address) {
+        Integer node = layout.addressIndex.get(address);
+        if (node == null) {
+            node = addedIndex.get(address);
+        }
+        return node == null ? -1 : node;
+    }
+
+    /**
+     * Equivalent graph with the delta overlay folded into new base arrays: same nodes with the same indexes,
+     * same edges in the same order. Returns this graph if there is no overlay.
+     */
+    public TrustGraph compacted() {
+        if (overlaySize() == 0) {
+            return this;
+        }
+        Builder builder = builder(nodeCount(), edgeCount());
+        for (int node = 0; node < nodeCount(); node++) {
+            builder.addNode(nodeId(node), address(node), name(node), imageUrl(node));
+        }
+        for (int node = 0; node < nodeCount(); node++) {
+            Row row = outRow(node);
+            for (int k = row.start(); k < row.end(); k++) {
+                builder.addEdge(node, row.nodes()[k], row.amounts()[k]);
+            }
+        }
+        return new TrustGraph(builder.build().layout, loadedAt);
+    }
+
+    public static Builder builder(int expectedNodes, int expectedEdges) {
+        return new Builder(expectedNodes, expectedEdges);
+    }
+
+    /**
+     * Adjacency list of one user: the neighbours {@code nodes[start..end)} and the TRUSTS amounts at the same
+     * positions. Shares the arrays of the graph, so it must not be modified.
+     */
+    public record Row(int[] nodes, double[] amounts, int start, int end) {
+
+        public int degree() {
+            return end - start;
+        }
+    }
+
+    private static final class Layout {
+
+        private static final Row[] NO_ROWS = new Row[0];
+
+        private final long[] nodeIds;
+        private final String[] addresses;
+        private final String[] names;
+        private final String[] imageUrls;
+        private final Map<String, Integer> addressIndex;
+        private final Map<String, Integer> nameIndex;
+        private final int baseNodeCount;
+
+        private final int[] outOffsets;
+        private final int[] outTargets;
+        private final double[] outAmounts;
+        private final int[] inOffsets;
+        private final int[] inSources;
+        private final double[] inAmounts;
+
+        // delta overlay: users added by changes and, indexed by node, the adjacency lists replacing the base rows
+        // of touched users (null for untouched users, empty arrays without overlay)
+        private final int nodeCount;
+        private final int edgeCount;
+        private final String[] addedAddresses;
+        private final Map<String, Integer> addedIndex;
+        private final Row[] outRows;
+        private final Row[] inRows;
+        private final int overlaySize;
+
+        private Layout(Layout base, int nodeCount, int edgeCount, String[] addedAddresses, Map<String, Integer> addedIndex,
+                       Row[] outRows, Row[] inRows, int overlaySize) {
+            this.nodeIds = base.nodeIds;
+            this.addresses = base.addresses;
+            this.names = base.names;
+            this.imageUrls = base.imageUrls;
+            this.addressIndex = base.addressIndex;
+            this.nameIndex = base.nameIndex;
+            this.baseNodeCount = base.baseNodeCount;
+            this.outOffsets = base.outOffsets;
+            this.outTargets = base.outTargets;
+            this.outAmounts = base.outAmounts;
+            this.inOffsets = base.inOffsets;
+            this.inSources = base.inSources;
+            this.inAmounts = base.inAmounts;
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+            this.addedAddresses = addedAddresses;
+            this.addedIndex = addedIndex;
+            this.outRows = outRows;
+            this.inRows = inRows;
+            this.overlaySize = overlaySize;
+        }
+
+        private Layout(long[] nodeIds, String[] addresses, String[] names, String[] imageUrls,
+                       int[] outOffsets, int[] outTargets, double[] outAmounts,
+                       int[] inOffsets, int[] inSources, double[] inAmounts) {
+            this.nodeIds = nodeIds;
+            this.addresses = addresses;
+            this.names = names;
+            this.imageUrls = imageUrls;
+            this.outOffsets = outOffsets;
+            this.outTargets = outTargets;
+            this.outAmounts = outAmounts;
+            this.inOffsets = inOffsets;
+            this.inSources = inSources;
+            this.inAmounts = inAmounts;
+            this.addressIndex = new HashMap<>(addresses.length * 2);
+            this.nameIndex = new HashMap<>(names.length * 2);
+            for (int n = 0; n < addresses.length; n++) {
+                if (addresses[n] != null) {
+                    addressIndex.putIfAbsent(addresses[n], n);
+                }
+                if (names[n] != null) {
+                    nameIndex.putIfAbsent(names[n], n);
+                }
+            }
+            this.baseNodeCount = nodeIds.length;
+            this.nodeCount = nodeIds.length;
+            this.edgeCount = outTargets.length;
+            this.addedAddresses = new String[0];
+            this.addedIndex = Map.of();
+            this.outRows = NO_ROWS;
+            this.inRows = NO_ROWS;
+            this.overlaySize = 0;
+        }
+
+        Row changed(Row[] rows, int node) {
+            return node < rows.length ? rows[node] : null;
+        }
+
+        Layout withOverlay(int nodeCount, int edgeCount, String[] addedAddresses, Map<String, Integer> addedIndex,
+                           Map<Integer, EdgeList> outEdits, Map<Integer, EdgeList> inEdits) {
+            Row[] outLists = Arrays.copyOf(outRows, nodeCount);
+            Row[] inLists = Arrays.copyOf(inRows, nodeCount);
+            int[] size = { overlaySize };
+            outEdits.forEach((node, edges) -> {
+                size[0] += outLists[node] == null ? 1 : 0;
+                outLists[node] = edges.toRow();
+            });
+            inEdits.forEach((node, edges) -> {
+                size[0] += inLists[node] == null ? 1 : 0;
+                inLists[node] = edges.toRow();
+            });
+            return new Layout(this, nodeCount, edgeCount, addedAddresses, Map.copyOf(addedIndex), outLists, inLists, size[0]);
+        }
+    }
+
+    // adjacency list being edited by withChanges, incoming lists are kept sorted by source
+    private static final class EdgeList {
+
+        private int[] nodes;
+        private double[] amounts;
+        private int size;
+
+        private EdgeList(int[] nodes, double[] amounts) {
+            this.nodes = nodes;
+            this.amounts = amounts;
+            this.size = nodes.length;
+        }
+
+        EdgeList() {
+            this(new int[0], new double[0]);
+        }
+
+        EdgeList(Row row) {
+            this(Arrays.copyOfRange(row.nodes(), row.start(), row.end()), Arrays.copyOfRange(row.amounts(), row.start(), row.end()));
+        }
+
+        // updates the first edge to other (dropping duplicates) or inserts it, at the end or in sorted position
+        void put(int other, double amount, boolean sorted) {
+            int first = indexOf(other);
+            if (first >= 0) {
+                amounts[first] = amount;
+                removeFrom(other, first + 1);
+                return;
+            }
+            int position = size;
+            if (sorted) {
+                while ((position > 0) && (nodes[position - 1] > other)) {
+                    position--;
+                }
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.max(4, size * 2));
+                amounts = Arrays.copyOf(amounts, nodes.length);
+            }
+            System.arraycopy(nodes, position, nodes, position + 1, size - position);
+            System.arraycopy(amounts, position, amounts, position + 1, size - position);
+            nodes[position] = other;
+            amounts[position] = amount;
+            size++;
+        }
+
+        void remove(int other) {
+            removeFrom(other, 0);
+        }
+
+        private void removeFrom(int other, int from) {
+            int kept = from;
+            for (int k = from; k < size; k++) {
+                if (nodes[k] != other) {
+                    nodes[kept] = nodes[k];
+                    amounts[kept] = amounts[k];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        private int indexOf(int other) {
+            for (int k = 0; k < size; k++) {
+                if (nodes[k] == other) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        Row toRow() {
+            return new Row(Arrays.copyOf(nodes, size), Arrays.copyOf(amounts, size), 0, size);
+        }
+    }
+
+    public static final class Builder {
+
+        private long[] nodeIds;
+        private String[] addresses;
+        private String[] names;
+        private String[] imageUrls;
+        private int nodeCount;
+
+        private int[] edgeSources;
+        private int[] edgeTargets;
+        private double[] edgeAmounts;
+        private int edgeCount;
+
+        private Builder(int expectedNodes, int expectedEdges) {
+            int nodes = Math.max(16, expectedNodes);
+            int edges = Math.max(16, expectedEdges);
+            this.nodeIds = new long[nodes];
+            this.addresses = new String[nodes];
+            this.names = new String[nodes];
+            this.imageUrls = new String[nodes];
+            this.edgeSources = new int[edges];
+            this.edgeTargets = new int[edges];
+            this.edgeAmounts = new double[edges];
+        }
+
+        public int addNode(long nodeId, String address, String name, String imageUrl) {
+            if (nodeCount == nodeIds.length) {
+                int capacity = nodeCount * 2;
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+                addresses = Arrays.copyOf(addresses, capacity);
+                names = Arrays.copyOf(names, capacity);
+                imageUrls = Arrays.copyOf(imageUrls, capacity);
+            }
+            nodeIds[nodeCount] = nodeId;
+            addresses[nodeCount] = address;
+            names[nodeCount] = name;
+            imageUrls[nodeCount] = imageUrl;
+            return nodeCount++;
+        }
+
+        public void addEdge(int source, int target, double amount) {
+            if (edgeCount == edgeSources.length) {
+                int capacity = edgeCount * 2;
+                edgeSources = Arrays.copyOf(edgeSources, capacity);
+                edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+                edgeAmounts = Arrays.copyOf(edgeAmounts, capacity);
+            }
+            edgeSources[edgeCount] = source;
+            edgeTargets[edgeCount] = target;
+            edgeAmounts[edgeCount] = amount;
+            edgeCount++;
+        }
+
+        public TrustGraph build() {
+            int[] outOffsets = new int[nodeCount + 1];
+            int[] inOffsets = new int[nodeCount + 1];
+            for (int e = 0; e < edgeCount; e++) {
+                outOffsets[edgeSources[e] + 1]++;
+                inOffsets[edgeTargets[e] + 1]++;
+            }
+            for (int n = 0; n < nodeCount; n++) {
+                outOffsets[n + 1] += outOffsets[n];
+                inOffsets[n + 1] += inOffsets[n];
+            }
+            int[] outTargets = new int[edgeCount];
+            double[] outAmounts = new double[edgeCount];
+            int[] inSources = new int[edgeCount];
+            double[] inAmounts = new double[edgeCount];
+            int[] outFill = Arrays.copyOf(outOffsets, nodeCount);
+            for (int e = 0; e < edgeCount; e++) {
+                int o = outFill[edgeSources[e]]++;
+                outTargets[o] = edgeTargets[e];
+                outAmounts[o] = edgeAmounts[e];
+            }
+            // filled from the outgoing rows, so incoming edges are sorted by source like in the delta overlays
+            int[] inFill = Arrays.copyOf(inOffsets, nodeCount);
+            for (int src = 0; src < nodeCount; src++) {
+                for (int o = outOffsets[src]; o < outOffsets[src + 1]; o++) {
+                    int i = inFill[outTargets[o]]++;
+                    inSources[i] = src;
+                    inAmounts[i] = outAmounts[o];
+                }
+            }
+            return new TrustGraph(new Layout(
+                    Arrays.copyOf(nodeIds, nodeCount),
+                    Arrays.copyOf(addresses, nodeCount),
+                    Arrays.copyOf(names, nodeCount),
+                    Arrays.copyOf(imageUrls, nodeCount),
+                    outOffsets, outTargets, outAmounts,
+                    inOffsets, inSources, inAmounts), System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.List;
+
+/**
+ * Published whenever a new {@link TrustGraph} snapshot becomes current. {@code previous} is {@code null}
+ * for the initial load.
+ */
+public record TrustGraphChangedEvent(TrustGraph previous, TrustGraph current, List<TrustEdgeChange> changes) {}
@@ -0,0 +1,78 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Edge level difference between two {@link TrustGraph} snapshots, users are matched by address.
+ */
+public final class TrustGraphDiff {
+
+    private TrustGraphDiff() {}
+
+    public static List<TrustEdgeChange> between(TrustGraph previous, TrustGraph current) {
+        List<TrustEdgeChange> changes = new ArrayList<>();
+        int[] toPrevious = new int[current.nodeCount()];
+        boolean[] matched = new boolean[previous.nodeCount()];
+        for (int node = 0; node < toPrevious.length; node++) {
+            toPrevious[node] = previous.indexOfAddress(current.address(node));
+            if (toPrevious[node] >= 0) {
+                matched[toPrevious[node]] = true;
+            }
+        }
+        for (int node = 0; node < toPrevious.length; node++) {
+            int old = toPrevious[node];
+            long[] currentEdges = edges(current, node, toPrevious);
+            long[] previousEdges = old < 0 ? new long[0] : edges(previous, old, null);
+            int i = 0;
+            int j = 0;
+            while ((i < currentEdges.length) || (j < previousEdges.length)) {
+                int c = i < currentEdges.length ? target(currentEdges[i]) : Integer.MAX_VALUE;
+                int p = j < previousEdges.length ? target(previousEdges[j]) : Integer.MAX_VALUE;
+                if ((c < 0) || (c < p)) {
+                    int k = slot(currentEdges[i++]);
+                    changes.add(TrustEdgeChange.upsert(current.address(node), current.address(current.outTarget(node, k)), current.outAmount(node, k)));
+                } else if (p < c) {
+                    int k = slot(previousEdges[j++]);
+                    changes.add(TrustEdgeChange.remove(previous.address(old), previous.address(previous.outTarget(old, k))));
+                } else {
+                    int ck = slot(currentEdges[i++]);
+                    int pk = slot(previousEdges[j++]);
+                    if (current.outAmount(node, ck) != previous.outAmount(old, pk)) {
+                        changes.add(TrustEdgeChange.upsert(current.address(node), current.address(current.outTarget(node, ck)), current.outAmount(node, ck)));
+                    }
+                }
+            }
+        }
+        for (int old = 0; old < matched.length; old++) {
+            if (!matched[old]) {
+                for (int k = 0, degree = previous.outDegree(old); k < degree; k++) {
+                    changes.add(TrustEdgeChange.remove(previous.address(old), previous.address(previous.outTarget(old, k))));
+                }
+            }
+        }
+        return changes;
+    }
+
+    // (target in previous id space, or -1 for users new in current) << 32 | adjacency slot, sorted by target
+    private static long[] edges(TrustGraph graph, int node, int[] mapping) {
+        int degree = graph.outDegree(node);
+        long[] edges = new long[degree];
+        for (int k = 0; k < degree; k++) {
+            int target = graph.outTarget(node, k);
+            long mapped = mapping == null ? target : mapping[target];
+            edges[k] = (mapped << 32) | k;
+        }
+        Arrays.sort(edges);
+        return edges;
+    }
+
+    private static int target(long edge) {
+        return (int) (edge >> 32);
+    }
+
+    private static int slot(long edge) {
+        return (int) edge;
+    }
+}
@@ -0,0 +1,6 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+/**
+ * One sender/receiver pair of a batch path request, as names or addresses depending on the endpoint.
+ */
+public record PathRequest(String sender, String receiver) {}
@@ -0,0 +1,98 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Row orders of the column-wise tables, compared by row index so the rows are never boxed.
+ */
+final class RowOrder {
+
+    private RowOrder() {}
+
+    static boolean isSorted(int size, IntBinaryOperator compare) {
+        for (int row = 1; row < size; row++) {
+            if (compare.applyAsInt(row - 1, row) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rows {@code 0 .. size - 1} in {@code compare} order. Rows already in {@code primary} order (the table
+     * value alone) only have their runs of equal values sorted.
+     */
+    static int[] sort(int size, IntBinaryOperator primary, IntBinaryOperator compare) {
+        int[] order = new int[size];
+        for (int row = 0; row < size; row++) {
+            order[row] = row;
+        }
+        int[] buffer = new int[size];
+        if (!isSorted(size, primary)) {
+            mergeSort(order, buffer, 0, size, compare);
+            return order;
+        }
+        for (int start = 0, end = 1; start < size; start = end++) {
+            while ((end < size) && (primary.applyAsInt(end - 1, end) == 0)) {
+                end++;
+            }
+            if (end - start > 1) {
+                mergeSort(order, buffer, start, end, compare);
+            }
+        }
+        return order;
+    }
+
+    // stable bottom-up merge sort of order[from .. to - 1]
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, IntBinaryOperator compare) {
+        int[] source = order;
+        int[] target = buffer;
+        for (int width = 1; width < to - from; width *= 2) {
+            for (int low = from; low < to; low += 2 * width) {
+                int middle = Math.min(low + width, to);
+                int high = Math.min(low + 2 * width, to);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if ((left < middle) && ((right >= high) || (compare.applyAsInt(source[left], source[right]) <= 0))) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] merged = target;
+            target = source;
+            source = merged;
+        }
+        if (source != order) {
+            System.arraycopy(source, from, order, from, to - from);
+        }
+    }
+
+    /**
+     * Names ascending with missing names last, like Cypher's {@code ORDER BY name}.
+     */
+    static int compareNames(String name, String other) {
+        if (name == null) {
+            return other == null ? 0 : 1;
+        }
+        return other == null ? -1 : name.compareTo(other);
+    }
+
+    static int[] select(int[] values, int[] order) {
+        int[] selected = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            selected[i] = values[order[i]];
+        }
+        return selected;
+    }
+
+    static double[] select(double[] values, int[] order) {
+        double[] selected = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            selected[i] = values[order[i]];
+        }
+        return selected;
+    }
+}
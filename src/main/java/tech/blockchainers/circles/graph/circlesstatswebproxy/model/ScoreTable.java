@@ -0,0 +1,211 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Per-user scores (PageRank, betweenness) stored column-wise: one {@link UserDictionary} id and one score
+ * per row, sorted by descending score and ascending name. JSON rows ({@code address}, {@code name}, {@code score}) are only
+ * created while serializing.
+ */
+public class ScoreTable {
+
+    private static final SerializableString ADDRESS = new SerializedString("address");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString SCORE = new SerializedString("score");
+
+    private final UserDictionary dictionary;
+    private final int[] users;
+    private final double[] scores;
+    private final int[] rowOfUser;
+
+    public ScoreTable(UserDictionary dictionary, int[] users, double[] scores) {
+        int[] unsortedUsers = users;
+        double[] unsortedScores = scores;
+        // like ORDER BY score DESC, name ASC
+        IntBinaryOperator primary = (a, b) -> Double.compare(unsortedScores[b], unsortedScores[a]);
+        IntBinaryOperator compare = (a, b) -> {
+            int compared = primary.applyAsInt(a, b);
+            return compared != 0 ? compared : RowOrder.compareNames(dictionary.name(unsortedUsers[a]), dictionary.name(unsortedUsers[b]));
+        };
+        if (!RowOrder.isSorted(scores.length, compare)) {
+            int[] order = RowOrder.sort(scores.length, primary, compare);
+            users = RowOrder.select(unsortedUsers, order);
+            scores = RowOrder.select(unsortedScores, order);
+        }
+        this.dictionary = dictionary;
+        this.users = users;
+        this.scores = scores;
+        this.rowOfUser = new int[dictionary.size()];
+        Arrays.fill(rowOfUser, -1);
+        for (int row = 0; row < users.length; row++) {
+            rowOfUser[users[row]] = row;
+        }
+    }
+
+    public static ScoreTable fromRows(Collection<Map<String, Object>> rows, UserDictionary dictionary) {
+        int[] users = new int[rows.size()];
+        double[] scores = new double[rows.size()];
+        int row = 0;
+        for (Map<String, Object> map : rows) {
+            users[row] = dictionary.intern(asString(map.get("address")), asString(map.get("name")));
+            scores[row] = ((Number) map.get("score")).doubleValue();
+            row++;
+        }
+        return new ScoreTable(dictionary, users, scores);
+    }
+
+    public static ScoreTable fromGraph(TrustGraph graph, double[] scores, UserDictionary dictionary) {
+        int[] users = new int[graph.nodeCount()];
+        for (int node = 0; node < users.length; node++) {
+            users[node] = dictionary.intern(graph.address(node), graph.name(node));
+        }
+        return new ScoreTable(dictionary, users, scores.clone());
+    }
+
+    static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    public int size() {
+        return users.length;
+    }
+
+    UserDictionary dictionary() {
+        return dictionary;
+    }
+
+    int[] users() {
+        return users;
+    }
+
+    double[] scores() {
+        return scores;
+    }
+
+    /**
+     * Score distribution in the shape of the GDS {@code centralityDistribution}, read from the sorted score column.
+     */
+    public Map<String, Object> distribution() {
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        if (scores.length == 0) {
+            return distribution;
+        }
+        double sum = 0;
+        for (double score : scores) {
+            sum += score;
+        }
+        distribution.put("min", scores[scores.length - 1]);
+        distribution.put("mean", sum / scores.length);
+        distribution.put("max", scores[0]);
+        distribution.put("p50", percentile(scores, 0.5));
+        distribution.put("p75", percentile(scores, 0.75));
+        distribution.put("p90", percentile(scores, 0.9));
+        distribution.put("p95", percentile(scores, 0.95));
+        distribution.put("p99", percentile(scores, 0.99));
+        distribution.put("p999", percentile(scores, 0.999));
+        return distribution;
+    }
+
+    static double percentile(double[] descending, double quantile) {
+        int ascending = Math.max(0, (int) Math.ceil(quantile * descending.length) - 1);
+        return descending[descending.length - 1 - ascending];
+    }
+
+    public ScoredRows all() {
+        return new Rows(null);
+    }
+
+    public ScoredRows byName(String name) {
+        return new Rows(rowsOfName(name));
+    }
+
+    public ScoredRows byAddress(String address) {
+        int row = rowOf(dictionary.indexOfAddress(address));
+        return new Rows(row < 0 ? new int[0] : new int[] { row });
+    }
+
+    public List<Map<String, Object>> rankByName(String name) {
+        return IntStream.of(rowsOfName(name)).mapToObj(this::rank).toList();
+    }
+
+    public List<Map<String, Object>> rankByAddress(String address) {
+        int row = rowOf(dictionary.indexOfAddress(address));
+        return row < 0 ? List.of() : List.of(rank(row));
+    }
+
+    private int[] rowsOfName(String name) {
+        return Arrays.stream(dictionary.indexesOfName(name)).map(this::rowOf).filter(row -> row >= 0).sorted().toArray();
+    }
+
+    private int rowOf(int user) {
+        return ((user < 0) || (user >= rowOfUser.length)) ? -1 : rowOfUser[user];
+    }
+
+    private Map<String, Object> row(int row) {
+        Map<String, Object> map = new LinkedHashMap<>(4);
+        map.put("address", dictionary.address(users[row]));
+        map.put("name", dictionary.name(users[row]));
+        map.put("score", scores[row]);
+        return map;
+    }
+
+    private void write(int row, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ADDRESS);
+        generator.writeString(dictionary.address(users[row]));
+        generator.writeFieldName(NAME);
+        generator.writeString(dictionary.name(users[row]));
+        generator.writeFieldName(SCORE);
+        generator.writeNumber(scores[row]);
+        generator.writeEndObject();
+    }
+
+    private Map<String, Object> rank(int row) {
+        Map<String, Object> map = row(row);
+        map.put("rank", row + 1);
+        map.put("total", users.length);
+        map.put("percentile", 100.0 * (users.length - row - 1) / users.length);
+        return map;
+    }
+
+    private class Rows extends ScoredRows {
+
+        private final int[] selection;
+
+        Rows(int[] selection) {
+            this.selection = selection;
+        }
+
+        @Override
+        public Map<String, Object> get(int index) {
+            return row(selection == null ? index : selection[index]);
+        }
+
+        @Override
+        protected double score(int index) {
+            return scores[selection == null ? index : selection[index]];
+        }
+
+        @Override
+        public void write(int index, JsonGenerator generator) throws IOException {
+            ScoreTable.this.write(selection == null ? index : selection[index], generator);
+        }
+
+        @Override
+        public int size() {
+            return selection == null ? users.length : selection.length;
+        }
+    }
+}
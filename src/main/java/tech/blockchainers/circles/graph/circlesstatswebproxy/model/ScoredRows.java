@@ -0,0 +1,36 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of analytics rows sorted by descending score. Paging and {@code minScore} cuts are
+ * resolved on the underlying columns, JSON rows are only created for the rows actually returned.
+ */
+public abstract class ScoredRows extends AbstractList<Map<String, Object>> implements RandomAccess {
+
+    protected abstract double score(int index);
+
+    /**
+     * Writes the row as an object directly from the columns, without creating the map returned by {@link #get}.
+     */
+    public abstract void write(int index, JsonGenerator generator) throws IOException;
+
+    public int countAtLeast(double minScore) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (score(mid) >= minScore) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
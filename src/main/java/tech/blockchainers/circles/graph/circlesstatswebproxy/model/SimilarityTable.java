@@ -0,0 +1,308 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.NodeSimilarity;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Node similarity pairs stored column-wise ({@link UserDictionary} ids of both users and the similarity),
+ * with a per-user adjacency of pair rows. Rows are kept in descending similarity order (ties by the user
+ * names), so every adjacency list is sorted by similarity as well.
+ */
+public class SimilarityTable {
+
+    private static final SerializableString USER1_ADDR = new SerializedString("user1Addr");
+    private static final SerializableString USER1_NAME = new SerializedString("user1Name");
+    private static final SerializableString USER2_ADDR = new SerializedString("user2Addr");
+    private static final SerializableString USER2_NAME = new SerializedString("user2Name");
+    private static final SerializableString SIMILARITY = new SerializedString("similarity");
+
+    private final UserDictionary dictionary;
+    private final int[] users1;
+    private final int[] users2;
+    private final double[] similarities;
+    private final int[] pairOffsets;
+    private final int[] pairRows;
+
+    public SimilarityTable(UserDictionary dictionary, int[] users1, int[] users2, double[] similarities) {
+        int[] unsorted1 = users1;
+        int[] unsorted2 = users2;
+        double[] unsortedSimilarities = similarities;
+        // like ORDER BY similarity DESCENDING, user1Name, user2Name
+        IntBinaryOperator primary = (a, b) -> Double.compare(unsortedSimilarities[b], unsortedSimilarities[a]);
+        IntBinaryOperator compare = (a, b) -> {
+            int compared = primary.applyAsInt(a, b);
+            if (compared == 0) {
+                compared = RowOrder.compareNames(dictionary.name(unsorted1[a]), dictionary.name(unsorted1[b]));
+            }
+            return compared != 0 ? compared : RowOrder.compareNames(dictionary.name(unsorted2[a]), dictionary.name(unsorted2[b]));
+        };
+        if (!RowOrder.isSorted(similarities.length, compare)) {
+            int[] order = RowOrder.sort(similarities.length, primary, compare);
+            users1 = RowOrder.select(unsorted1, order);
+            users2 = RowOrder.select(unsorted2, order);
+            similarities = RowOrder.select(unsortedSimilarities, order);
+        }
+        this.dictionary = dictionary;
+        this.users1 = users1;
+        this.users2 = users2;
+        this.similarities = similarities;
+        int userCount = dictionary.size();
+        this.pairOffsets = new int[userCount + 1];
+        for (int row = 0; row < users1.length; row++) {
+            pairOffsets[users1[row] + 1]++;
+            if (users2[row] != users1[row]) {
+                pairOffsets[users2[row] + 1]++;
+            }
+        }
+        for (int user = 0; user < userCount; user++) {
+            pairOffsets[user + 1] += pairOffsets[user];
+        }
+        this.pairRows = new int[pairOffsets[userCount]];
+        int[] fill = new int[userCount];
+        for (int row = 0; row < users1.length; row++) {
+            pairRows[pairOffsets[users1[row]] + fill[users1[row]]++] = row;
+            if (users2[row] != users1[row]) {
+                pairRows[pairOffsets[users2[row]] + fill[users2[row]]++] = row;
+            }
+        }
+    }
+
+    public static SimilarityTable fromRows(Collection<Map<String, Object>> rows, UserDictionary dictionary) {
+        int[] users1 = new int[rows.size()];
+        int[] users2 = new int[rows.size()];
+        double[] similarities = new double[rows.size()];
+        int row = 0;
+        for (Map<String, Object> map : rows) {
+            users1[row] = dictionary.intern(ScoreTable.asString(map.get("user1Addr")), ScoreTable.asString(map.get("user1Name")));
+            users2[row] = dictionary.intern(ScoreTable.asString(map.get("user2Addr")), ScoreTable.asString(map.get("user2Name")));
+            similarities[row] = ((Number) map.get("similarity")).doubleValue();
+            row++;
+        }
+        return new SimilarityTable(dictionary, users1, users2, similarities);
+    }
+
+    public static SimilarityTable fromGraph(TrustGraph graph, NodeSimilarity.Result result, UserDictionary dictionary) {
+        int[] userOfNode = new int[graph.nodeCount()];
+        Arrays.fill(userOfNode, -1);
+        int[] order = mergeGroups(result.nodes1(), result.similarities());
+        int[] users1 = new int[order.length];
+        int[] users2 = new int[order.length];
+        double[] similarities = new double[order.length];
+        for (int row = 0; row < order.length; row++) {
+            users1[row] = intern(graph, result.nodes1()[order[row]], userOfNode, dictionary);
+            users2[row] = intern(graph, result.nodes2()[order[row]], userOfNode, dictionary);
+            similarities[row] = result.similarities()[order[row]];
+        }
+        return new SimilarityTable(dictionary, users1, users2, similarities);
+    }
+
+    /**
+     * Row order by descending value (ties by row) of rows grouped by {@code groups}, every group already sorted
+     * by descending value: a k-way merge of the groups with a heap of their heads.
+     */
+    static int[] mergeGroups(int[] groups, double[] values) {
+        int[] heads = new int[groups.length];
+        int[] ends = new int[groups.length];
+        int heapSize = 0;
+        for (int row = 0; row < groups.length; row++) {
+            if ((row == 0) || (groups[row] != groups[row - 1])) {
+                heads[heapSize] = row;
+                ends[heapSize++] = row;
+            }
+            ends[heapSize - 1]++;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heads, ends, i, heapSize, values);
+        }
+        int[] order = new int[groups.length];
+        for (int row = 0; row < order.length; row++) {
+            order[row] = heads[0]++;
+            if (heads[0] == ends[0]) {
+                heapSize--;
+                heads[0] = heads[heapSize];
+                ends[0] = ends[heapSize];
+            }
+            siftDown(heads, ends, 0, heapSize, values);
+        }
+        return order;
+    }
+
+    private static void siftDown(int[] heads, int[] ends, int index, int size, double[] values) {
+        while (true) {
+            int first = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if ((left < size) && before(heads[left], heads[first], values)) {
+                first = left;
+            }
+            if ((right < size) && before(heads[right], heads[first], values)) {
+                first = right;
+            }
+            if (first == index) {
+                return;
+            }
+            int head = heads[first];
+            heads[first] = heads[index];
+            heads[index] = head;
+            int end = ends[first];
+            ends[first] = ends[index];
+            ends[index] = end;
+            index = first;
+        }
+    }
+
+    private static boolean before(int row, int other, double[] values) {
+        int compared = Double.compare(values[other], values[row]);
+        return compared < 0 || ((compared == 0) && (row < other));
+    }
+
+    private static int intern(TrustGraph graph, int node, int[] userOfNode, UserDictionary dictionary) {
+        if (userOfNode[node] < 0) {
+            userOfNode[node] = dictionary.intern(graph.address(node), graph.name(node));
+        }
+        return userOfNode[node];
+    }
+
+    public int size() {
+        return users1.length;
+    }
+
+    UserDictionary dictionary() {
+        return dictionary;
+    }
+
+    int[] users1() {
+        return users1;
+    }
+
+    int[] users2() {
+        return users2;
+    }
+
+    double[] similarities() {
+        return similarities;
+    }
+
+    /**
+     * Similarity distribution in the shape of the GDS {@code similarityDistribution}.
+     */
+    public Map<String, Object> distribution() {
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        if (similarities.length == 0) {
+            return distribution;
+        }
+        double sum = 0;
+        double squares = 0;
+        for (double similarity : similarities) {
+            sum += similarity;
+            squares += similarity * similarity;
+        }
+        double mean = sum / similarities.length;
+        distribution.put("min", similarities[similarities.length - 1]);
+        distribution.put("max", similarities[0]);
+        distribution.put("mean", mean);
+        distribution.put("stdDev", Math.sqrt(Math.max(0, squares / similarities.length - mean * mean)));
+        for (int percent : new int[] { 1, 5, 10, 25, 50, 75, 90, 95, 99, 100 }) {
+            distribution.put("p" + percent, ScoreTable.percentile(similarities, percent / 100.0));
+        }
+        return distribution;
+    }
+
+    public ScoredRows all() {
+        return new Rows(null, 0, users1.length);
+    }
+
+    public ScoredRows byName(String name) {
+        int[] users = dictionary.indexesOfName(name);
+        if (users.length == 1) {
+            return forUser(users[0]);
+        }
+        int[] selection = IntStream.of(users)
+                .filter(user -> user + 1 < pairOffsets.length)
+                .flatMap(user -> Arrays.stream(pairRows, pairOffsets[user], pairOffsets[user + 1]))
+                .sorted()
+                .distinct()
+                .toArray();
+        return new Rows(selection, 0, selection.length);
+    }
+
+    public ScoredRows byAddress(String address) {
+        return forUser(dictionary.indexOfAddress(address));
+    }
+
+    private ScoredRows forUser(int user) {
+        if ((user < 0) || (user + 1 >= pairOffsets.length)) {
+            return new Rows(null, 0, 0);
+        }
+        return new Rows(pairRows, pairOffsets[user], pairOffsets[user + 1]);
+    }
+
+    private Map<String, Object> row(int row) {
+        Map<String, Object> map = new LinkedHashMap<>(8);
+        map.put("user1Addr", dictionary.address(users1[row]));
+        map.put("user1Name", dictionary.name(users1[row]));
+        map.put("user2Addr", dictionary.address(users2[row]));
+        map.put("user2Name", dictionary.name(users2[row]));
+        map.put("similarity", similarities[row]);
+        return map;
+    }
+
+    private void write(int row, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(USER1_ADDR);
+        generator.writeString(dictionary.address(users1[row]));
+        generator.writeFieldName(USER1_NAME);
+        generator.writeString(dictionary.name(users1[row]));
+        generator.writeFieldName(USER2_ADDR);
+        generator.writeString(dictionary.address(users2[row]));
+        generator.writeFieldName(USER2_NAME);
+        generator.writeString(dictionary.name(users2[row]));
+        generator.writeFieldName(SIMILARITY);
+        generator.writeNumber(similarities[row]);
+        generator.writeEndObject();
+    }
+
+    private class Rows extends ScoredRows {
+
+        private final int[] selection;
+        private final int from;
+        private final int to;
+
+        Rows(int[] selection, int from, int to) {
+            this.selection = selection;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Map<String, Object> get(int index) {
+            return row(selection == null ? from + index : selection[from + index]);
+        }
+
+        @Override
+        protected double score(int index) {
+            return similarities[selection == null ? from + index : selection[from + index]];
+        }
+
+        @Override
+        public void write(int index, JsonGenerator generator) throws IOException {
+            SimilarityTable.this.write(selection == null ? from + index : selection[from + index], generator);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of {@link ScoreTable} and {@link SimilarityTable}: the users referenced by the table
+ * (address and name, UTF-8) followed by the raw columns, with user ids local to the file. Tables are read
+ * from a (memory-mapped) {@link ByteBuffer} with bulk gets and interned into the given dictionary again.
+ */
+public final class TableCodec {
+
+    private TableCodec() {}
+
+    public static void writeScores(ScoreTable table, DataOutput out) throws IOException {
+        int[] users = table.users();
+        LocalUsers local = new LocalUsers(table.dictionary(), users);
+        local.write(out);
+        out.writeInt(users.length);
+        for (int user : users) {
+            out.writeInt(local.idOf(user));
+        }
+        for (double score : table.scores()) {
+            out.writeDouble(score);
+        }
+    }
+
+    public static ScoreTable readScores(ByteBuffer in, UserDictionary dictionary) {
+        int[] mapping = readUsers(in, dictionary);
+        int rows = in.getInt();
+        int[] users = readInts(in, rows, mapping);
+        double[] scores = readDoubles(in, rows);
+        return new ScoreTable(dictionary, users, scores);
+    }
+
+    public static void writeSimilarities(SimilarityTable table, DataOutput out) throws IOException {
+        int[] users1 = table.users1();
+        int[] users2 = table.users2();
+        int[] both = Arrays.copyOf(users1, users1.length + users2.length);
+        System.arraycopy(users2, 0, both, users1.length, users2.length);
+        LocalUsers local = new LocalUsers(table.dictionary(), both);
+        local.write(out);
+        out.writeInt(users1.length);
+        for (int user : users1) {
+            out.writeInt(local.idOf(user));
+        }
+        for (int user : users2) {
+            out.writeInt(local.idOf(user));
+        }
+        for (double similarity : table.similarities()) {
+            out.writeDouble(similarity);
+        }
+    }
+
+    public static SimilarityTable readSimilarities(ByteBuffer in, UserDictionary dictionary) {
+        int[] mapping = readUsers(in, dictionary);
+        int rows = in.getInt();
+        int[] users1 = readInts(in, rows, mapping);
+        int[] users2 = readInts(in, rows, mapping);
+        double[] similarities = readDoubles(in, rows);
+        return new SimilarityTable(dictionary, users1, users2, similarities);
+    }
+
+    private static int[] readUsers(ByteBuffer in, UserDictionary dictionary) {
+        int count = in.getInt();
+        int[] mapping = new int[count];
+        for (int i = 0; i < count; i++) {
+            String address = readString(in);
+            String name = readString(in);
+            mapping[i] = dictionary.intern(address, name);
+        }
+        return mapping;
+    }
+
+    private static int[] readInts(ByteBuffer in, int rows, int[] mapping) {
+        int[] values = new int[rows];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + rows * Integer.BYTES);
+        for (int row = 0; row < rows; row++) {
+            values[row] = mapping[values[row]];
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer in, int rows) {
+        double[] values = new double[rows];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + rows * Double.BYTES);
+        return values;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Dense file-local ids for the dictionary ids used by a table, in order of first use.
+     */
+    private static final class LocalUsers {
+
+        private final UserDictionary dictionary;
+        private final int[] localOf;
+        private final int[] users;
+        private final int count;
+
+        LocalUsers(UserDictionary dictionary, int[] referenced) {
+            this.dictionary = dictionary;
+            this.localOf = new int[dictionary.size()];
+            Arrays.fill(localOf, -1);
+            int[] users = new int[Math.min(referenced.length, localOf.length)];
+            int count = 0;
+            for (int user : referenced) {
+                if (localOf[user] < 0) {
+                    localOf[user] = count;
+                    users[count++] = user;
+                }
+            }
+            this.users = users;
+            this.count = count;
+        }
+
+        int idOf(int user) {
+            return localOf[user];
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                writeString(out, dictionary.address(users[i]));
+                writeString(out, dictionary.name(users[i]));
+            }
+        }
+    }
+}
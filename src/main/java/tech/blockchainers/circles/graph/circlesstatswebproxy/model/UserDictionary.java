@@ -0,0 +1,85 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only dictionary which maps user addresses (and their names) to dense ints. It is shared by all
+ * cached analytics tables, so every address and name string is held only once. Users without an address are
+ * keyed by their name. A rename is written into the published names array in place (a reference write is
+ * atomic, concurrent readers see the old or the new name) and made visible by publishing new entries.
+ */
+public class UserDictionary {
+
+    private final Map<String, Integer> byAddress = new ConcurrentHashMap<>();
+    private final Map<String, int[]> byName = new ConcurrentHashMap<>();
+    // only read and written in intern, a HashMap for the null name
+    private final Map<String, Integer> withoutAddress = new HashMap<>();
+    private volatile Entries entries = new Entries(new String[1024], new String[1024], 0);
+
+    public synchronized int intern(String address, String name) {
+        Integer id = address == null ? withoutAddress.get(name) : byAddress.get(address);
+        Entries current = entries;
+        if (id != null) {
+            if ((name != null) && !name.equals(current.names[id])) {
+                current.names[id] = name;
+                byName.merge(name, new int[] { id }, UserDictionary::append);
+                entries = new Entries(current.addresses, current.names, current.size);
+            }
+            return id;
+        }
+        String[] addresses = current.addresses;
+        String[] names = current.names;
+        if (current.size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, addresses.length * 2);
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        int next = current.size;
+        addresses[next] = address;
+        names[next] = name;
+        if (address != null) {
+            byAddress.put(address, next);
+        } else {
+            withoutAddress.put(name, next);
+        }
+        if (name != null) {
+            byName.merge(name, new int[] { next }, UserDictionary::append);
+        }
+        entries = new Entries(addresses, names, next + 1);
+        return next;
+    }
+
+    private static int[] append(int[] ids, int[] id) {
+        int[] merged = Arrays.copyOf(ids, ids.length + 1);
+        merged[ids.length] = id[0];
+        return merged;
+    }
+
+    public int size() {
+        return entries.size;
+    }
+
+    public String address(int id) {
+        return entries.addresses[id];
+    }
+
+    public String name(int id) {
+        return entries.names[id];
+    }
+
+    public int indexOfAddress(String address) {
+        return address == null ? -1 : byAddress.getOrDefault(address, -1);
+    }
+
+    public int[] indexesOfName(String name) {
+        int[] ids = name == null ? null : byName.get(name);
+        if (ids == null) {
+            return new int[0];
+        }
+        return Arrays.stream(ids).filter(id -> name.equals(name(id))).toArray();
+    }
+
+    private record Entries(String[] addresses, String[] names, int size) {}
+}
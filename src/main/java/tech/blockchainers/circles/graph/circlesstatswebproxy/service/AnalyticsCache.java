@@ -0,0 +1,217 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Holds the analytics results as immutable snapshots. Every slot computes at most once at a time
+ * (single flight), readers always get the last complete snapshot while a refresh is running
+ * (stale-while-revalidate) and a new snapshot is published with a single atomic swap.
+ * <p>
+ * Per slot it publishes the computation time ({@code circles.analytics.computation}), reads served from a
+ * snapshot or waiting for a computation ({@code circles.analytics.reads}, {@code result=hit|miss}), the
+ * age and version of the current snapshot and whether a computation is in flight.
+ */
+@Component
+@Slf4j
+public class AnalyticsCache {
+
+    private final Map<String, Slot<?>> slots = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final ExecutorService executor;
+    private final MeterRegistry registry;
+
+    public AnalyticsCache(MeterRegistry registry, @Value("${circles.analytics.refresh-threads:3}") int refreshThreads) {
+        this.registry = registry;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(refreshThreads, runnable -> {
+            Thread thread = new Thread(runnable, "analytics-refresh-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <T> Slot<T> register(String key, Supplier<T> loader) {
+        Slot<T> slot = new Slot<>(key, loader);
+        if (slots.putIfAbsent(key, slot) != null) {
+            throw new IllegalStateException("Analytics slot " + key + " is already registered");
+        }
+        Gauge.builder("circles.analytics.snapshot.age", slot, Slot::ageSeconds)
+                .tag("slot", key)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("circles.analytics.snapshot.version", slot, s -> s.peek() == null ? Double.NaN : s.peek().version())
+                .tag("slot", key)
+                .register(registry);
+        Gauge.builder("circles.analytics.computations.inflight", slot, s -> s.isRefreshing() ? 1 : 0)
+                .tag("slot", key)
+                .register(registry);
+        return slot;
+    }
+
+    public Collection<Slot<?>> slots() {
+        return Collections.unmodifiableCollection(slots.values());
+    }
+
+    public record Snapshot<T>(T value, long version, Instant computedAt) {}
+
+    public final class Slot<T> {
+
+        private final String key;
+        private final Supplier<T> loader;
+        private final AtomicReference<Snapshot<T>> current = new AtomicReference<>();
+        private final AtomicReference<CompletableFuture<Snapshot<T>>> inFlight = new AtomicReference<>();
+        private final List<Consumer<Snapshot<T>>> listeners = new CopyOnWriteArrayList<>();
+        private final Counter hits;
+        private final Counter misses;
+
+        private Slot(String key, Supplier<T> loader) {
+            this.key = key;
+            this.loader = loader;
+            this.hits = Counter.builder("circles.analytics.reads").tag("slot", key).tag("result", "hit").register(registry);
+            this.misses = Counter.builder("circles.analytics.reads").tag("slot", key).tag("result", "miss").register(registry);
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public boolean isRefreshing() {
+            return inFlight.get() != null;
+        }
+
+        public Snapshot<T> peek() {
+            return current.get();
+        }
+
+        private double ageSeconds() {
+            Snapshot<T> snapshot = current.get();
+            return snapshot == null ? Double.NaN : Duration.between(snapshot.computedAt(), Instant.now()).toMillis() / 1000.0;
+        }
+
+        /**
+         * Called with every newly computed snapshot, after it has been published.
+         */
+        public void onComputed(Consumer<Snapshot<T>> listener) {
+            listeners.add(listener);
+        }
+
+        /**
+         * Publishes a previously computed value (e.g. read from disk) unless a snapshot exists already.
+         */
+        public void restore(T value, Instant computedAt) {
+            if (current.compareAndSet(null, new Snapshot<>(value, epoch.incrementAndGet(), computedAt))) {
+                log.info("[CACHE] {} restored from {}", key, computedAt);
+            }
+        }
+
+        public Snapshot<T> get() {
+            Snapshot<T> snapshot = current.get();
+            if (snapshot != null) {
+                hits.increment();
+                return snapshot;
+            }
+            misses.increment();
+            try {
+                return refresh().join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+            }
+        }
+
+        public CompletableFuture<Snapshot<T>> refresh() {
+            while (true) {
+                CompletableFuture<Snapshot<T>> running = inFlight.get();
+                if (running != null) {
+                    return running;
+                }
+                CompletableFuture<Snapshot<T>> next = new CompletableFuture<>();
+                if (inFlight.compareAndSet(null, next)) {
+                    executor.execute(() -> compute(next, loader));
+                    return next;
+                }
+            }
+        }
+
+        /**
+         * Starts a computation with the given loader. Unlike {@link #refresh()} a running computation is not
+         * joined, the new one is queued after it, so the result is guaranteed to come from {@code source}. Never
+         * blocks the caller.
+         */
+        public CompletableFuture<Snapshot<T>> recompute(Supplier<T> source) {
+            CompletableFuture<Snapshot<T>> running = inFlight.get();
+            if (running != null) {
+                return running.handle((snapshot, ex) -> null).thenComposeAsync(ignored -> recompute(source), executor);
+            }
+            CompletableFuture<Snapshot<T>> next = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, next)) {
+                return recompute(source);
+            }
+            executor.execute(() -> compute(next, source));
+            return next;
+        }
+
+        private void compute(CompletableFuture<Snapshot<T>> future, Supplier<T> source) {
+            long start = System.nanoTime();
+            Snapshot<T> snapshot;
+            try {
+                T value = source.get();
+                snapshot = new Snapshot<>(value, epoch.incrementAndGet(), Instant.now());
+                current.set(snapshot);
+                long elapsed = System.nanoTime() - start;
+                computation("success").record(elapsed, TimeUnit.NANOSECONDS);
+                log.info("[CACHE] {} computed as version {} in {} ms", key, snapshot.version(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+                inFlight.set(null);
+                future.complete(snapshot);
+            } catch (Throwable ex) {
+                // also errors (e.g. OutOfMemoryError), otherwise the slot stays in flight and its readers wait forever
+                computation("error").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.error("[CACHE] {} cannot be computed", key, ex);
+                inFlight.set(null);
+                future.completeExceptionally(ex);
+                return;
+            }
+            for (Consumer<Snapshot<T>> listener : listeners) {
+                try {
+                    listener.accept(snapshot);
+                } catch (RuntimeException ex) {
+                    log.error("[CACHE] Listener of {} failed for version {}", key, snapshot.version(), ex);
+                }
+            }
+        }
+
+        private Timer computation(String outcome) {
+            return Timer.builder("circles.analytics.computation").tag("slot", key).tag("outcome", outcome).register(registry);
+        }
+    }
+}
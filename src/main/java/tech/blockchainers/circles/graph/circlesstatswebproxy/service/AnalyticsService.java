@@ -0,0 +1,383 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.Betweenness;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.NodeSimilarity;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PageRank;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphChangedEvent;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoreTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.SimilarityTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.UserDictionary;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.AnalyticsCache.Slot;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.AnalyticsCache.Snapshot;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class AnalyticsService {
+
+    private final ProjectionManager projectionManager;
+    private final TrustGraphService trustGraphService;
+    private final SnapshotStore snapshotStore;
+    private final UserDictionary dictionary = new UserDictionary();
+    private final Map<String, String> tags = new ConcurrentHashMap<>();
+    // engine and parameters per slot, a persisted snapshot is only restored if they are unchanged
+    private final Map<String, String> configs = new ConcurrentHashMap<>();
+    private final List<Binding<?>> bindings = new ArrayList<>();
+    private final Slot<SimilarityTable> similarity;
+    private final Slot<ScoreTable> betweenness;
+    private final Slot<ScoreTable> pagerank;
+    private final ForkJoinPool analyticsPool;
+    private final boolean nativePagerank;
+    private final boolean incrementalPagerank;
+    private final boolean nativeSimilarity;
+    private final int similarityTopK;
+    private final double dampingFactor;
+    private final int maxIterations;
+    private final double tolerance;
+    private volatile PagerankState lastPagerank;
+    private final long refreshIntervalMs;
+    private final long changeThreshold;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean pagerankUpdateQueued = new AtomicBoolean();
+    private volatile long lastRefresh = System.currentTimeMillis();
+    private final int warmUpParallelism;
+    private volatile WarmUpProgress warmUp = new WarmUpProgress();
+
+    public AnalyticsService(UserService userService, AnalyticsCache analyticsCache, ProjectionManager projectionManager,
+                            TrustGraphService trustGraphService, SnapshotStore snapshotStore, ForkJoinPool analyticsPool,
+                            @Value("${circles.projection.refresh-interval-ms:0}") long refreshIntervalMs,
+                            @Value("${circles.projection.change-threshold:0}") long changeThreshold,
+                            @Value("${circles.analytics.pagerank.engine:native}") String pagerankEngine,
+                            @Value("${circles.analytics.pagerank.damping-factor:0.85}") double dampingFactor,
+                            @Value("${circles.analytics.pagerank.max-iterations:20}") int maxIterations,
+                            @Value("${circles.analytics.pagerank.tolerance:0.0000001}") double tolerance,
+                            @Value("${circles.analytics.pagerank.incremental:true}") boolean incrementalPagerank,
+                            @Value("${circles.analytics.betweenness.engine:native}") String betweennessEngine,
+                            @Value("${circles.analytics.betweenness.sampling-size:0}") int samplingSize,
+                            @Value("${circles.analytics.betweenness.sampling-seed:42}") long samplingSeed,
+                            @Value("${circles.analytics.similarity.engine:native}") String similarityEngine,
+                            @Value("${circles.analytics.similarity.top-k:10}") int similarityTopK,
+                            @Value("${circles.analytics.warmup.parallelism:3}") int warmUpParallelism) {
+        this.projectionManager = projectionManager;
+        this.trustGraphService = trustGraphService;
+        this.snapshotStore = snapshotStore;
+        this.analyticsPool = analyticsPool;
+        this.nativePagerank = "native".equalsIgnoreCase(pagerankEngine);
+        this.incrementalPagerank = incrementalPagerank;
+        this.dampingFactor = dampingFactor;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.changeThreshold = changeThreshold;
+        this.nativeSimilarity = "native".equalsIgnoreCase(similarityEngine);
+        this.similarityTopK = similarityTopK;
+        this.warmUpParallelism = Math.max(1, warmUpParallelism);
+        if (nativeSimilarity) {
+            this.similarity = bindNative(analyticsCache, "similarity", "native top-k " + similarityTopK, () -> {
+                TrustGraph trustGraph = trustGraphService.require();
+                return SimilarityTable.fromGraph(trustGraph, NodeSimilarity.compute(trustGraph, similarityTopK, analyticsPool), dictionary);
+            });
+        } else {
+            this.similarity = bind(analyticsCache, "similarity", "gds", graph -> SimilarityTable.fromRows(userService.readSimilarityJacc(graph), dictionary));
+        }
+        if ("native".equalsIgnoreCase(betweennessEngine)) {
+            this.betweenness = bindNative(analyticsCache, "betweenness", "native sampling " + samplingSize + " seed " + samplingSeed, () -> {
+                TrustGraph trustGraph = trustGraphService.require();
+                double[] scores = Betweenness.compute(trustGraph, analyticsPool, samplingSize, samplingSeed);
+                return ScoreTable.fromGraph(trustGraph, scores, dictionary);
+            });
+        } else {
+            this.betweenness = bind(analyticsCache, "betweenness", "gds", graph -> ScoreTable.fromRows(userService.readBetweenness(graph), dictionary));
+        }
+        if (nativePagerank) {
+            this.pagerank = bindNative(analyticsCache, "pagerank",
+                    "native damping " + dampingFactor + " iterations " + maxIterations + " tolerance " + tolerance, () -> nativePagerank(trustGraphService.require(), null));
+        } else {
+            this.pagerank = bind(analyticsCache, "pagerank", "gds", graph -> ScoreTable.fromRows(userService.readPagerank(graph), dictionary));
+        }
+    }
+
+    private <T> Slot<T> bind(AnalyticsCache analyticsCache, String key, String config, Function<String, T> computation) {
+        configs.put(key, config);
+        Function<String, T> tagged = graph -> {
+            T value = computation.apply(graph);
+            tags.put(key, "projection " + graph);
+            return value;
+        };
+        Slot<T> slot = analyticsCache.register(key, () -> projectionManager.withCurrent(tagged));
+        bindings.add(new Binding<>(slot, tagged, true));
+        return slot;
+    }
+
+    private <T> Slot<T> bindNative(AnalyticsCache analyticsCache, String key, String config, Supplier<T> computation) {
+        configs.put(key, config);
+        Slot<T> slot = analyticsCache.register(key, computation);
+        bindings.add(new Binding<>(slot, graph -> computation.get(), false));
+        return slot;
+    }
+
+    /**
+     * Restores the last persisted snapshots so that requests are served right after startup, and persists
+     * every newly computed snapshot. Snapshots computed with another engine or other parameters are ignored.
+     */
+    @PostConstruct
+    public void restoreSnapshots() {
+        if (!snapshotStore.isEnabled()) {
+            return;
+        }
+        persist(similarity, snapshotStore::saveSimilarities, snapshotStore.loadSimilarities(similarity.key(), configs.get(similarity.key()), dictionary));
+        persist(betweenness, snapshotStore::saveScores, snapshotStore.loadScores(betweenness.key(), configs.get(betweenness.key()), dictionary));
+        persist(pagerank, snapshotStore::saveScores, snapshotStore.loadScores(pagerank.key(), configs.get(pagerank.key()), dictionary));
+    }
+
+    private <T> void persist(Slot<T> slot, SnapshotWriter<T> writer, Optional<SnapshotStore.Stored<T>> stored) {
+        stored.ifPresent(snapshot -> slot.restore(snapshot.value(), snapshot.computedAt()));
+        slot.onComputed(snapshot -> writer.save(slot.key(), configs.get(slot.key()), tagOf(slot.key()), snapshot.computedAt(), snapshot.value()));
+    }
+
+    private String tagOf(String key) {
+        String tag = tags.get(key);
+        if (tag != null) {
+            return tag;
+        }
+        return trustGraphService.current().map(graph -> "graph " + Instant.ofEpochMilli(graph.loadedAt())).orElse("graph");
+    }
+
+    @FunctionalInterface
+    private interface SnapshotWriter<T> {
+        void save(String key, String config, String tag, Instant computedAt, T value);
+    }
+
+    private ScoreTable nativePagerank(TrustGraph trustGraph, double[] initial) {
+        double[] seed = initial;
+        if (seed == null) {
+            seed = new double[trustGraph.nodeCount()];
+            Arrays.fill(seed, 1 - dampingFactor);
+        }
+        PageRank.Result result = PageRank.compute(trustGraph, dampingFactor, maxIterations, tolerance, analyticsPool, seed);
+        log.info("[PAGERANK] {} after {} iterations ({})", initial == null ? "Computed" : "Updated",
+                result.iterations(), result.converged() ? "converged" : "not converged");
+        lastPagerank = new PagerankState(trustGraph, result.scores());
+        return ScoreTable.fromGraph(trustGraph, result.scores(), dictionary);
+    }
+
+    /**
+     * Updates the native PageRank after trust changes, seeded with the previous scores (matched by address) so
+     * that only a few iterations are needed. Users new to the graph start with the usual {@code 1 - d}. The update
+     * runs on the analytics refresh threads, queued after a running PageRank computation. Changes arriving while
+     * an update is queued are covered by it, it reads the graph when it starts.
+     */
+    @EventListener
+    public void onTrustGraphChanged(TrustGraphChangedEvent event) {
+        if (!nativePagerank || !incrementalPagerank || (event.previous() == null) || (lastPagerank == null) || event.changes().isEmpty()) {
+            return;
+        }
+        if (!pagerankUpdateQueued.compareAndSet(false, true)) {
+            return;
+        }
+        pagerank.recompute(() -> {
+            pagerankUpdateQueued.set(false);
+            TrustGraph current = trustGraphService.require();
+            PagerankState last = lastPagerank;
+            double[] initial = new double[current.nodeCount()];
+            Arrays.fill(initial, 1 - dampingFactor);
+            for (int node = 0; node < last.graph().nodeCount(); node++) {
+                int mapped = current.indexOfAddress(last.graph().address(node));
+                if (mapped >= 0) {
+                    initial[mapped] = last.scores()[node];
+                }
+            }
+            return nativePagerank(current, initial);
+        });
+    }
+
+    /**
+     * Warms up all analytics slots. The in-memory trust graph and the projection are loaded first (each only if
+     * a slot needs it), then the slots are computed concurrently, at most {@code circles.analytics.warmup.parallelism}
+     * at a time. A restored snapshot keeps being served while its slot is recomputed.
+     */
+    public void initCaches() {
+        WarmUpProgress progress = new WarmUpProgress();
+        warmUp = progress;
+        ExecutorService executor = Executors.newFixedThreadPool(warmUpParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "analytics-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            progress.start();
+            CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+            CompletableFuture<Void> graph = null;
+            CompletableFuture<Void> projection = null;
+            List<CompletableFuture<Void>> stages = new ArrayList<>();
+            for (Binding<?> binding : bindings) {
+                CompletableFuture<Void> prerequisite;
+                if (binding.projected()) {
+                    if (projection == null) {
+                        projection = progress.stage("projection", ready, executor, projectionManager::currentName);
+                    }
+                    prerequisite = projection;
+                } else {
+                    if (graph == null) {
+                        graph = progress.stage("graph", ready, executor, trustGraphService::require);
+                    }
+                    prerequisite = graph;
+                }
+                stages.add(progress.stage(binding.slot().key(), prerequisite, executor, () -> binding.slot().refresh().join()));
+            }
+            CompletableFuture.allOf(stages.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+            progress.complete();
+        }
+        log.info("[SETUP] Setup completed in {} ms", progress.toMap().get("durationMs"));
+    }
+
+    public WarmUpProgress warmUp() {
+        return warmUp;
+    }
+
+    @Scheduled(fixedDelayString = "${circles.projection.check-interval-ms:60000}", initialDelayString = "${circles.projection.check-interval-ms:60000}")
+    public void checkProjection() {
+        try {
+            boolean due = (refreshIntervalMs > 0) && (System.currentTimeMillis() - lastRefresh >= refreshIntervalMs);
+            if (!due && (changeThreshold > 0)) {
+                long changes = projectionManager.changesSinceProjection();
+                log.debug("[PROJECTION] {} trust changes since current projection", changes);
+                due = changes >= changeThreshold;
+            }
+            if (due) {
+                refreshProjection();
+            }
+        } catch (RuntimeException ex) {
+            log.error("Projection refresh check failed", ex);
+        }
+    }
+
+    /**
+     * Builds a new projection and recomputes all analytics against it while the old snapshots are still
+     * served, then switches to the new projection and drops the old one.
+     */
+    public void refreshProjection() {
+        if (!refreshing.compareAndSet(false, true)) {
+            log.info("[PROJECTION] Refresh already running");
+            return;
+        }
+        boolean projected = bindings.stream().anyMatch(Binding::projected);
+        String next = projected ? projectionManager.nextName() : null;
+        try {
+            if (projected) {
+                projectionManager.create(next);
+            }
+            trustGraphService.reload();
+            List<CompletableFuture<?>> computations = new ArrayList<>();
+            for (Binding<?> binding : bindings) {
+                computations.add(binding.recompute(next));
+            }
+            CompletableFuture.allOf(computations.toArray(CompletableFuture[]::new)).join();
+            if (projected) {
+                projectionManager.replace(next);
+            }
+            lastRefresh = System.currentTimeMillis();
+        } catch (RuntimeException ex) {
+            log.error("Projection {} cannot be refreshed, keeping current projection", next, ex);
+            projectionManager.drop(next);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    public Snapshot<SimilarityTable> similarity() {
+        return similarity.get();
+    }
+
+    /**
+     * Similarity snapshot to look up a single user. With the native engine and no precomputed table yet, the
+     * user's top-K are computed on demand (version {@code 0}) while the full table is computed in the background.
+     */
+    public Snapshot<SimilarityTable> similarityOf(String name, String address) {
+        Snapshot<SimilarityTable> snapshot = similarity.peek();
+        if ((snapshot != null) || !nativeSimilarity) {
+            return snapshot != null ? snapshot : similarity.get();
+        }
+        similarity.refresh();
+        TrustGraph trustGraph = trustGraphService.require();
+        int node = name != null ? trustGraph.indexOfName(name) : trustGraph.indexOfAddress(address);
+        SimilarityTable table = SimilarityTable.fromGraph(trustGraph, NodeSimilarity.forNode(trustGraph, node, similarityTopK), dictionary);
+        return new Snapshot<>(table, 0, Instant.ofEpochMilli(trustGraph.loadedAt()));
+    }
+
+    public Snapshot<Collection<Map<String, Object>>> similarityStats() {
+        Snapshot<SimilarityTable> snapshot = similarity.get();
+        Collection<Map<String, Object>> stats = List.of(Map.of("similarityDistribution", snapshot.value().distribution()));
+        return new Snapshot<>(stats, snapshot.version(), snapshot.computedAt());
+    }
+
+    public void refreshSimilarity() {
+        similarity.refresh();
+    }
+
+    public Snapshot<ScoreTable> betweenness() {
+        return betweenness.get();
+    }
+
+    public Snapshot<Collection<Map<String, Object>>> betweennessStats() {
+        return distributionOf(betweenness.get());
+    }
+
+    public void refreshBetweenness() {
+        betweenness.refresh();
+    }
+
+    public Snapshot<ScoreTable> pagerank() {
+        return pagerank.get();
+    }
+
+    public Snapshot<Collection<Map<String, Object>>> pagerankStats() {
+        return distributionOf(pagerank.get());
+    }
+
+    public void refreshPagerank() {
+        pagerank.refresh();
+    }
+
+    /**
+     * Stats of a score table in the shape of the GDS {@code stats} procedures, derived from the cached scores
+     * instead of running the algorithm a second time.
+     */
+    private static Snapshot<Collection<Map<String, Object>>> distributionOf(Snapshot<ScoreTable> snapshot) {
+        Collection<Map<String, Object>> stats = List.of(Map.of("centralityDistribution", snapshot.value().distribution()));
+        return new Snapshot<>(stats, snapshot.version(), snapshot.computedAt());
+    }
+
+    private record PagerankState(TrustGraph graph, double[] scores) {}
+
+    private record Binding<T>(Slot<T> slot, Function<String, T> computation, boolean projected) {
+
+        CompletableFuture<Snapshot<T>> recompute(String graphName) {
+            return slot.recompute(() -> computation.apply(graphName));
+        }
+    }
+}
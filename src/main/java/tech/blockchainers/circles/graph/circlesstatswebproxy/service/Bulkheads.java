@@ -0,0 +1,156 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * One bounded executor per endpoint group, so that slow requests of one group (path searches, analytics)
+ * cannot take the request threads of the others. Every group has a concurrency limit, a queue bound and a
+ * deadline ({@code circles.bulkhead.<group>.concurrency|queue|timeout-ms}), a full queue fails with
+ * {@link RejectedExecutionException} and a missed deadline with {@link TimeoutException}. A task that misses its
+ * deadline is interrupted, the graph searches stop on interruption and free the thread.
+ * <p>
+ * Work that cannot run on the executor (e.g. a response streamed by the web container) takes one of the
+ * {@code concurrency} slots of its group with {@link #tryAcquire} for as long as it runs, executor tasks wait
+ * for a free slot.
+ */
+@Component
+@Slf4j
+public class Bulkheads {
+
+    public static final String PATHS = "paths";
+    public static final String ANALYTICS = "analytics";
+    public static final String LOOKUPS = "lookups";
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    public Bulkheads(Environment environment, MeterRegistry registry) {
+        this.environment = environment;
+        this.registry = registry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        groups.values().forEach(group -> group.executor.shutdownNow());
+    }
+
+    public <T> CompletableFuture<T> submit(String name, Supplier<T> task) {
+        Group group = groups.computeIfAbsent(name, this::create);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = group.executor.submit(() -> {
+                try {
+                    group.slots.acquire();
+                } catch (InterruptedException ex) {
+                    result.completeExceptionally(ex);
+                    return;
+                }
+                try {
+                    result.complete(task.get());
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                } finally {
+                    group.slots.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            group.rejected.increment();
+            log.warn("[BULKHEAD] {} rejected a request, {} running and {} queued", name, group.executor.getActiveCount(), group.executor.getQueue().size());
+            return CompletableFuture.failedFuture(ex);
+        }
+        return result.orTimeout(group.timeoutMs, TimeUnit.MILLISECONDS).whenComplete((value, ex) -> {
+            if (ex instanceof TimeoutException) {
+                group.timeouts.increment();
+                running.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Takes a slot of the group without waiting, the caller runs its work itself and closes the permit when done.
+     *
+     * @throws RejectedExecutionException if all slots are taken
+     */
+    public Permit tryAcquire(String name) {
+        Group group = groups.computeIfAbsent(name, this::create);
+        if (!group.slots.tryAcquire()) {
+            group.rejected.increment();
+            log.warn("[BULKHEAD] {} rejected a stream, all {} slots taken", name, group.concurrency);
+            throw new RejectedExecutionException("No free slot in bulkhead " + name);
+        }
+        return new Permit(group.slots);
+    }
+
+    /**
+     * Deadline of the group in milliseconds, work running in it does not need to take longer.
+     */
+    public long timeoutMs(String name) {
+        return groups.computeIfAbsent(name, this::create).timeoutMs();
+    }
+
+    private Group create(String name) {
+        String prefix = "circles.bulkhead." + name + ".";
+        int concurrency = environment.getProperty(prefix + "concurrency", Integer.class, Runtime.getRuntime().availableProcessors());
+        int queue = environment.getProperty(prefix + "queue", Integer.class, 100);
+        long timeoutMs = environment.getProperty(prefix + "timeout-ms", Long.class, 10000L);
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        log.info("[BULKHEAD] {} with concurrency {}, queue {} and timeout {} ms", name, concurrency, queue, timeoutMs);
+        Semaphore slots = new Semaphore(concurrency);
+        Gauge.builder("circles.bulkhead.active", slots, s -> concurrency - s.availablePermits()).tag("group", name).register(registry);
+        Gauge.builder("circles.bulkhead.queued", executor, e -> e.getQueue().size()).tag("group", name).register(registry);
+        return new Group(executor, slots, concurrency, timeoutMs,
+                Counter.builder("circles.bulkhead.rejected").tag("group", name).register(registry),
+                Counter.builder("circles.bulkhead.timeouts").tag("group", name).register(registry));
+    }
+
+    private record Group(ThreadPoolExecutor executor, Semaphore slots, int concurrency, long timeoutMs, Counter rejected, Counter timeouts) {}
+
+    /**
+     * A slot taken with {@link #tryAcquire}, released once on the first {@link #close()}.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final Semaphore slots;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphChangedEvent;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.FlatUser;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.User;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded (W-TinyLFU) caches for the trusters, trustees and shortest path lookups. Entries are invalidated by
+ * {@link TrustGraphChangedEvent}s: trusters and trustees of every user touched by a changed TRUSTS edge, and every
+ * cached path running through such a user. A new or raised trust can create a shorter path anywhere, so it clears
+ * all cached paths, as does the initial load of the graph (paths cached before came from the Neo4j fallback,
+ * which can be stale). Trusters and trustees are read from Neo4j, which can change without an event, so they also
+ * expire {@code circles.lookup-cache.expire-after-write-ms} after they were loaded.
+ */
+@Component
+@Slf4j
+public class LookupCache {
+
+    private final boolean enabled;
+    private final Cache<String, Collection<FlatUser>> trusters;
+    private final Cache<String, Collection<FlatUser>> trustees;
+    private final Cache<PathKey, List<User>> paths;
+    // cached paths per user address, removals only drop the path instance they were registered with
+    private final Map<String, Map<PathKey, List<User>>> pathsByAddress = new ConcurrentHashMap<>();
+    private final AtomicLong pathGeneration = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public LookupCache(MeterRegistry registry,
+                       @Value("${circles.lookup-cache.enabled:true}") boolean enabled,
+                       @Value("${circles.lookup-cache.max-weight:200000}") long maxWeight,
+                       @Value("${circles.lookup-cache.expire-after-write-ms:60000}") long expireAfterWriteMs) {
+        this.enabled = enabled;
+        this.trusters = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String name, Collection<FlatUser> users) -> weightOf(users))
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+        this.trustees = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String name, Collection<FlatUser> users) -> weightOf(users))
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+        this.paths = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((PathKey key, List<User> path) -> 1 + path.size())
+                .removalListener(this::unindex)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, trusters, "trusters");
+        CaffeineCacheMetrics.monitor(registry, trustees, "trustees");
+        CaffeineCacheMetrics.monitor(registry, paths, "paths");
+        FunctionCounter.builder("circles.lookup.invalidations", invalidations, AtomicLong::get).register(registry);
+    }
+
+    private record PathKey(boolean byName, String sender, String receiver) {}
+
+    // one per user in the response, a user with many trusters weighs accordingly
+    private static int weightOf(Collection<FlatUser> users) {
+        int weight = 1;
+        for (FlatUser user : users) {
+            weight += 1 + (user.getTrusters() == null ? 0 : user.getTrusters().size());
+        }
+        return weight;
+    }
+
+    public Collection<FlatUser> trusters(String name, Supplier<Collection<FlatUser>> loader) {
+        return enabled ? trusters.get(name, key -> loader.get()) : loader.get();
+    }
+
+    public Collection<FlatUser> trustees(String name, Supplier<Collection<FlatUser>> loader) {
+        return enabled ? trustees.get(name, key -> loader.get()) : loader.get();
+    }
+
+    public List<User> path(boolean byName, String sender, String receiver, Supplier<List<User>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        PathKey pathKey = new PathKey(byName, sender, receiver);
+        long generation = pathGeneration.get();
+        List<User> path = paths.get(pathKey, key -> {
+            List<User> found = List.copyOf(loader.get());
+            for (User user : found) {
+                if (user.getAddress() != null) {
+                    pathsByAddress.compute(user.getAddress(), (address, entries) -> {
+                        Map<PathKey, List<User>> registered = entries == null ? new HashMap<>() : entries;
+                        registered.put(key, found);
+                        return registered;
+                    });
+                }
+            }
+            return found;
+        });
+        if (pathGeneration.get() != generation) {
+            // computed while paths were invalidated, possibly on the previous graph
+            paths.invalidate(pathKey);
+        }
+        return path;
+    }
+
+    private void unindex(PathKey key, List<User> path, RemovalCause cause) {
+        if ((key == null) || (path == null)) {
+            return;
+        }
+        for (User user : path) {
+            if (user.getAddress() != null) {
+                pathsByAddress.computeIfPresent(user.getAddress(), (address, entries) -> {
+                    entries.remove(key, path);
+                    return entries.isEmpty() ? null : entries;
+                });
+            }
+        }
+    }
+
+    @EventListener
+    public void onTrustGraphChanged(TrustGraphChangedEvent event) {
+        if (enabled && (event.previous() == null)) {
+            // paths cached so far came from the Neo4j fallback, the initial load has no changes to invalidate them by
+            pathGeneration.incrementAndGet();
+            invalidations.addAndGet(paths.estimatedSize());
+            paths.invalidateAll();
+            log.debug("[LOOKUP] Invalidated all paths for the initial trust graph");
+            return;
+        }
+        if (!enabled || event.changes().isEmpty()) {
+            return;
+        }
+        // before invalidating, so that a path computed on the previous graph is not left in the cache
+        pathGeneration.incrementAndGet();
+        Set<String> touched = new HashSet<>();
+        boolean added = false;
+        for (TrustEdgeChange change : event.changes()) {
+            invalidate(trusters, nameOf(event, change.trustee()));
+            invalidate(trustees, nameOf(event, change.truster()));
+            touched.add(change.truster());
+            touched.add(change.trustee());
+            added |= !change.removed() && (change.amount() > 0);
+        }
+        if (added) {
+            invalidations.addAndGet(paths.estimatedSize());
+            paths.invalidateAll();
+        } else {
+            for (String address : touched) {
+                Map<PathKey, List<User>> entries = pathsByAddress.remove(address);
+                if (entries != null) {
+                    invalidations.addAndGet(entries.size());
+                    paths.invalidateAll(entries.keySet());
+                }
+            }
+        }
+        log.debug("[LOOKUP] Invalidated entries of {} users for {} changes", touched.size(), event.changes().size());
+    }
+
+    private void invalidate(Cache<String, Collection<FlatUser>> cache, String name) {
+        if ((name != null) && (cache.asMap().remove(name) != null)) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private static String nameOf(TrustGraphChangedEvent event, String address) {
+        String name = nameOf(event.current(), address);
+        return name != null ? name : nameOf(event.previous(), address);
+    }
+
+    private static String nameOf(TrustGraph graph, String address) {
+        if (graph == null) {
+            return null;
+        }
+        int node = graph.indexOfAddress(address);
+        return node < 0 ? null : graph.name(node);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("invalidations", invalidations.get());
+        stats.put("trusters", statsOf(trusters));
+        stats.put("trustees", statsOf(trustees));
+        stats.put("paths", statsOf(paths));
+        return stats;
+    }
+
+    private static Map<String, Object> statsOf(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.estimatedSize());
+        map.put("hits", stats.hitCount());
+        map.put("misses", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictions", stats.evictionCount());
+        map.put("evictionWeight", stats.evictionWeight());
+        return map;
+    }
+}
@@ -0,0 +1,200 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Owns the GDS projections of the trust graph. Every projection gets a versioned name, readers always use
+ * the projection returned by {@link #currentName()} which is switched only after a new one is complete.
+ * Computations run through {@link #withCurrent} hold the projection they use, {@link #replace} drops the
+ * previous projection only once they are done.
+ * <p>
+ * Names are {@code circles-<instance>-<millis>}, with {@code circles.projection.instance-id} (default: the host
+ * name) as instance, so instances sharing a database never touch each other's projections. Projections this
+ * instance left behind in an earlier run (e.g. after a crash) are dropped on startup unless
+ * {@code circles.projection.drop-stale} is disabled.
+ */
+@Service
+@Slf4j
+public class ProjectionManager {
+
+    private static final String PREFIX = "circles-";
+
+    private final Neo4jClient neo4jClient;
+    private final Map<String, ChangeMarker> markers = new ConcurrentHashMap<>();
+    private volatile String currentName;
+    private volatile ChangeMarker currentMarker;
+    // read: a computation uses the current projection, write: the current projection is replaced and dropped
+    private final ReadWriteLock inUse = new ReentrantReadWriteLock();
+    private final String prefix;
+    private final boolean dropStale;
+
+    public ProjectionManager(Neo4jClient neo4jClient,
+                             @Value("${circles.projection.instance-id:}") String instanceId,
+                             @Value("${circles.projection.drop-stale:true}") boolean dropStale) {
+        this.neo4jClient = neo4jClient;
+        // no '-' in the instance id, so the prefix of one instance is never the start of another one's
+        String instance = (instanceId == null || instanceId.isBlank() ? hostName() : instanceId).replaceAll("[^A-Za-z0-9_]", "_");
+        this.prefix = PREFIX + instance + "-";
+        this.dropStale = dropStale;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            log.warn("Host name unknown, set circles.projection.instance-id if several instances share one database");
+            return "local";
+        }
+    }
+
+    @PostConstruct
+    public void dropStaleProjections() {
+        if (!dropStale) {
+            return;
+        }
+        try {
+            Collection<String> stale = neo4jClient.query("CALL gds.graph.list() YIELD graphName WHERE graphName STARTS WITH $prefix RETURN graphName")
+                    .bind(prefix).to("prefix")
+                    .fetchAs(String.class)
+                    .mappedBy((t, record) -> record.get("graphName").asString())
+                    .all();
+            stale.stream().filter(this::isOwn).forEach(this::drop);
+        } catch (RuntimeException ex) {
+            log.warn("Stale projections cannot be listed", ex);
+        }
+    }
+
+    public String currentName() {
+        String name = currentName;
+        if (name == null) {
+            synchronized (this) {
+                if (currentName == null) {
+                    String created = nextName();
+                    create(created);
+                    switchTo(created);
+                }
+                name = currentName;
+            }
+        }
+        return name;
+    }
+
+    public String nextName() {
+        return prefix + System.currentTimeMillis();
+    }
+
+    private boolean isOwn(String name) {
+        return name.startsWith(prefix) && (name.length() > prefix.length())
+                && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+    }
+
+    public void create(String name) {
+        ChangeMarker marker = changeMarker(-1);
+        String query = """
+                CALL gds.graph.project($name, 'User', 'TRUSTS')
+                YIELD graphName, nodeCount, relationshipCount
+                RETURN graphName, nodeCount, relationshipCount
+                """;
+        Map<String, Object> result = neo4jClient.query(query).bind(name).to("name").fetch().one().orElse(Map.of());
+        log.info("[PROJECTION] Created {} with {} users and {} trusts", name, result.get("nodeCount"), result.get("relationshipCount"));
+        markers.put(name, marker);
+    }
+
+    /**
+     * Runs {@code computation} with the name of the current projection, which is not dropped before it returns.
+     */
+    public <T> T withCurrent(Function<String, T> computation) {
+        currentName();
+        inUse.readLock().lock();
+        try {
+            return computation.apply(currentName);
+        } finally {
+            inUse.readLock().unlock();
+        }
+    }
+
+    /**
+     * Switches to {@code name} and drops the previous projection once no computation uses it anymore.
+     */
+    public void replace(String name) {
+        inUse.writeLock().lock();
+        try {
+            drop(switchTo(name));
+        } finally {
+            inUse.writeLock().unlock();
+        }
+    }
+
+    public synchronized String switchTo(String name) {
+        String previous = currentName;
+        currentName = name;
+        currentMarker = markers.remove(name);
+        log.info("[PROJECTION] Switched from {} to {}", previous, name);
+        return previous;
+    }
+
+    public void drop(String name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            neo4jClient.query("CALL gds.graph.drop($name, false) YIELD graphName RETURN graphName").bind(name).to("name").run();
+            log.info("[PROJECTION] Dropped {}", name);
+        } catch (InvalidDataAccessResourceUsageException ex) {
+            log.error("Projection {} cannot be dropped", name, ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            drop(currentName);
+        } catch (RuntimeException ex) {
+            log.warn("Projection {} not dropped on shutdown", currentName);
+        }
+    }
+
+    /**
+     * Approximate number of TRUSTS changes since the current projection was created: edges with a newer
+     * block number plus the difference in the total edge count.
+     */
+    public long changesSinceProjection() {
+        ChangeMarker projected = currentMarker;
+        if (projected == null) {
+            return 0;
+        }
+        ChangeMarker marker = changeMarker(projected.maxBlock());
+        return marker.changed() + Math.abs(projected.trusts() - marker.trusts());
+    }
+
+    private ChangeMarker changeMarker(long sinceBlock) {
+        String query = """
+                MATCH (:User)-[r:TRUSTS]->(:User)
+                RETURN count(r) AS trusts, coalesce(max(r.blockNumber), -1) AS maxBlock,
+                       sum(CASE WHEN r.blockNumber > $since THEN 1 ELSE 0 END) AS changed
+                """;
+        return neo4jClient.query(query).bind(sinceBlock).to("since")
+                .fetchAs(ChangeMarker.class)
+                .mappedBy((t, record) -> new ChangeMarker(
+                        record.get("trusts").asLong(), record.get("maxBlock").asLong(), record.get("changed").asLong()))
+                .one()
+                .orElse(new ChangeMarker(0, -1, 0));
+    }
+
+    private record ChangeMarker(long trusts, long maxBlock, long changed) {}
+}
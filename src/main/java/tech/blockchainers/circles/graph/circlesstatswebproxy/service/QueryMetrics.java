@@ -0,0 +1,85 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.types.TypeSystem;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Latency of the Neo4j queries, split into the time spent in the database (including the transfer) and in
+ * mapping the records, plus the number of rows per query. Record mappers wrapped with {@link #mapped} and
+ * blocks wrapped with {@link #mapping} count as mapping time of the query running on the same thread.
+ * <p>
+ * Published as {@code circles.neo4j.query} (tags {@code query}, {@code phase}, {@code outcome}) and
+ * {@code circles.neo4j.rows} (tag {@code query}).
+ */
+@Component
+public class QueryMetrics {
+
+    private final MeterRegistry registry;
+    private final ThreadLocal<long[]> mappingNanos = new ThreadLocal<>();
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T extends Collection<?>> T query(String query, Supplier<T> call) {
+        return query(query, call, Collection::size);
+    }
+
+    public <T> T query(String query, Supplier<T> call, ToIntFunction<T> rows) {
+        long[] mapping = new long[1];
+        long[] outer = mappingNanos.get();
+        mappingNanos.set(mapping);
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            DistributionSummary.builder("circles.neo4j.rows")
+                    .tag("query", query)
+                    .register(registry)
+                    .record(rows.applyAsInt(result));
+            return result;
+        } finally {
+            long total = System.nanoTime() - start;
+            mappingNanos.set(outer);
+            timer(query, "database", outcome).record(total - mapping[0], TimeUnit.NANOSECONDS);
+            timer(query, "mapping", outcome).record(mapping[0], TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <R> BiFunction<TypeSystem, Record, R> mapped(BiFunction<TypeSystem, Record, R> mapper) {
+        return (typeSystem, record) -> mapping(() -> mapper.apply(typeSystem, record));
+    }
+
+    public <T> T mapping(Supplier<T> block) {
+        long[] mapping = mappingNanos.get();
+        if (mapping == null) {
+            return block.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return block.get();
+        } finally {
+            mapping[0] += System.nanoTime() - start;
+        }
+    }
+
+    private Timer timer(String query, String phase, String outcome) {
+        return Timer.builder("circles.neo4j.query")
+                .tag("query", query)
+                .tag("phase", phase)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
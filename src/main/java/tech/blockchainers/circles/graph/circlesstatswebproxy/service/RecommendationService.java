@@ -0,0 +1,103 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.RecommendationIndex;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphChangedEvent;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the {@link RecommendationIndex} in line with the current trust graph: built once per loaded graph
+ * and updated row by row when trust changes are applied. An index left behind by a failed update is rebuilt on
+ * the next read.
+ */
+@Service
+@Slf4j
+public class RecommendationService {
+
+    private final TrustGraphService trustGraphService;
+    private final ForkJoinPool analyticsPool;
+    private final int maxPerUser;
+    private final AtomicReference<RecommendationIndex> index = new AtomicReference<>();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+
+    public RecommendationService(TrustGraphService trustGraphService, ForkJoinPool analyticsPool,
+                                 @Value("${circles.recommendations.max-per-user:100}") int maxPerUser) {
+        this.trustGraphService = trustGraphService;
+        this.analyticsPool = analyticsPool;
+        this.maxPerUser = maxPerUser;
+    }
+
+    /**
+     * The index if it matches the current trust graph, otherwise empty. A build is started if none runs and no
+     * update is pending that would bring the index up to date.
+     */
+    public Optional<RecommendationIndex> current() {
+        RecommendationIndex current = index.get();
+        Optional<TrustGraph> graph = trustGraphService.current();
+        if ((current != null) && graph.isPresent() && (current.graph() == graph.get())) {
+            return Optional.of(current);
+        }
+        boolean needsBuild = (current == null) || (pendingUpdates.get() == 0);
+        if (graph.isPresent() && needsBuild && building.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    building.set(false);
+                }
+            });
+        }
+        return Optional.empty();
+    }
+
+    @EventListener
+    public void onTrustGraphChanged(TrustGraphChangedEvent event) {
+        pendingUpdates.incrementAndGet();
+        CompletableFuture.runAsync(() -> update(event)).whenComplete((ignored, ex) -> {
+            pendingUpdates.decrementAndGet();
+            if (ex != null) {
+                log.error("Recommendation index cannot be updated, it is rebuilt on the next read", ex);
+            }
+        });
+    }
+
+    private synchronized void update(TrustGraphChangedEvent event) {
+        if (trustGraphService.current().orElse(null) != event.current()) {
+            return;
+        }
+        RecommendationIndex current = index.get();
+        if ((current == null) || (current.graph() != event.previous())) {
+            rebuild();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        index.set(current.update(event.current(), event.changes(), analyticsPool));
+        log.info("[RECOMMENDATIONS] Updated for {} changes in {} ms", event.changes().size(), System.currentTimeMillis() - start);
+    }
+
+    private synchronized void rebuild() {
+        try {
+            TrustGraph graph = trustGraphService.require();
+            RecommendationIndex current = index.get();
+            if ((current != null) && (current.graph() == graph)) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            index.set(RecommendationIndex.build(graph, maxPerUser, analyticsPool));
+            log.info("[RECOMMENDATIONS] Built for {} users in {} ms", graph.nodeCount(), System.currentTimeMillis() - start);
+        } catch (RuntimeException ex) {
+            log.error("Recommendation index cannot be built", ex);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoreTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.SimilarityTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.TableCodec;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.UserDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Writes every computed analytics snapshot to {@code circles.analytics.snapshot-dir} (one file per cache
+ * slot) and memory-maps them again on startup. Every file carries the engine configuration, a tag with the
+ * projection or graph the snapshot was computed from and the original computation time. A file is only loaded
+ * for the same configuration it was written with. An empty directory setting disables it.
+ */
+@Component
+@Slf4j
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x43534E50;
+    private static final int FORMAT = 2;
+    private static final byte SCORES = 1;
+    private static final byte SIMILARITIES = 2;
+
+    private final Path directory;
+
+    public SnapshotStore(@Value("${circles.analytics.snapshot-dir:}") String directory) {
+        this.directory = StringUtils.hasText(directory) ? Paths.get(directory) : null;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public record Stored<T>(T value, String tag, Instant computedAt) {}
+
+    @FunctionalInterface
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public void saveScores(String key, String config, String tag, Instant computedAt, ScoreTable table) {
+        save(key, SCORES, config, tag, computedAt, out -> TableCodec.writeScores(table, out));
+    }
+
+    public void saveSimilarities(String key, String config, String tag, Instant computedAt, SimilarityTable table) {
+        save(key, SIMILARITIES, config, tag, computedAt, out -> TableCodec.writeSimilarities(table, out));
+    }
+
+    public Optional<Stored<ScoreTable>> loadScores(String key, String config, UserDictionary dictionary) {
+        return load(key, SCORES, config, in -> TableCodec.readScores(in, dictionary));
+    }
+
+    public Optional<Stored<SimilarityTable>> loadSimilarities(String key, String config, UserDictionary dictionary) {
+        return load(key, SIMILARITIES, config, in -> TableCodec.readSimilarities(in, dictionary));
+    }
+
+    private void save(String key, byte kind, String config, String tag, Instant computedAt, Body body) {
+        if (directory == null) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            Path target = file(key);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeByte(kind);
+                out.writeLong(computedAt.toEpochMilli());
+                writeString(out, config);
+                writeString(out, tag);
+                body.write(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            log.info("[SNAPSHOT] Saved {} ({}, {}) with {} bytes", key, config, tag, Files.size(target));
+        } catch (IOException | RuntimeException ex) {
+            log.error("Snapshot {} cannot be saved", key, ex);
+        } finally {
+            deleteTemp(temp);
+        }
+    }
+
+    private static void deleteTemp(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ex) {
+            log.warn("Temporary snapshot {} cannot be deleted", temp, ex);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private <T> Optional<Stored<T>> load(String key, byte kind, String config, Function<ByteBuffer, T> reader) {
+        if (directory == null) {
+            return Optional.empty();
+        }
+        Path file = file(key);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = System.currentTimeMillis();
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((in.getInt() != MAGIC) || (in.getInt() != FORMAT) || (in.get() != kind)) {
+                log.warn("[SNAPSHOT] Ignoring {}, unknown format", file);
+                return Optional.empty();
+            }
+            Instant computedAt = Instant.ofEpochMilli(in.getLong());
+            String storedConfig = readString(in);
+            String tag = readString(in);
+            if (!storedConfig.equals(String.valueOf(config))) {
+                log.warn("[SNAPSHOT] Ignoring {}, computed with {} instead of {}", file, storedConfig, config);
+                return Optional.empty();
+            }
+            T value = reader.apply(in);
+            log.info("[SNAPSHOT] Loaded {} ({}, computed at {}) in {} ms", key, tag, computedAt, System.currentTimeMillis() - start);
+            return Optional.of(new Stored<>(value, tag, computedAt));
+        } catch (IOException | RuntimeException ex) {
+            log.error("Snapshot {} cannot be loaded", key, ex);
+            return Optional.empty();
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".snap");
+    }
+}
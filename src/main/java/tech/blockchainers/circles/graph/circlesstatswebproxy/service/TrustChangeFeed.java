@@ -0,0 +1,250 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the in-memory trust graph current between full loads by feeding trust changes to
+ * {@link TrustGraphService#apply} in batches, from one of two sources ({@code circles.changes.source}):
+ * <ul>
+ *     <li>{@code neo4j}: polls the TRUSTS edges with a {@code blockNumber} above the last one seen. After every
+ *     full load it restarts from the block the load started at. A block with more edges than a batch is read
+ *     as a whole. Deleted edges are not seen, only edges updated to amount 0.</li>
+ *     <li>{@code log}: tails a local file of {@link TrustEdgeChange}s as NDJSON, including removals, and starts
+ *     over when the file shrinks. The offset only moves past changes once they are applied.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class TrustChangeFeed {
+
+    private static final String CHANGES_QUERY = """
+            MATCH (u1:User)-[r:TRUSTS]->(u2:User) WHERE r.blockNumber > $since
+            RETURN u1.address AS truster, u2.address AS trustee, r.amount AS amount, r.blockNumber AS blockNumber
+            ORDER BY blockNumber LIMIT $limit
+            """;
+
+    private static final String BLOCK_QUERY = """
+            MATCH (u1:User)-[r:TRUSTS]->(u2:User) WHERE r.blockNumber = $block
+            RETURN u1.address AS truster, u2.address AS trustee, r.amount AS amount, r.blockNumber AS blockNumber
+            """;
+
+    private final Neo4jClient neo4jClient;
+    private final QueryMetrics queryMetrics;
+    private final TrustGraphService trustGraphService;
+    private final TrustGraphLoader loader;
+    private final ObjectMapper objectMapper;
+    private final String source;
+    private final Path logFile;
+    private final int batchSize;
+    private final Counter applied;
+
+    private long seenLoads;
+    private long blockNumber = -1;
+    private long logOffset;
+    private volatile Instant lastAppliedAt;
+    private volatile long marker = -1;
+
+    public TrustChangeFeed(Neo4jClient neo4jClient, QueryMetrics queryMetrics, TrustGraphService trustGraphService, TrustGraphLoader loader,
+                           ObjectMapper objectMapper, MeterRegistry registry,
+                           @Value("${circles.changes.source:none}") String source,
+                           @Value("${circles.changes.log-file:changes.ndjson}") String logFile,
+                           @Value("${circles.changes.batch-size:1000}") int batchSize) {
+        this.neo4jClient = neo4jClient;
+        this.queryMetrics = queryMetrics;
+        this.trustGraphService = trustGraphService;
+        this.loader = loader;
+        this.objectMapper = objectMapper;
+        this.source = source;
+        this.logFile = Path.of(logFile);
+        this.batchSize = batchSize;
+        this.applied = Counter.builder("circles.changes.applied").tag("source", source).register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${circles.changes.poll-interval-ms:5000}", initialDelayString = "${circles.changes.poll-interval-ms:5000}")
+    public synchronized void poll() {
+        if ("none".equals(source) || trustGraphService.current().isEmpty()) {
+            return;
+        }
+        try {
+            switch (source) {
+                case "neo4j" -> pollNeo4j();
+                case "log" -> pollLog();
+                default -> log.warn("[CHANGES] Unknown source {}, expected none, neo4j or log", source);
+            }
+        } catch (RuntimeException ex) {
+            log.error("[CHANGES] Poll of {} failed", source, ex);
+        }
+    }
+
+    private void pollNeo4j() {
+        long loads = loader.loads();
+        if (loads != seenLoads) {
+            seenLoads = loads;
+            blockNumber = loader.blockNumber();
+        }
+        while (true) {
+            long since = blockNumber;
+            List<Map<String, Object>> rows = queryMetrics.query("trustChanges", () -> new ArrayList<>(neo4jClient.query(CHANGES_QUERY)
+                    .bind(since).to("since")
+                    .bind(batchSize).to("limit")
+                    .fetch().all()));
+            boolean full = rows.size() == batchSize;
+            if (full) {
+                // the next poll continues after the last block, so it has to be complete
+                long lastBlock = blockOf(rows.get(rows.size() - 1));
+                List<Map<String, Object>> complete = rows.stream().filter(row -> blockOf(row) < lastBlock).toList();
+                rows = complete.isEmpty() ? block(lastBlock) : complete;
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+            // a block of skipped changes still moves the feed past it
+            List<TrustEdgeChange> changes = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                double amount = row.get("amount") instanceof Number number ? number.doubleValue() : 0;
+                TrustEdgeChange change = TrustEdgeChange.upsert((String) row.get("truster"), (String) row.get("trustee"), amount);
+                if (isValid(change)) {
+                    changes.add(change);
+                } else {
+                    log.warn("[CHANGES] Skipping trust without address in block {}: {}", blockOf(row), row);
+                }
+            }
+            apply(changes);
+            blockNumber = blockOf(rows.get(rows.size() - 1));
+            marker = blockNumber;
+            if (!full) {
+                return;
+            }
+        }
+    }
+
+    // all edges of one block, for blocks with more edges than fit in a batch
+    private List<Map<String, Object>> block(long block) {
+        return queryMetrics.query("trustChangesBlock", () -> new ArrayList<>(neo4jClient.query(BLOCK_QUERY)
+                .bind(block).to("block")
+                .fetch().all()));
+    }
+
+    private static long blockOf(Map<String, Object> row) {
+        return ((Number) row.get("blockNumber")).longValue();
+    }
+
+    private void pollLog() {
+        if (!Files.isRegularFile(logFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < logOffset) {
+                log.info("[CHANGES] {} shrank to {} bytes, reading it from the start", logFile, size);
+                logOffset = 0;
+            }
+            List<TrustEdgeChange> changes = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            byte[] pending = new byte[0];
+            long position = logOffset;
+            // end of the last complete line read, logOffset only moves there once its changes are applied
+            long parsed = logOffset;
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+                byte[] chunk = new byte[pending.length + read];
+                System.arraycopy(pending, 0, chunk, 0, pending.length);
+                buffer.flip();
+                buffer.get(chunk, pending.length, read);
+                int lineStart = 0;
+                for (int i = 0; i < chunk.length; i++) {
+                    if (chunk[i] == '\n') {
+                        parse(new String(chunk, lineStart, i - lineStart, StandardCharsets.UTF_8), changes);
+                        parsed += i + 1 - lineStart;
+                        lineStart = i + 1;
+                        if (changes.size() >= batchSize) {
+                            apply(changes);
+                            logOffset = parsed;
+                            changes = new ArrayList<>();
+                        }
+                    }
+                }
+                // an incomplete last line is read again by the next poll
+                pending = Arrays.copyOfRange(chunk, lineStart, chunk.length);
+            }
+            apply(changes);
+            logOffset = parsed;
+            marker = logOffset;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void parse(String line, Collection<TrustEdgeChange> changes) {
+        if (line.isBlank()) {
+            return;
+        }
+        TrustEdgeChange change;
+        try {
+            change = objectMapper.readValue(line, TrustEdgeChange.class);
+        } catch (JsonProcessingException ex) {
+            change = null;
+        }
+        if (isValid(change)) {
+            changes.add(change);
+        } else {
+            log.warn("[CHANGES] Skipping invalid change in {}: {}", logFile, line);
+        }
+    }
+
+    // the graph rejects a whole batch with an invalid change, which would stop the feed at that batch for good
+    private static boolean isValid(TrustEdgeChange change) {
+        return (change != null) && (change.truster() != null) && !change.truster().isBlank()
+                && (change.trustee() != null) && !change.trustee().isBlank() && Double.isFinite(change.amount());
+    }
+
+    private void apply(List<TrustEdgeChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        trustGraphService.apply(changes);
+        applied.increment(changes.size());
+        lastAppliedAt = Instant.now();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("source", source);
+        stats.put("marker", marker);
+        stats.put("applied", (long) applied.count());
+        stats.put("lastAppliedAt", lastAppliedAt);
+        stats.put("overlaySize", trustGraphService.current().map(TrustGraph::overlaySize).orElse(0));
+        return stats;
+    }
+}
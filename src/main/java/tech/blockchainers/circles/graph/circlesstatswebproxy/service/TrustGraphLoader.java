@@ -0,0 +1,301 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Values;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.stereotype.Component;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Bulk loader of the {@code User}/{@code TRUSTS} graph. Users are read in pages ordered by internal id, every
+ * page continuing after the last id of the previous one (keyset paging, so gaps in the ids cost nothing). The
+ * outgoing trusts of the users of a page are read on the loader pool while the next page is read. Records are
+ * decoded straight from the driver into primitive arrays and node ids are resolved against the sorted ids of
+ * all users, so no entity or boxed id is created per user or trust.
+ * <p>
+ * Every page is its own transaction, so the loaded graph is not a consistent snapshot: users and trusts changed
+ * during the load may or may not be part of it, trusts to users created after their page was read are dropped.
+ * The {@code neo4j} change feed continues from the {@link #blockNumber()} read before the first page, so trusts
+ * created or changed during the load are applied again afterwards.
+ */
+@Component
+@Slf4j
+public class TrustGraphLoader {
+
+    private static final String USERS_QUERY = """
+            MATCH (u:User) WHERE id(u) > $last
+            RETURN id(u) AS id, u.address AS address, u.name AS name, u.image_url AS imageUrl
+            ORDER BY id LIMIT $limit
+            """;
+    private static final String TRUSTS_QUERY = """
+            UNWIND $ids AS id
+            MATCH (u1:User)-[r:TRUSTS]->(u2:User) WHERE id(u1) = id
+            RETURN id AS src, id(u2) AS dst, r.amount AS amount
+            """;
+
+    private final Neo4jClient neo4jClient;
+    private final QueryMetrics queryMetrics;
+    private final int pageSize;
+    private final ExecutorService executor;
+    private final AtomicReference<Map<String, Object>> lastLoad = new AtomicReference<>(Map.of());
+    private volatile long blockNumber = -1;
+    private final AtomicLong loads = new AtomicLong();
+
+    public TrustGraphLoader(Neo4jClient neo4jClient, QueryMetrics queryMetrics,
+                            @Value("${circles.graph.load.page-size:100000}") int pageSize,
+                            @Value("${circles.graph.load.parallelism:4}") int parallelism) {
+        this.neo4jClient = neo4jClient;
+        this.queryMetrics = queryMetrics;
+        this.pageSize = pageSize;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "graph-load-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public TrustGraph load() {
+        long start = System.nanoTime();
+        long loadedBlock = maxBlockNumber();
+        List<UserPage> users = new ArrayList<>();
+        List<CompletableFuture<TrustPage>> trustPages = new ArrayList<>();
+        try {
+            long last = -1;
+            while (true) {
+                UserPage page = readUsers(last);
+                if (page.size == 0) {
+                    break;
+                }
+                users.add(page);
+                long[] ids = Arrays.copyOf(page.ids, page.size);
+                trustPages.add(CompletableFuture.supplyAsync(() -> readTrusts(ids), executor));
+                if (page.size < pageSize) {
+                    break;
+                }
+                last = ids[ids.length - 1];
+            }
+            // pages are sorted and continue after the last id of the previous one, so all ids are sorted
+            long[] nodeIds = new long[users.stream().mapToInt(UserPage::size).sum()];
+            int offset = 0;
+            for (UserPage page : users) {
+                System.arraycopy(page.ids, 0, nodeIds, offset, page.size);
+                offset += page.size;
+            }
+            List<CompletableFuture<TrustPage>> resolved = trustPages.stream()
+                    .map(page -> page.thenApplyAsync(trusts -> trusts.resolve(nodeIds), executor))
+                    .toList();
+            int trustCount = 0;
+            List<TrustPage> trusts = new ArrayList<>(resolved.size());
+            for (CompletableFuture<TrustPage> page : resolved) {
+                TrustPage trustPage = page.join();
+                trusts.add(trustPage);
+                trustCount += trustPage.size;
+            }
+            TrustGraph.Builder builder = TrustGraph.builder(nodeIds.length, trustCount);
+            for (UserPage page : users) {
+                for (int i = 0; i < page.size; i++) {
+                    builder.addNode(page.ids[i], page.addresses[i], page.names[i], page.imageUrls[i]);
+                }
+            }
+            for (TrustPage page : trusts) {
+                for (int i = 0; i < page.size; i++) {
+                    if ((page.sources[i] >= 0) && (page.targets[i] >= 0)) {
+                        builder.addEdge(page.sources[i], page.targets[i], page.amounts[i]);
+                    }
+                }
+            }
+            TrustGraph graph = builder.build();
+            recordLoad(graph, users.size(), loadedBlock, System.nanoTime() - start);
+            return graph;
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        } finally {
+            trustPages.forEach(page -> page.cancel(true));
+        }
+    }
+
+    private long maxBlockNumber() {
+        return neo4jClient.query("MATCH (:User)-[r:TRUSTS]->(:User) RETURN coalesce(max(r.blockNumber), -1) AS maxBlock")
+                .fetchAs(Long.class)
+                .mappedBy((t, record) -> record.get("maxBlock").asLong())
+                .one()
+                .orElse(-1L);
+    }
+
+    private UserPage readUsers(long last) {
+        return queryMetrics.query("graphUsersPage", () -> run(USERS_QUERY, Values.parameters("last", last, "limit", pageSize), result -> {
+            // fetched first and decoded in one mapping sample instead of timing every record
+            List<Record> records = result.list();
+            return queryMetrics.mapping(() -> {
+                UserPage page = new UserPage(records.size());
+                records.forEach(page::add);
+                return page;
+            });
+        }), UserPage::size);
+    }
+
+    private TrustPage readTrusts(long[] ids) {
+        return queryMetrics.query("graphTrustsPage", () -> run(TRUSTS_QUERY, Values.parameters("ids", ids), result -> {
+            List<Record> records = result.list();
+            return queryMetrics.mapping(() -> {
+                TrustPage page = new TrustPage(records.size());
+                records.forEach(page::add);
+                return page;
+            });
+        }), TrustPage::size);
+    }
+
+    private <T> T run(String query, org.neo4j.driver.Value parameters, Function<Result, T> decoder) {
+        return neo4jClient.delegateTo(runner -> Optional.of(decoder.apply(runner.run(query, parameters))))
+                .run()
+                .orElseThrow();
+    }
+
+    private void recordLoad(TrustGraph graph, int pages, long loadedBlock, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        Map<String, Object> load = new LinkedHashMap<>();
+        load.put("users", graph.nodeCount());
+        load.put("trusts", graph.edgeCount());
+        load.put("pages", pages);
+        load.put("durationMs", TimeUnit.NANOSECONDS.toMillis(nanos));
+        load.put("usersPerSecond", Math.round(graph.nodeCount() / seconds));
+        load.put("trustsPerSecond", Math.round(graph.edgeCount() / seconds));
+        load.put("blockNumber", loadedBlock);
+        lastLoad.set(load);
+        blockNumber = loadedBlock;
+        loads.incrementAndGet();
+        log.info("[GRAPH] Loaded {} users and {} trusts in {} pages in {} ms ({} trusts/s)",
+                graph.nodeCount(), graph.edgeCount(), pages, load.get("durationMs"), load.get("trustsPerSecond"));
+    }
+
+    /**
+     * Size, duration and throughput of the last load.
+     */
+    public Map<String, Object> lastLoad() {
+        return lastLoad.get();
+    }
+
+    /**
+     * Number of completed loads, {@link #blockNumber()} belongs to the last one.
+     */
+    public long loads() {
+        return loads.get();
+    }
+
+    /**
+     * Highest {@code blockNumber} of a TRUSTS edge before the last load started. The loaded graph contains
+     * every change up to this block, later ones may be missing.
+     */
+    public long blockNumber() {
+        return blockNumber;
+    }
+
+    private static final class UserPage {
+
+        private long[] ids;
+        private String[] addresses;
+        private String[] names;
+        private String[] imageUrls;
+        private int size;
+
+        UserPage(int capacity) {
+            ids = new long[Math.max(16, capacity)];
+            addresses = new String[ids.length];
+            names = new String[ids.length];
+            imageUrls = new String[ids.length];
+        }
+
+        UserPage add(Record record) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                addresses = Arrays.copyOf(addresses, capacity);
+                names = Arrays.copyOf(names, capacity);
+                imageUrls = Arrays.copyOf(imageUrls, capacity);
+            }
+            ids[size] = record.get(0).asLong();
+            addresses[size] = record.get(1).asString(null);
+            names[size] = record.get(2).asString(null);
+            imageUrls[size] = record.get(3).asString(null);
+            size++;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static final class TrustPage {
+
+        private long[] sourceIds;
+        private long[] targetIds;
+        private double[] amounts;
+        private int[] sources;
+        private int[] targets;
+        private int size;
+
+        TrustPage(int capacity) {
+            sourceIds = new long[Math.max(16, capacity)];
+            targetIds = new long[sourceIds.length];
+            amounts = new double[sourceIds.length];
+        }
+
+        TrustPage add(Record record) {
+            if (size == sourceIds.length) {
+                int capacity = size * 2;
+                sourceIds = Arrays.copyOf(sourceIds, capacity);
+                targetIds = Arrays.copyOf(targetIds, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+            }
+            sourceIds[size] = record.get(0).asLong();
+            targetIds[size] = record.get(1).asLong();
+            amounts[size] = record.get(2).asDouble(0);
+            size++;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // node index of both ends, -1 for users which were not loaded (created after their page was read)
+        TrustPage resolve(long[] nodeIds) {
+            sources = new int[size];
+            targets = new int[size];
+            for (int i = 0; i < size; i++) {
+                sources[i] = Math.max(-1, Arrays.binarySearch(nodeIds, sourceIds[i]));
+                targets[i] = Math.max(-1, Arrays.binarySearch(nodeIds, targetIds[i]));
+            }
+            sourceIds = null;
+            targetIds = null;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphChangedEvent;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphDiff;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Slf4j
+public class TrustGraphService {
+
+    private final TrustGraphLoader loader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicReference<TrustGraph> graph = new AtomicReference<>();
+    private final int compactionThreshold;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "graph-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // changes applied since the running compaction took its graph, null while none is running or after a reload
+    private List<TrustEdgeChange> appliedDuringCompaction;
+    private final Timer compactions;
+
+    public TrustGraphService(TrustGraphLoader loader, ApplicationEventPublisher eventPublisher, MeterRegistry registry,
+                             @Value("${circles.graph.compaction.threshold:10000}") int compactionThreshold) {
+        this.loader = loader;
+        this.eventPublisher = eventPublisher;
+        this.compactionThreshold = compactionThreshold;
+        this.compactions = Timer.builder("circles.graph.compaction").register(registry);
+        Gauge.builder("circles.graph.overlay.size", graph, g -> g.get() == null ? 0 : g.get().overlaySize()).register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    @PostConstruct
+    public void setup() {
+        CompletableFuture.runAsync(this::reload);
+    }
+
+    public Optional<TrustGraph> current() {
+        return Optional.ofNullable(graph.get());
+    }
+
+    public TrustGraph require() {
+        TrustGraph current = graph.get();
+        if (current == null) {
+            synchronized (this) {
+                if (graph.get() == null) {
+                    reload();
+                }
+            }
+            current = graph.get();
+        }
+        if (current == null) {
+            throw new IllegalStateException("Trust graph is not loaded");
+        }
+        return current;
+    }
+
+    public void reload() {
+        TrustGraphChangedEvent event;
+        synchronized (this) {
+            try {
+                long start = System.currentTimeMillis();
+                TrustGraph loaded = loader.load();
+                TrustGraph previous = graph.getAndSet(loaded);
+                appliedDuringCompaction = null;
+                List<TrustEdgeChange> changes = previous == null ? List.of() : TrustGraphDiff.between(previous, loaded);
+                event = new TrustGraphChangedEvent(previous, loaded, changes);
+                log.info("[GRAPH] Loaded {} users and {} trusts ({} changes) in {} ms",
+                        loaded.nodeCount(), loaded.edgeCount(), changes.size(), System.currentTimeMillis() - start);
+            } catch (RuntimeException ex) {
+                log.error("Trust graph cannot be loaded, path queries fall back to Neo4j", ex);
+                return;
+            }
+        }
+        eventPublisher.publishEvent(event);
+    }
+
+    /**
+     * Applies a batch of trust changes to the in-memory graph without reloading it from Neo4j. The changes are
+     * held as a delta overlay, once it reaches {@code circles.graph.compaction.threshold} adjacency lists the
+     * current graph is compacted in the background.
+     */
+    public TrustGraph apply(List<TrustEdgeChange> changes) {
+        TrustGraphChangedEvent event;
+        synchronized (this) {
+            TrustGraph previous = require();
+            TrustGraph changed = previous.withChanges(changes);
+            graph.set(changed);
+            if (appliedDuringCompaction != null) {
+                appliedDuringCompaction.addAll(changes);
+            }
+            event = new TrustGraphChangedEvent(previous, changed, List.copyOf(changes));
+            log.info("[GRAPH] Applied {} changes, now {} users and {} trusts", changes.size(), changed.nodeCount(), changed.edgeCount());
+        }
+        eventPublisher.publishEvent(event);
+        scheduleCompaction();
+        return event.current();
+    }
+
+    private void scheduleCompaction() {
+        TrustGraph current = graph.get();
+        if ((current != null) && (current.overlaySize() >= compactionThreshold) && !compactor.isShutdown() && compacting.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    /**
+     * Folds the overlay of the current graph into new arrays without holding the lock, then publishes the
+     * compacted graph with the changes applied in the meantime replayed on top of it. Compacted graphs keep the
+     * node indexes, so the replayed changes end up with the same nodes as in the graph they replace. A reload
+     * in the meantime discards the compaction.
+     */
+    private void compact() {
+        boolean published = false;
+        try {
+            TrustGraph base;
+            synchronized (this) {
+                base = graph.get();
+                appliedDuringCompaction = new ArrayList<>();
+            }
+            long start = System.nanoTime();
+            TrustGraph compacted = base.compacted();
+            TrustGraphChangedEvent event;
+            int replayed;
+            synchronized (this) {
+                List<TrustEdgeChange> applied = appliedDuringCompaction;
+                appliedDuringCompaction = null;
+                if (applied == null) {
+                    log.info("[GRAPH] Compaction discarded, the graph was reloaded");
+                    return;
+                }
+                TrustGraph next = applied.isEmpty() ? compacted : compacted.withChanges(applied);
+                event = new TrustGraphChangedEvent(graph.getAndSet(next), next, List.of());
+                replayed = applied.size();
+            }
+            long elapsed = System.nanoTime() - start;
+            compactions.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("[GRAPH] Compacted {} changed adjacency lists of {} users and {} trusts ({} changes replayed) in {} ms",
+                    base.overlaySize(), compacted.nodeCount(), compacted.edgeCount(), replayed, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            published = true;
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException ex) {
+            log.error("Trust graph cannot be compacted", ex);
+        } finally {
+            synchronized (this) {
+                appliedDuringCompaction = null;
+            }
+            compacting.set(false);
+        }
+        if (published) {
+            // the replayed changes can reach the threshold again without any further apply
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Size, duration and throughput of the last load from Neo4j.
+     */
+    public Map<String, Object> lastLoad() {
+        return loader.lastLoad();
+    }
+
+}
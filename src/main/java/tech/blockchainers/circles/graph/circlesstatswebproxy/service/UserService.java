@@ -4,14 +4,29 @@ import lombok.extern.slf4j.Slf4j;
 import org.neo4j.driver.internal.InternalPath;
 import org.neo4j.driver.types.Node;
 import org.neo4j.driver.types.TypeSystem;
-import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.MaxFlow;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.ParallelRange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PathEnumerator;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.PathFinder;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.RecommendationIndex;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
 import tech.blockchainers.circles.graph.circlesstatswebproxy.model.FlatUser;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.PathRequest;
 import tech.blockchainers.circles.graph.circlesstatswebproxy.model.User;
 import tech.blockchainers.circles.graph.circlesstatswebproxy.repository.UserRepository;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -19,197 +34,384 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final Neo4jClient neo4jClient;
+    private final TrustGraphService trustGraphService;
+    private final RecommendationService recommendationService;
+    private final LookupCache lookupCache;
+    private final QueryMetrics queryMetrics;
+    private final ForkJoinPool batchPathPool;
+    private final Bulkheads bulkheads;
+    private final int pathMaxDepth;
+    private final int pathMaxVisited;
+    private final int allPathsMaxPaths;
 
-    public UserService(UserRepository userRepository, Neo4jClient neo4jClient) {
+    public UserService(UserRepository userRepository, Neo4jClient neo4jClient, TrustGraphService trustGraphService,
+                       RecommendationService recommendationService, LookupCache lookupCache, QueryMetrics queryMetrics,
+                       @Qualifier("batchPathPool") ForkJoinPool batchPathPool,
+                       Bulkheads bulkheads,
+                       @Value("${circles.path.max-depth:10}") int pathMaxDepth,
+                       @Value("${circles.path.max-visited:250000}") int pathMaxVisited,
+                       @Value("${circles.allpaths.max-paths:10000}") int allPathsMaxPaths) {
         this.userRepository = userRepository;
         this.neo4jClient = neo4jClient;
+        this.trustGraphService = trustGraphService;
+        this.recommendationService = recommendationService;
+        this.lookupCache = lookupCache;
+        this.queryMetrics = queryMetrics;
+        this.batchPathPool = batchPathPool;
+        this.bulkheads = bulkheads;
+        this.pathMaxDepth = pathMaxDepth;
+        this.pathMaxVisited = pathMaxVisited;
+        this.allPathsMaxPaths = allPathsMaxPaths;
     }
 
-    public void createProjection() {
-        String query = """
-                CALL gds.graph.project('circles', 'User', 'TRUSTS')
-                """;
-        try {
-            neo4jClient.query(query).run();
-        } catch (InvalidDataAccessResourceUsageException ex) {
-            log.error("Projection cannot be created, does it exist already?", ex);
-        }
-    }
-
-
     public List<User> readUserGraph(String name) {
+        Optional<RecommendationIndex> index = recommendationService.current();
+        if (index.isPresent()) {
+            TrustGraph g = index.get().graph();
+            return toUsers(g, index.get().candidates(g.indexOfName(name)));
+        }
         return userRepository.triadicClosureForUser(name);
     }
 
     public List<User> calcPathNames(String sender, String receiver) {
+        return lookupCache.path(true, sender, receiver, () -> findPathNames(sender, receiver));
+    }
+
+    private List<User> findPathNames(String sender, String receiver) {
+        Optional<TrustGraph> graph = trustGraphService.current();
+        if (graph.isPresent()) {
+            TrustGraph g = graph.get();
+            return toUsers(g, PathFinder.shortestPath(g, g.indexOfName(sender), g.indexOfName(receiver), pathMaxDepth, pathMaxVisited));
+        }
         return userRepository.shortestPathNames(sender, receiver);
     }
 
     public List<User> calcPathAddrs(String sender, String receiver) {
+        return lookupCache.path(false, sender, receiver, () -> findPathAddrs(sender, receiver));
+    }
+
+    private List<User> findPathAddrs(String sender, String receiver) {
+        Optional<TrustGraph> graph = trustGraphService.current();
+        if (graph.isPresent()) {
+            TrustGraph g = graph.get();
+            return toUsers(g, PathFinder.shortestPath(g, g.indexOfAddress(sender), g.indexOfAddress(receiver), pathMaxDepth, pathMaxVisited));
+        }
         return userRepository.shortestPathAddr(sender, receiver);
     }
 
-    public List<List<Map<String, String>>> calcAllPathNames(String sender, String receiver) {
-        String query = """
-            MATCH path = ( (you:User {name:$SENDER})<-[*1..4]-(other:User {name:$RECEIVER}) )
+    /**
+     * Shortest paths for many pairs, as lists of names in the order of {@code pairs}. See {@link #calcBatchPaths}.
+     */
+    public List<List<String>> calcBatchPathNames(List<PathRequest> pairs) {
+        return calcBatchPaths(pairs, true);
+    }
+
+    public List<List<String>> calcBatchPathAddrs(List<PathRequest> pairs) {
+        return calcBatchPaths(pairs, false);
+    }
+
+    /**
+     * Pairs are grouped by sender and the groups are searched in parallel, a sender with several receivers
+     * needs a single BFS for all of them. The workers of the batch pool never see the interrupt of a bulkhead
+     * timeout (the waiting caller does not even keep it), so they stop between groups at the paths deadline.
+     */
+    private List<List<String>> calcBatchPaths(List<PathRequest> pairs, boolean byName) {
+        Optional<TrustGraph> graph = trustGraphService.current();
+        if (graph.isEmpty()) {
+            List<List<String>> paths = new ArrayList<>(pairs.size());
+            for (PathRequest pair : pairs) {
+                List<User> path = byName ? calcPathNames(pair.sender(), pair.receiver()) : calcPathAddrs(pair.sender(), pair.receiver());
+                paths.add(path.stream().map(byName ? User::getName : User::getAddress).collect(Collectors.toList()));
+            }
+            return paths;
+        }
+        TrustGraph g = graph.get();
+        Map<Integer, List<Integer>> bySender = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            String sender = pairs.get(i).sender();
+            bySender.computeIfAbsent(byName ? g.indexOfName(sender) : g.indexOfAddress(sender), key -> new ArrayList<>()).add(i);
+        }
+        List<Map.Entry<Integer, List<Integer>>> groups = new ArrayList<>(bySender.entrySet());
+        List<List<String>> paths = new ArrayList<>(Collections.nCopies(pairs.size(), null));
+        long deadline = deadline(Long.MAX_VALUE);
+        ParallelRange.forEach(batchPathPool, groups.size(), 1, (from, to) -> {
+            for (int group = from; group < to; group++) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new CancellationException("Batch path search cancelled");
+                }
+                int sender = groups.get(group).getKey();
+                List<Integer> rows = groups.get(group).getValue();
+                int[] receivers = rows.stream()
+                        .map(pairs::get)
+                        .mapToInt(pair -> byName ? g.indexOfName(pair.receiver()) : g.indexOfAddress(pair.receiver()))
+                        .toArray();
+                int[][] found = receivers.length == 1
+                        ? new int[][] { PathFinder.shortestPath(g, sender, receivers[0], pathMaxDepth, pathMaxVisited) }
+                        : PathFinder.shortestPaths(g, sender, receivers, pathMaxDepth, pathMaxVisited);
+                for (int i = 0; i < receivers.length; i++) {
+                    List<String> path = new ArrayList<>(found[i].length);
+                    for (int node : found[i]) {
+                        path.add(byName ? g.name(node) : g.address(node));
+                    }
+                    paths.set(rows.get(i), path);
+                }
+            }
+        });
+        return paths;
+    }
+
+    /**
+     * Recommended user names for every name, see {@link #readUserGraph(String)}.
+     */
+    public Map<String, List<String>> calcBatchRecommendations(List<String> names) {
+        Map<String, List<String>> recommendations = new LinkedHashMap<>();
+        for (String name : names) {
+            recommendations.computeIfAbsent(name, key -> readUserGraph(key).stream().map(User::getName).distinct().collect(Collectors.toList()));
+        }
+        return recommendations;
+    }
+
+    private List<User> toUsers(TrustGraph graph, int[] path) {
+        List<User> users = new ArrayList<>(path.length);
+        for (int node : path) {
+            User user = new User();
+            user.setId(graph.nodeId(node));
+            user.setAddress(graph.address(node));
+            user.setName(graph.name(node));
+            user.setImageUrl(graph.imageUrl(node));
+            users.add(user);
+        }
+        return users;
+    }
+
+    public List<List<Map<String, String>>> calcAllPathNames(String sender, String receiver, int maxPaths, int maxDepth, long timeoutMs) {
+        List<List<Map<String, String>>> paths = new ArrayList<>();
+        streamAllPathNames(sender, receiver, maxPaths, maxDepth, timeoutMs, paths::add);
+        return paths;
+    }
+
+    public List<List<Map<String, String>>> calcAllPathAddrs(String sender, String receiver, int maxPaths, int maxDepth, long timeoutMs) {
+        List<List<Map<String, String>>> paths = new ArrayList<>();
+        streamAllPathAddrs(sender, receiver, maxPaths, maxDepth, timeoutMs, paths::add);
+        return paths;
+    }
+
+    /**
+     * Streams the simple trust paths from sender to receiver. {@code maxPaths} is capped at
+     * {@code circles.allpaths.max-paths}, {@code maxDepth} at {@code circles.path.max-depth} and
+     * {@code timeoutMs} at the deadline of the paths bulkhead, also for the Cypher fallback.
+     */
+    public int streamAllPathNames(String sender, String receiver, int maxPaths, int maxDepth, long timeoutMs,
+                                  Consumer<List<Map<String, String>>> consumer) {
+        return streamAllPaths(true, sender, receiver, maxPaths, maxDepth, timeoutMs, consumer);
+    }
+
+    public int streamAllPathAddrs(String sender, String receiver, int maxPaths, int maxDepth, long timeoutMs,
+                                  Consumer<List<Map<String, String>>> consumer) {
+        return streamAllPaths(false, sender, receiver, maxPaths, maxDepth, timeoutMs, consumer);
+    }
+
+    private int streamAllPaths(boolean byName, String sender, String receiver, int maxPaths, int maxDepth, long timeoutMs,
+                               Consumer<List<Map<String, String>>> consumer) {
+        int limit = Math.min(maxPaths, allPathsMaxPaths);
+        int depth = Math.min(maxDepth, pathMaxDepth);
+        long timeout = Math.min(timeoutMs, bulkheads.timeoutMs(Bulkheads.PATHS));
+        if ((limit < 1) || (depth < 1)) {
+            return 0;
+        }
+        Optional<TrustGraph> graph = trustGraphService.current();
+        if (graph.isPresent()) {
+            TrustGraph g = graph.get();
+            int from = byName ? g.indexOfName(sender) : g.indexOfAddress(sender);
+            int to = byName ? g.indexOfName(receiver) : g.indexOfAddress(receiver);
+            return enumeratePaths(g, from, to, limit, depth, timeout, consumer);
+        }
+        String property = byName ? "name" : "address";
+        // the depth of a variable length pattern cannot be a parameter, it is a clamped int
+        String statement = """
+            MATCH path = ( (you:User {%s:$SENDER})<-[*1..%d]-(other:User {%s:$RECEIVER}) )
             WHERE all(r IN relationships(path) WHERE (r.amount>0))
             AND size(apoc.coll.toSet(NODES(path))) = size(NODES(path))
             RETURN path
-            LIMIT 1000
-        """;
-        return createUserPathList(query, sender, receiver);
+            LIMIT $LIMIT
+        """.formatted(property, depth, property);
+        List<List<Map<String, String>>> paths = createUserPathList(byName ? "allPathsNames" : "allPathsAddrs", statement, sender, receiver, limit, timeout);
+        paths.forEach(consumer);
+        return paths.size();
+    }
+
+    public Map<String, Object> calcMaxFlowNames(String sender, String receiver, double value, int maxHops, long timeoutMs) {
+        TrustGraph g = trustGraphService.require();
+        return maxFlow(g, g.indexOfName(sender), g.indexOfName(receiver), value, maxHops, timeoutMs, true);
+    }
+
+    public Map<String, Object> calcMaxFlowAddrs(String sender, String receiver, double value, int maxHops, long timeoutMs) {
+        TrustGraph g = trustGraphService.require();
+        return maxFlow(g, g.indexOfAddress(sender), g.indexOfAddress(receiver), value, maxHops, timeoutMs, false);
     }
 
-    public List<List<Map<String, String>>> calcAllPathAddrs(String sender, String receiver) {
+    private Map<String, Object> maxFlow(TrustGraph graph, int sender, int receiver, double value, int maxHops, long timeoutMs, boolean byName) {
+        if ((sender < 0) || (receiver < 0)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown " + (sender < 0 ? "sender" : "receiver"));
+        }
+        long deadline = deadline(timeoutMs);
+        MaxFlow.Result result = MaxFlow.compute(graph, sender, receiver, Math.min(maxHops, pathMaxDepth), value, deadline);
+        List<Map<String, Object>> transfers = new ArrayList<>(result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Map<String, Object> transfer = new LinkedHashMap<>(4);
+            transfer.put("from", byName ? graph.name(result.from()[i]) : graph.address(result.from()[i]));
+            transfer.put("to", byName ? graph.name(result.to()[i]) : graph.address(result.to()[i]));
+            transfer.put("value", result.amounts()[i]);
+            transfers.add(transfer);
+        }
+        Map<String, Object> flow = new LinkedHashMap<>(4);
+        flow.put("value", result.value());
+        flow.put("complete", result.complete());
+        flow.put("transfers", transfers);
+        return flow;
+    }
+
+    // path searches never need to run longer than the deadline of the paths bulkhead
+    private long deadline(long timeoutMs) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(timeoutMs, bulkheads.timeoutMs(Bulkheads.PATHS)));
+    }
+
+    private int enumeratePaths(TrustGraph graph, int sender, int receiver, int maxPaths, int maxDepth, long timeoutMs,
+                               Consumer<List<Map<String, String>>> consumer) {
+        long deadline = deadline(timeoutMs);
+        return PathEnumerator.enumerate(graph, sender, receiver, Math.min(maxDepth, pathMaxDepth), maxPaths, deadline, (path, length) -> {
+            List<Map<String, String>> onePath = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                onePath.add(Map.of(String.valueOf(graph.address(path[i])), String.valueOf(graph.name(path[i]))));
+            }
+            consumer.accept(onePath);
+            return true;
+        });
+    }
+
+    /**
+     * Runs a path query in {@code apoc.cypher.runTimeboxed}, which terminates it after {@code timeoutMs} and
+     * returns the paths found until then.
+     */
+    private List<List<Map<String, String>>> createUserPathList(String name, String statement, String sender, String receiver, int limit,
+                                                               long timeoutMs) {
         String query = """
-            MATCH path = ( (you:User {address:$SENDER})<-[*1..4]-(other:User {address:$RECEIVER}) )
-            WHERE all(r IN relationships(path) WHERE (r.amount>0))
-            AND size(apoc.coll.toSet(NODES(path))) = size(NODES(path))
-            RETURN path
-            LIMIT 1000
+            CALL apoc.cypher.runTimeboxed($STATEMENT, {SENDER: $SENDER, RECEIVER: $RECEIVER, LIMIT: $LIMIT}, $TIMEOUT)
+            YIELD value
+            RETURN value.path AS path
         """;
-        return createUserPathList(query, sender, receiver);
+        return queryMetrics.query(name, () -> {
+            Collection<Map<String, Object>> col =
+                    neo4jClient
+                            .query(query)
+                            .bind(statement).to("STATEMENT")
+                            .bind(sender).to("SENDER")
+                            .bind(receiver).to("RECEIVER")
+                            .bind(limit).to("LIMIT")
+                            .bind(timeoutMs).to("TIMEOUT")
+                            .fetch()
+                            .all();
+            return queryMetrics.mapping(() -> {
+                List<List<Map<String, String>>> mappedPaths = new ArrayList<>();
+                for (Map<String, Object> entry : col) {
+                    mappedPaths.add(toUserPath((InternalPath) entry.get("path")));
+                }
+                return mappedPaths;
+            });
+        });
     }
 
-    private List<List<Map<String, String>>> createUserPathList(String query, String sender, String receiver) {
-        Collection<Map<String, Object>> col =
-                neo4jClient
-                        .query(query)
-                        .bind(sender).to("SENDER")
-                        .bind(receiver).to("RECEIVER")
-                        .fetch()
-                        .all();
-        List<List<Map<String, String>>> mappedPaths = new ArrayList<>();
-        for (Map<String, Object> entry : col) {
-            InternalPath pathEntry = (InternalPath)entry.get("path");
-            List<Map<String, String>> onePath = new ArrayList<>();
-            for (Node user : pathEntry.nodes()) {
-                Map<String, String> userMap = Map.of(user.get("address").asString(), user.get("name").asString());
-                onePath.add(userMap);
-            }
-            mappedPaths.add(onePath);
+    // one {address: name} map per user on the path
+    static List<Map<String, String>> toUserPath(InternalPath pathEntry) {
+        List<Map<String, String>> onePath = new ArrayList<>();
+        for (Node user : pathEntry.nodes()) {
+            Map<String, String> userMap = Map.of(user.get("address").asString(), user.get("name").asString());
+            onePath.add(userMap);
         }
-        return mappedPaths;
+        return onePath;
     }
 
-    public Collection<Map<String, Object>> readPagerank() {
+    // the user node of column "user" with the users collected in column "users"
+    static FlatUser toFlatUser(org.neo4j.driver.Record record, String user, String users) {
+        List<FlatUser> related = record.get(users)
+                .asList(v -> new FlatUser(v.get("address").asString(), v.get("name").asString(), v.get("image_url").asString()));
+        Node node = record.get(user).asNode();
+        String addr = node.get("address").asString();
+        String uname = node.get("name").asString();
+        String imageUrl = node.get("image_url").asString();
+        return new FlatUser(addr, uname, imageUrl, related);
+    }
+
+    public Collection<Map<String, Object>> readPagerank(String graphName) {
         String query = """
-                CALL gds.pageRank.stream('circles')
+                CALL gds.pageRank.stream($graph)
                 YIELD nodeId, score
                 RETURN gds.util.asNode(nodeId).address AS address, gds.util.asNode(nodeId).name AS name, score
                 ORDER BY score DESC, name ASC
         """;
-        Collection<Map<String, Object>> col =
-                neo4jClient
-                        .query(query)
-                        .fetch()
-                        .all();
-        return col;
-    }
-
-    public Collection<Map<String, Object>> readPagerankStats() {
-        String query = """
-                CALL gds.pageRank.stats('circles', {
-                    maxIterations: 20,
-                    dampingFactor: 0.85
-                })
-                YIELD centralityDistribution
-                RETURN centralityDistribution
-                """;
-        Collection<Map<String, Object>> col =
+        Collection<Map<String, Object>> col = queryMetrics.query("pagerank", () ->
                 neo4jClient
                         .query(query)
+                        .bind(graphName).to("graph")
                         .fetch()
-                        .all();
+                        .all());
         return col;
     }
 
-    public Collection<Map<String, Object>> readBetweenness() {
+    public Collection<Map<String, Object>> readBetweenness(String graphName) {
         String query = """
-                CALL gds.betweenness.stream('circles') YIELD nodeId, score
+                CALL gds.betweenness.stream($graph) YIELD nodeId, score
                 RETURN gds.util.asNode(nodeId).address AS address, gds.util.asNode(nodeId).name AS name, score ORDER BY score DESC, name ASC
                 """;
-        Collection<Map<String, Object>> col =
-                neo4jClient
-                        .query(query)
-                        .fetch()
-                        .all();
-        return col;
-    }
-
-    public Collection<Map<String, Object>> readBetweennessStats() {
-        String query = """
-                CALL gds.betweenness.stats('circles')
-                YIELD centralityDistribution
-                RETURN centralityDistribution                
-                """;
-        Collection<Map<String, Object>> col =
+        Collection<Map<String, Object>> col = queryMetrics.query("betweenness", () ->
                 neo4jClient
                         .query(query)
+                        .bind(graphName).to("graph")
                         .fetch()
-                        .all();
+                        .all());
         return col;
     }
 
-    public Collection<Map<String, Object>> readSimilarityJacc() {
+    public Collection<Map<String, Object>> readSimilarityJacc(String graphName) {
         String query = """
-                CALL gds.nodeSimilarity.stream('circles') YIELD node1, node2, similarity
+                CALL gds.nodeSimilarity.stream($graph) YIELD node1, node2, similarity
                 RETURN gds.util.asNode(node1).address AS user1Addr, gds.util.asNode(node1).name AS user1Name, gds.util.asNode(node2).address AS user2Addr, gds.util.asNode(node2).name AS user2Name, similarity
                 ORDER BY similarity DESCENDING, user1Name, user2Name
         """;
-        Collection<Map<String, Object>> col =
+        Collection<Map<String, Object>> col = queryMetrics.query("similarity", () ->
                 neo4jClient
                         .query(query)
+                        .bind(graphName).to("graph")
                         .fetch()
-                        .all();
+                        .all());
         return col;
     }
 
-    public Collection<Map<String, Object>> readSimilarityJaccStats() {
-        String query = """
-                CALL gds.nodeSimilarity.stats('circles')
-                YIELD similarityDistribution
-                RETURN similarityDistribution
-        """;
-        Collection<Map<String, Object>> col =
-                neo4jClient
-                        .query(query)
-                        .fetch()
-                        .all();
-        return col;
+    public Collection<FlatUser> readTrustersForUser(String name) {
+        return lookupCache.trusters(name, () -> queryTrustersForUser(name));
     }
 
-    public Collection<FlatUser> readTrustersForUser(String name) {
-        Collection<FlatUser> col =
+    private Collection<FlatUser> queryTrustersForUser(String name) {
+        Collection<FlatUser> col = queryMetrics.query("trusters", () ->
                 neo4jClient
                         .query("MATCH (u1:User)<-[:TRUSTS]-(u2:User) WHERE u1.name=$name RETURN u1 as trustee, collect(u2) as trusters")
                         .bind(name).to("name")
-                        .fetchAs(FlatUser.class).mappedBy((TypeSystem t, org.neo4j.driver.Record record) -> {
-                            List<FlatUser> trusters = record.get("trusters")
-                                    .asList(v -> new FlatUser(v.get("address").asString(), v.get("name").asString(), v.get("image_url").asString()));
-                            Node node = record.get("trustee").asNode();
-                            String addr = node.get("address").asString();
-                            String uname = node.get("name").asString();
-                            String imageUrl = node.get("image_url").asString();
-                            return new FlatUser(addr, uname, imageUrl, trusters);
-                        }).all();
+                        .fetchAs(FlatUser.class).mappedBy(queryMetrics.mapped((TypeSystem t, org.neo4j.driver.Record record) -> toFlatUser(record, "trustee", "trusters")))
+                        .all());
         return col;
     }
 
     public Collection<FlatUser> readTrusteesForUser(String name) {
-        Collection<FlatUser> col =
+        return lookupCache.trustees(name, () -> queryTrusteesForUser(name));
+    }
+
+    private Collection<FlatUser> queryTrusteesForUser(String name) {
+        Collection<FlatUser> col = queryMetrics.query("trustees", () ->
                 neo4jClient
                         .query("MATCH (u1:User)-[:TRUSTS]->(u2:User) WHERE u1.name=$name RETURN u1 as truster, collect(u2) as trustees")
                         .bind(name).to("name")
-                        .fetchAs(FlatUser.class).mappedBy((TypeSystem t, org.neo4j.driver.Record record) -> {
-                            List<FlatUser> trustees = record.get("trustees")
-                                    .asList(v -> new FlatUser(v.get("address").asString(), v.get("name").asString(), v.get("image_url").asString()));
-                            Node node = record.get("truster").asNode();
-                            String addr = node.get("address").asString();
-                            String uname = node.get("name").asString();
-                            String imageUrl = node.get("image_url").asString();
-                            return new FlatUser(addr, uname, imageUrl, trustees);
-                        }).all();
+                        .fetchAs(FlatUser.class).mappedBy(queryMetrics.mapped((TypeSystem t, org.neo4j.driver.Record record) -> toFlatUser(record, "truster", "trustees")))
+                        .all());
         return col;
     }
 
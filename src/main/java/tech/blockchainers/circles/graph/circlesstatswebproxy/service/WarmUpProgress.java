@@ -0,0 +1,110 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Progress of one cache warm-up: a stage per prerequisite (trust graph, projection) and per analytics slot,
+ * each with its state and timing. Stages are added while the warm-up is set up and can be read at any time.
+ */
+@Slf4j
+public class WarmUpProgress {
+
+    public enum State { PENDING, RUNNING, DONE, FAILED }
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private volatile Instant startedAt;
+    private volatile Instant completedAt;
+
+    /**
+     * Adds a stage which runs {@code task} on {@code executor} once {@code prerequisite} is complete. A failed
+     * prerequisite does not cancel the stage and a failed stage completes the returned future normally, the
+     * failure is only recorded.
+     */
+    CompletableFuture<Void> stage(String name, CompletableFuture<?> prerequisite, Executor executor, Runnable task) {
+        Stage stage = new Stage(name);
+        stages.add(stage);
+        return prerequisite.handle((result, ex) -> null).thenRunAsync(() -> stage.run(task), executor);
+    }
+
+    void start() {
+        startedAt = Instant.now();
+    }
+
+    void complete() {
+        completedAt = Instant.now();
+    }
+
+    public State state() {
+        if (startedAt == null) {
+            return State.PENDING;
+        }
+        return completedAt == null ? State.RUNNING : State.DONE;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("state", state());
+        map.put("startedAt", startedAt);
+        map.put("completedAt", completedAt);
+        map.put("durationMs", durationMs(startedAt, completedAt));
+        map.put("completed", stages.stream().filter(stage -> (stage.state == State.DONE) || (stage.state == State.FAILED)).count());
+        map.put("total", stages.size());
+        map.put("stages", stages.stream().map(Stage::toMap).toList());
+        return map;
+    }
+
+    private static Long durationMs(Instant from, Instant to) {
+        if (from == null) {
+            return null;
+        }
+        return (to == null ? Instant.now() : to).toEpochMilli() - from.toEpochMilli();
+    }
+
+    private static final class Stage {
+
+        private final String name;
+        private volatile State state = State.PENDING;
+        private volatile Instant startedAt;
+        private volatile Instant completedAt;
+        private volatile String error;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void run(Runnable task) {
+            startedAt = Instant.now();
+            state = State.RUNNING;
+            log.info("[SETUP] Start {}", name);
+            try {
+                task.run();
+                state = State.DONE;
+            } catch (RuntimeException ex) {
+                error = ex.getCause() != null ? ex.getCause().toString() : ex.toString();
+                state = State.FAILED;
+                log.warn("[SETUP] {} failed, will be computed on first request: {}", name, error);
+            } finally {
+                completedAt = Instant.now();
+            }
+            log.info("[SETUP] {} {} in {} ms", name, state, durationMs(startedAt, completedAt));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("state", state);
+            map.put("startedAt", startedAt);
+            map.put("durationMs", durationMs(startedAt, completedAt));
+            map.put("error", error);
+            return map;
+        }
+    }
+}
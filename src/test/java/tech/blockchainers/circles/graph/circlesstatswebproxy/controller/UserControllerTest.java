@@ -0,0 +1,147 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoreTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.UserDictionary;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.AnalyticsCache.Snapshot;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.AnalyticsService;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.Bulkheads;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.LookupCache;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.TrustChangeFeed;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.TrustGraphService;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.service.UserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+    private final Bulkheads bulkheads = new Bulkheads(new MockEnvironment(), new SimpleMeterRegistry());
+    private final UserController controller = new UserController(mock(UserService.class), mock(TrustGraphService.class), analyticsService,
+            objectMapper, bulkheads, mock(LookupCache.class), mock(TrustChangeFeed.class), new SimpleMeterRegistry(), 1000, false);
+
+    UserControllerTest() {
+        UserDictionary dictionary = new UserDictionary();
+        int[] users = new int[5];
+        double[] scores = new double[5];
+        for (int user = 0; user < users.length; user++) {
+            users[user] = dictionary.intern("0x" + user, "u" + user);
+            scores[user] = 5 - user;
+        }
+        when(analyticsService.pagerank()).thenReturn(new Snapshot<>(new ScoreTable(dictionary, users, scores), 7, Instant.EPOCH));
+    }
+
+    @AfterEach
+    void shutdown() {
+        bulkheads.shutdown();
+    }
+
+    private ResponseEntity<StreamingResponseBody> pagerank(String name, int offset, Integer limit, Double minScore, String accept) {
+        return controller.readPagerank(name, null, offset, limit, minScore, accept).join();
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    private List<Object> names(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        List<Map<String, Object>> rows = objectMapper.readValue(body(response), new TypeReference<>() {});
+        return rows.stream().map(row -> row.get("name")).toList();
+    }
+
+    @Test
+    void pagesRowsWithNextOffset() throws IOException {
+        ResponseEntity<StreamingResponseBody> first = pagerank(null, 0, 2, null, null);
+        ResponseEntity<StreamingResponseBody> last = pagerank(null, 4, 2, null, null);
+
+        assertThat(names(first)).containsExactly("u0", "u1");
+        assertThat(first.getHeaders().getFirst("X-Next-Offset")).isEqualTo("2");
+        assertThat(first.getHeaders().getFirst("X-Analytics-Version")).isEqualTo("7");
+        assertThat(names(last)).containsExactly("u4");
+        assertThat(last.getHeaders().containsKey("X-Next-Offset")).isFalse();
+        assertThat(names(pagerank(null, 9, 2, null, null))).isEmpty();
+        assertThat(names(pagerank(null, -1, null, null, null))).hasSize(5);
+    }
+
+    @Test
+    void cutsRowsBelowMinScore() throws IOException {
+        ResponseEntity<StreamingResponseBody> page = pagerank(null, 1, 1, 3.0, null);
+
+        assertThat(names(pagerank(null, 0, null, 3.0, null))).containsExactly("u0", "u1", "u2");
+        assertThat(names(page)).containsExactly("u1");
+        assertThat(page.getHeaders().getFirst("X-Next-Offset")).isEqualTo("2");
+        assertThat(names(pagerank("u3", 0, null, 3.0, null))).isEmpty();
+    }
+
+    @Test
+    void ranksUsersByNameAndAddress() {
+        assertThat(controller.rankPagerank("u1").join().getBody()).singleElement()
+                .satisfies(rank -> assertThat(rank).containsEntry("rank", 2).containsEntry("total", 5));
+        assertThat(controller.rankPagerankForAddr("0x4").join().getBody()).singleElement()
+                .satisfies(rank -> assertThat(rank).containsEntry("rank", 5).containsEntry("percentile", 0.0));
+        assertThat(controller.rankPagerank("nobody").join().getBody()).isEmpty();
+    }
+
+    private List<Map<String, Object>> rows(ObjectMapper mapper, ResponseEntity<StreamingResponseBody> response) throws IOException {
+        return mapper.readValue(body(response), new TypeReference<>() {});
+    }
+
+    @Test
+    void writesRowsAsJsonByDefault() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = pagerank(null, 0, 2, null, null);
+
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(new String(body(response), StandardCharsets.UTF_8))
+                .isEqualTo("[{\"address\":\"0x0\",\"name\":\"u0\",\"score\":5.0},{\"address\":\"0x1\",\"name\":\"u1\",\"score\":4.0}]");
+        assertThat(new String(body(pagerank("nobody", 0, null, null, null)), StandardCharsets.UTF_8)).isEqualTo("[]");
+    }
+
+    @Test
+    void writesOneJsonLinePerRowForNdjson() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = pagerank(null, 3, null, null, "application/x-ndjson");
+
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.parseMediaType("application/x-ndjson"));
+        assertThat(new String(body(response), StandardCharsets.UTF_8)).isEqualTo(
+                "{\"address\":\"0x3\",\"name\":\"u3\",\"score\":2.0}\n{\"address\":\"0x4\",\"name\":\"u4\",\"score\":1.0}\n");
+    }
+
+    @Test
+    void writesBinaryFormatsWithTheSameRows() throws IOException {
+        List<Map<String, Object>> json = rows(objectMapper, pagerank(null, 0, null, null, null));
+        ResponseEntity<StreamingResponseBody> cbor = pagerank(null, 0, null, null, "application/cbor");
+        ResponseEntity<StreamingResponseBody> smile = pagerank(null, 0, null, null, "application/x-jackson-smile, application/json;q=0.5");
+
+        assertThat(cbor.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(rows(new ObjectMapper(new CBORFactory()), cbor)).hasSize(5).isEqualTo(json);
+        assertThat(smile.getHeaders().getContentType()).isEqualTo(MediaType.parseMediaType("application/x-jackson-smile"));
+        assertThat(rows(new ObjectMapper(new SmileFactory()), smile)).isEqualTo(json);
+    }
+
+    @Test
+    void fallsBackToJsonForOtherAcceptHeaders() {
+        assertThat(pagerank(null, 0, null, null, "text/html").getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(pagerank(null, 0, null, null, "*/*").getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+}
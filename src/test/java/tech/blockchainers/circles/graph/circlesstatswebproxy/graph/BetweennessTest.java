@@ -0,0 +1,58 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class BetweennessTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // chain 0 -> 1 -> 2 and diamond 3 -> 4 -> 6, 3 -> 5 -> 6: 1 is on the only shortest path, 4 and 5 on one of two
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(7, 6);
+        for (int node = 0; node < 7; node++) {
+            builder.addNode(node, "0x" + node, "u" + node, null);
+        }
+        builder.addEdge(0, 1, 100);
+        builder.addEdge(1, 2, 100);
+        builder.addEdge(3, 4, 100);
+        builder.addEdge(3, 5, 100);
+        builder.addEdge(4, 6, 100);
+        builder.addEdge(5, 6, 100);
+        return builder.build();
+    }
+
+    @Test
+    void scoresLikeUnnormalizedGdsBetweenness() {
+        assertThat(Betweenness.compute(graph(), pool)).containsExactly(new double[] { 0, 1, 0, 0, 0.5, 0.5, 0 }, within(1e-12));
+    }
+
+    @Test
+    void computesExactScoresWithSamplingSizeOfAllUsers() {
+        assertThat(Betweenness.compute(graph(), pool, 7, 42)).containsExactly(Betweenness.compute(graph(), pool), within(1e-12));
+    }
+
+    @Test
+    void scalesSampledScoresAndRepeatsThemForTheSameSeed() {
+        double[] sampled = Betweenness.compute(graph(), pool, 3, 42);
+
+        assertThat(Betweenness.compute(graph(), pool, 3, 42)).containsExactly(sampled, within(1e-12));
+        for (int node : new int[] { 0, 2, 3, 6 }) {
+            assertThat(sampled[node]).isZero();
+        }
+        for (double score : sampled) {
+            // every sampled source adds 0, 0.5 or 1, scaled by 7 / 3
+            assertThat(score / (7 / 3.0) * 2).isCloseTo(Math.rint(score / (7 / 3.0) * 2), within(1e-9));
+        }
+    }
+}
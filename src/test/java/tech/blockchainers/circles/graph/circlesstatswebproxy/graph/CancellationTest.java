@@ -0,0 +1,51 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CancellationTest {
+
+    private final TrustGraph graph = TrustGraphTest.fixture();
+    private final long noDeadline = System.nanoTime() + 60_000_000_000L;
+
+    @AfterEach
+    void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+    @Test
+    void interruptedSearchesThrowInsteadOfReturningPartialResults() {
+        int a = graph.indexOfAddress("0xa");
+        int e = graph.indexOfAddress("0xe");
+        Thread.currentThread().interrupt();
+
+        assertThatThrownBy(() -> PathFinder.shortestPath(graph, e, a, 10, 1000)).isInstanceOf(CancellationException.class);
+        assertThatThrownBy(() -> PathFinder.shortestPaths(graph, e, new int[] { a }, 10, 1000)).isInstanceOf(CancellationException.class);
+        assertThatThrownBy(() -> MaxFlow.compute(graph, e, a, 10, 0, noDeadline)).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void interruptedEnumerationStopsAtTheNextCheck() {
+        // a complete graph has far more simple paths than the check interval
+        TrustGraph.Builder builder = TrustGraph.builder(12, 132);
+        for (int node = 0; node < 12; node++) {
+            builder.addNode(node, "0x" + node, null, null);
+        }
+        for (int source = 0; source < 12; source++) {
+            for (int target = 0; target < 12; target++) {
+                if (source != target) {
+                    builder.addEdge(source, target, 1);
+                }
+            }
+        }
+        TrustGraph complete = builder.build();
+        Thread.currentThread().interrupt();
+
+        assertThatThrownBy(() -> PathEnumerator.enumerate(complete, 0, 11, 11, Integer.MAX_VALUE, noDeadline, (path, length) -> true))
+                .isInstanceOf(CancellationException.class);
+    }
+}
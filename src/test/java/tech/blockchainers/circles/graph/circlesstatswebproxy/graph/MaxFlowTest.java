@@ -0,0 +1,103 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class MaxFlowTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // a can send to b over two parallel TRUSTS b -> a (30 + 20), b to c (100) and a to c directly (10), d is isolated
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(4, 4);
+        for (String user : List.of("a", "b", "c", "d")) {
+            builder.addNode(user.charAt(0), "0x" + user, user, null);
+        }
+        builder.addEdge(1, 0, 30);
+        builder.addEdge(1, 0, 20);
+        builder.addEdge(2, 1, 100);
+        builder.addEdge(2, 0, 10);
+        return builder.build();
+    }
+
+    private static List<String> transfers(MaxFlow.Result result) {
+        List<String> transfers = new ArrayList<>();
+        for (int i = 0; i < result.size(); i++) {
+            transfers.add(result.from()[i] + "->" + result.to()[i] + ":" + result.amounts()[i]);
+        }
+        return transfers;
+    }
+
+    @Test
+    void sumsParallelEdgesIntoOneArc() {
+        MaxFlow.Result result = MaxFlow.compute(graph(), 0, 2, 6, 0, NO_DEADLINE);
+
+        assertThat(result.value()).isEqualTo(60.0);
+        assertThat(result.complete()).isTrue();
+        assertThat(transfers(result)).hasSize(3).contains("0->2:10.0", "0->1:50.0", "1->2:50.0");
+        assertThat(transfers(result).indexOf("0->1:50.0")).isLessThan(transfers(result).indexOf("1->2:50.0"));
+    }
+
+    @Test
+    void stopsAtRequestedValueAndMaxHops() {
+        assertThat(MaxFlow.compute(graph(), 0, 2, 6, 15, NO_DEADLINE).value()).isEqualTo(15.0);
+        assertThat(MaxFlow.compute(graph(), 0, 2, 1, 0, NO_DEADLINE).value()).isEqualTo(10.0);
+    }
+
+    @Test
+    void onlyMovesValueTowardsTrusters() {
+        assertThat(MaxFlow.compute(graph(), 2, 0, 6, 0, NO_DEADLINE).value()).isZero();
+        assertThat(MaxFlow.compute(graph(), 0, 3, 6, 0, NO_DEADLINE).value()).isZero();
+    }
+
+    @Test
+    void reportsPassedDeadlineAsIncomplete() {
+        MaxFlow.Result result = MaxFlow.compute(graph(), 0, 2, 6, 0, System.nanoTime() - 1);
+
+        assertThat(result.value()).isZero();
+        assertThat(result.complete()).isFalse();
+    }
+
+    @Test
+    void keepsTransfersWithinCapacityAndBalancedOnRandomGraph() {
+        int users = 60;
+        Random random = new Random(7);
+        TrustGraph.Builder builder = TrustGraph.builder(users, 300);
+        for (int user = 0; user < users; user++) {
+            builder.addNode(user, "0x" + user, "u" + user, null);
+        }
+        double[][] capacity = new double[users][users];
+        for (int edge = 0; edge < 300; edge++) {
+            int truster = random.nextInt(users);
+            int trustee = random.nextInt(users);
+            int amount = 1 + random.nextInt(50);
+            builder.addEdge(truster, trustee, amount);
+            // trustee can send to truster
+            capacity[trustee][truster] += amount;
+        }
+        TrustGraph graph = builder.build();
+
+        for (int pair = 0; pair < 20; pair++) {
+            int sender = random.nextInt(users);
+            int receiver = random.nextInt(users);
+            MaxFlow.Result result = MaxFlow.compute(graph, sender, receiver, 4, 0, NO_DEADLINE);
+            double[] balance = new double[users];
+            for (int i = 0; i < result.size(); i++) {
+                assertThat(result.amounts()[i]).isPositive().isLessThanOrEqualTo(capacity[result.from()[i]][result.to()[i]] + 1e-9);
+                balance[result.from()[i]] -= result.amounts()[i];
+                balance[result.to()[i]] += result.amounts()[i];
+            }
+            for (int user = 0; user < users; user++) {
+                double expected = user == receiver ? result.value() : user == sender ? -result.value() : 0;
+                assertThat(balance[user]).isCloseTo(expected, offset(1e-6));
+            }
+            assertThat(MaxFlow.compute(graph, sender, receiver, 8, 0, NO_DEADLINE).value()).isGreaterThanOrEqualTo(result.value() - 1e-6);
+        }
+    }
+}
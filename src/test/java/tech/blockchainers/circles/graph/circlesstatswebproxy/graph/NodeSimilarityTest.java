@@ -0,0 +1,57 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeSimilarityTest {
+
+    // a trusts x, y and z, b trusts x and y, c trusts z: a~b = 2/3, a~c = 1/3, b and c share no trustee
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(7, 6);
+        List<String> users = List.of("a", "b", "c", "d", "x", "y", "z");
+        for (int node = 0; node < users.size(); node++) {
+            builder.addNode(node, "0x" + users.get(node), users.get(node), null);
+        }
+        builder.addEdge(0, 4, 100);
+        builder.addEdge(0, 5, 100);
+        builder.addEdge(0, 6, 100);
+        builder.addEdge(1, 4, 100);
+        builder.addEdge(1, 5, 100);
+        builder.addEdge(2, 6, 100);
+        return builder.build();
+    }
+
+    private static List<String> pairs(NodeSimilarity.Result result) {
+        List<String> pairs = new ArrayList<>();
+        for (int i = 0; i < result.size(); i++) {
+            pairs.add(result.nodes1()[i] + "~" + result.nodes2()[i] + ":" + Math.round(result.similarities()[i] * 1000));
+        }
+        return pairs;
+    }
+
+    @Test
+    void keepsTopKPerNodeInDescendingOrder() {
+        NodeSimilarity.Result result = NodeSimilarity.compute(graph(), 2, ForkJoinPool.commonPool());
+
+        assertThat(pairs(result)).containsExactly("0~1:667", "0~2:333", "1~0:667", "2~0:333");
+    }
+
+    @Test
+    void dropsAllButTheMostSimilar() {
+        NodeSimilarity.Result result = NodeSimilarity.compute(graph(), 1, ForkJoinPool.commonPool());
+
+        assertThat(pairs(result)).containsExactly("0~1:667", "1~0:667", "2~0:333");
+    }
+
+    @Test
+    void computesSingleNodeOnDemand() {
+        assertThat(pairs(NodeSimilarity.forNode(graph(), 0, 2))).containsExactly("0~1:667", "0~2:333");
+        assertThat(pairs(NodeSimilarity.forNode(graph(), 3, 2))).isEmpty();
+        assertThat(pairs(NodeSimilarity.forNode(graph(), -1, 2))).isEmpty();
+    }
+}
@@ -0,0 +1,65 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PageRankTest {
+
+    private static final double DAMPING = 0.85;
+
+    private static TrustGraph graph(int nodes, int[][] trusts) {
+        TrustGraph.Builder builder = TrustGraph.builder(nodes, trusts.length);
+        for (int node = 0; node < nodes; node++) {
+            builder.addNode(node, "0x" + node, "u" + node, null);
+        }
+        for (int[] trust : trusts) {
+            builder.addEdge(trust[0], trust[1], 100);
+        }
+        return builder.build();
+    }
+
+    // 0, 1 and 2 trust 3, 3 trusts nobody
+    private static TrustGraph star() {
+        return graph(4, new int[][] { { 0, 3 }, { 1, 3 }, { 2, 3 } });
+    }
+
+    // 0 trusts 1 trusts 2 trusts 0
+    private static TrustGraph cycle() {
+        return graph(3, new int[][] { { 0, 1 }, { 1, 2 }, { 2, 0 } });
+    }
+
+    @Test
+    void scoresLikeNonNormalizedGdsPageRank() {
+        double[] scores = PageRank.compute(star(), DAMPING, 20, 1e-7, ForkJoinPool.commonPool());
+
+        assertThat(scores).containsExactly(new double[] { 0.15, 0.15, 0.15, 0.15 + DAMPING * 3 * 0.15 }, within(1e-12));
+    }
+
+    @Test
+    void stopsWhenConvergedOrAfterMaxIterations() {
+        double[] initial = { 0.15, 0.15, 0.15 };
+        PageRank.Result converged = PageRank.compute(cycle(), DAMPING, 500, 1e-9, ForkJoinPool.commonPool(), initial);
+        PageRank.Result stopped = PageRank.compute(cycle(), DAMPING, 3, 1e-9, ForkJoinPool.commonPool(), initial);
+
+        assertThat(converged.converged()).isTrue();
+        assertThat(converged.scores()).containsExactly(new double[] { 1, 1, 1 }, within(1e-7));
+        assertThat(stopped.converged()).isFalse();
+        assertThat(stopped.iterations()).isEqualTo(3);
+        assertThat(initial).containsExactly(0.15, 0.15, 0.15);
+    }
+
+    @Test
+    void continuesFromPreviousScores() {
+        PageRank.Result previous = PageRank.compute(star(), DAMPING, 20, 1e-7, ForkJoinPool.commonPool(), new double[] { 0.15, 0.15, 0.15, 0.15 });
+        PageRank.Result next = PageRank.compute(star(), DAMPING, 20, 1e-7, ForkJoinPool.commonPool(), previous.scores());
+
+        assertThat(previous.iterations()).isEqualTo(2);
+        assertThat(next.iterations()).isEqualTo(1);
+        assertThat(next.converged()).isTrue();
+        assertThat(next.scores()).containsExactly(previous.scores(), within(1e-12));
+    }
+}
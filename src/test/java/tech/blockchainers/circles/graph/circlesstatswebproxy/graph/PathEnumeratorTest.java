@@ -0,0 +1,70 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathEnumeratorTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // s can send over a and b to c and on to r (a, b trust s, c trusts a and b, r trusts c), b also trusts a;
+    // r trusts b with amount 0, so s -> b -> r is no path
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(5, 7);
+        List<String> users = List.of("s", "a", "b", "c", "r");
+        for (int node = 0; node < users.size(); node++) {
+            builder.addNode(node, "0x" + users.get(node), users.get(node), null);
+        }
+        builder.addEdge(1, 0, 100);
+        builder.addEdge(2, 0, 100);
+        builder.addEdge(2, 1, 100);
+        builder.addEdge(3, 1, 100);
+        builder.addEdge(3, 2, 100);
+        builder.addEdge(4, 3, 100);
+        builder.addEdge(4, 2, 0);
+        return builder.build();
+    }
+
+    private static List<String> paths(int sender, int receiver, int maxDepth, int maxPaths) {
+        List<String> paths = new ArrayList<>();
+        int found = PathEnumerator.enumerate(graph(), sender, receiver, maxDepth, maxPaths, NO_DEADLINE, (path, length) ->
+                paths.add(Arrays.stream(path, 0, length).mapToObj(String::valueOf).collect(Collectors.joining("-"))));
+        assertThat(found).isEqualTo(paths.size());
+        return paths;
+    }
+
+    @Test
+    void enumeratesSimplePathsOverPositiveTrusts() {
+        assertThat(paths(0, 4, 4, 100)).containsExactly("0-1-2-3-4", "0-1-3-4", "0-2-3-4");
+        assertThat(paths(4, 0, 4, 100)).isEmpty();
+    }
+
+    @Test
+    void stopsAtMaxDepthAndMaxPaths() {
+        assertThat(paths(0, 4, 3, 100)).containsExactly("0-1-3-4", "0-2-3-4");
+        assertThat(paths(0, 4, 2, 100)).isEmpty();
+        assertThat(paths(0, 4, 4, 2)).containsExactly("0-1-2-3-4", "0-1-3-4");
+    }
+
+    @Test
+    void stopsWhenConsumerDeclines() {
+        List<Integer> lengths = new ArrayList<>();
+        int found = PathEnumerator.enumerate(graph(), 0, 4, 4, 100, NO_DEADLINE, (path, length) -> !lengths.add(length));
+
+        assertThat(found).isEqualTo(1);
+        assertThat(lengths).containsExactly(5);
+    }
+
+    @Test
+    void ignoresSameAndUnknownUsers() {
+        assertThat(paths(0, 0, 4, 100)).isEmpty();
+        assertThat(paths(-1, 4, 4, 100)).isEmpty();
+        assertThat(paths(0, 4, 0, 100)).isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathFinderTest {
+
+    // s can send over a and b to c and on to r (a, b trust s, c trusts a and b, r trusts c), b also trusts a;
+    // r trusts b with amount 0, so s -> b -> r is no path, z is isolated
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(6, 7);
+        List<String> users = List.of("s", "a", "b", "c", "r", "z");
+        for (int node = 0; node < users.size(); node++) {
+            builder.addNode(node, "0x" + users.get(node), users.get(node), null);
+        }
+        builder.addEdge(1, 0, 100);
+        builder.addEdge(2, 0, 100);
+        builder.addEdge(2, 1, 100);
+        builder.addEdge(3, 1, 100);
+        builder.addEdge(3, 2, 100);
+        builder.addEdge(4, 3, 100);
+        builder.addEdge(4, 2, 0);
+        return builder.build();
+    }
+
+    private static String path(int[] path) {
+        return Arrays.stream(path).mapToObj(String::valueOf).collect(Collectors.joining("-"));
+    }
+
+    @Test
+    void findsShortestPathOverPositiveTrusts() {
+        assertThat(path(PathFinder.shortestPath(graph(), 0, 4, 10, 1000))).isIn("0-1-3-4", "0-2-3-4");
+        assertThat(path(PathFinder.shortestPath(graph(), 0, 3, 10, 1000))).isIn("0-1-3", "0-2-3");
+    }
+
+    @Test
+    void followsTrustDirectionOnly() {
+        assertThat(PathFinder.shortestPath(graph(), 4, 0, 10, 1000)).isEmpty();
+        assertThat(PathFinder.shortestPath(graph(), 0, 5, 10, 1000)).isEmpty();
+    }
+
+    @Test
+    void stopsAtMaxDepthAndMaxVisited() {
+        assertThat(PathFinder.shortestPath(graph(), 0, 4, 2, 1000)).isEmpty();
+        assertThat(PathFinder.shortestPath(graph(), 0, 4, 3, 1000)).hasSize(4);
+        assertThat(PathFinder.shortestPath(graph(), 0, 4, 10, 2)).isEmpty();
+    }
+
+    @Test
+    void handlesSameAndUnknownUsers() {
+        assertThat(PathFinder.shortestPath(graph(), 2, 2, 10, 1000)).containsExactly(2);
+        assertThat(PathFinder.shortestPath(graph(), -1, 4, 10, 1000)).isEmpty();
+        assertThat(PathFinder.shortestPath(graph(), 0, -1, 10, 1000)).isEmpty();
+    }
+
+    @Test
+    void findsPathsToManyReceiversWithOneSearch() {
+        int[][] paths = PathFinder.shortestPaths(graph(), 0, new int[] { 4, 3, 5, -1, 0 }, 10, 1000);
+
+        assertThat(Arrays.stream(paths).map(PathFinderTest::path)).containsExactly("0-1-3-4", "0-1-3", "", "", "0");
+        assertThat(Arrays.stream(PathFinder.shortestPaths(graph(), 0, new int[] { 4, 3 }, 2, 1000)).map(PathFinderTest::path))
+                .containsExactly("", "0-1-3");
+    }
+}
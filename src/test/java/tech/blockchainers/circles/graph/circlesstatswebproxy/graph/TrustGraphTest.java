@@ -0,0 +1,234 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrustGraphTest {
+
+    // 0xa -> 0xb (50), 0xa -> 0xc (100), 0xb -> 0xc (50), 0xc -> 0xd (0), 0xd -> 0xe (50)
+    static TrustGraph fixture() {
+        TrustGraph.Builder builder = TrustGraph.builder(5, 5);
+        for (String user : List.of("a", "b", "c", "d", "e")) {
+            builder.addNode(user.charAt(0), "0x" + user, user, null);
+        }
+        builder.addEdge(0, 1, 50);
+        builder.addEdge(0, 2, 100);
+        builder.addEdge(1, 2, 50);
+        builder.addEdge(2, 3, 0);
+        builder.addEdge(3, 4, 50);
+        return builder.build();
+    }
+
+    // every adjacency list as "address: neighbour/amount ...", read through the per-edge accessors and the rows
+    static List<String> adjacency(TrustGraph graph) {
+        List<String> lines = new ArrayList<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            StringBuilder out = new StringBuilder(graph.address(node)).append(" out:");
+            for (int k = 0; k < graph.outDegree(node); k++) {
+                out.append(' ').append(graph.address(graph.outTarget(node, k))).append('/').append(graph.outAmount(node, k));
+            }
+            StringBuilder in = new StringBuilder(graph.address(node)).append(" in:");
+            for (int k = 0; k < graph.inDegree(node); k++) {
+                in.append(' ').append(graph.address(graph.inSource(node, k))).append('/').append(graph.inAmount(node, k));
+            }
+            lines.add(out.toString());
+            lines.add(in.toString());
+            assertThat(rowOf(graph, graph.outRow(node))).isEqualTo(out.substring(out.indexOf(":") + 1));
+            assertThat(rowOf(graph, graph.inRow(node))).isEqualTo(in.substring(in.indexOf(":") + 1));
+        }
+        return lines;
+    }
+
+    private static String rowOf(TrustGraph graph, TrustGraph.Row row) {
+        StringBuilder text = new StringBuilder();
+        for (int k = row.start(); k < row.end(); k++) {
+            text.append(' ').append(graph.address(row.nodes()[k])).append('/').append(row.amounts()[k]);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void buildsIncomingRowsSortedBySource() {
+        TrustGraph graph = fixture();
+
+        assertThat(graph.nodeCount()).isEqualTo(5);
+        assertThat(graph.edgeCount()).isEqualTo(5);
+        assertThat(graph.overlaySize()).isZero();
+        assertThat(adjacency(graph)).contains(
+                "0xa out: 0xb/50.0 0xc/100.0",
+                "0xc in: 0xa/100.0 0xb/50.0",
+                "0xe in: 0xd/50.0");
+        assertThat(graph.indexOfName("c")).isEqualTo(2);
+        assertThat(graph.indexOfAddress("0xe")).isEqualTo(4);
+        assertThat(graph.indexOfAddress("0xf")).isEqualTo(-1);
+    }
+
+    @Test
+    void appliesChangesInAnOverlay() {
+        TrustGraph graph = fixture();
+
+        TrustGraph changed = graph.withChanges(List.of(
+                TrustEdgeChange.upsert("0xe", "0xa", 25),
+                TrustEdgeChange.upsert("0xa", "0xc", 40),
+                TrustEdgeChange.remove("0xb", "0xc"),
+                TrustEdgeChange.upsert("0xf", "0xa", 10)));
+
+        assertThat(changed.nodeCount()).isEqualTo(6);
+        assertThat(changed.edgeCount()).isEqualTo(6);
+        assertThat(changed.overlaySize()).isPositive();
+        assertThat(adjacency(changed)).contains(
+                "0xa out: 0xb/50.0 0xc/40.0",
+                "0xa in: 0xe/25.0 0xf/10.0",
+                "0xb out:",
+                "0xc in: 0xa/40.0",
+                "0xf out: 0xa/10.0",
+                "0xf in:");
+        assertThat(changed.indexOfAddress("0xf")).isEqualTo(5);
+        assertThat(changed.nodeId(5)).isEqualTo(-1);
+        assertThat(changed.name(5)).isNull();
+        // the original graph is not touched
+        assertThat(adjacency(graph)).isEqualTo(adjacency(fixture()));
+    }
+
+    @Test
+    void laterChangesOfTheSameEdgeWin() {
+        TrustGraph changed = fixture().withChanges(List.of(
+                TrustEdgeChange.remove("0xa", "0xb"),
+                TrustEdgeChange.upsert("0xa", "0xb", 75),
+                TrustEdgeChange.upsert("0xd", "0xe", 0),
+                TrustEdgeChange.remove("0xd", "0xe")));
+
+        assertThat(changed.edgeCount()).isEqualTo(4);
+        assertThat(adjacency(changed)).contains("0xa out: 0xc/100.0 0xb/75.0", "0xb in: 0xa/75.0", "0xd out:", "0xe in:");
+    }
+
+    @Test
+    void ignoresRemovalsOfUnknownUsers() {
+        TrustGraph graph = fixture();
+
+        TrustGraph changed = graph.withChanges(List.of(TrustEdgeChange.remove("0xa", "0xz"), TrustEdgeChange.remove("0xy", "0xa")));
+
+        assertThat(changed.nodeCount()).isEqualTo(5);
+        assertThat(adjacency(changed)).isEqualTo(adjacency(graph));
+    }
+
+    @Test
+    void compactedGraphHasTheSameAdjacency() {
+        TrustGraph changed = fixture()
+                .withChanges(List.of(TrustEdgeChange.upsert("0xe", "0xa", 25), TrustEdgeChange.upsert("0xf", "0xb", 5)))
+                .withChanges(List.of(TrustEdgeChange.remove("0xa", "0xb"), TrustEdgeChange.upsert("0xc", "0xf", 60)));
+
+        TrustGraph compacted = changed.compacted();
+
+        assertThat(compacted).isNotSameAs(changed);
+        assertThat(compacted.overlaySize()).isZero();
+        assertThat(compacted.nodeCount()).isEqualTo(changed.nodeCount());
+        assertThat(compacted.edgeCount()).isEqualTo(changed.edgeCount());
+        assertThat(compacted.loadedAt()).isEqualTo(changed.loadedAt());
+        assertThat(adjacency(compacted)).isEqualTo(adjacency(changed));
+        for (int node = 0; node < changed.nodeCount(); node++) {
+            assertThat(compacted.indexOfAddress(changed.address(node))).isEqualTo(node);
+        }
+        assertThat(compacted.compacted()).isSameAs(compacted);
+    }
+
+    @Test
+    void changesOnCompactedAndOverlayGraphsAgree() {
+        TrustGraph changed = fixture().withChanges(List.of(TrustEdgeChange.upsert("0xf", "0xa", 10), TrustEdgeChange.remove("0xc", "0xd")));
+        List<TrustEdgeChange> next = List.of(TrustEdgeChange.upsert("0xg", "0xf", 30), TrustEdgeChange.remove("0xf", "0xa"),
+                TrustEdgeChange.upsert("0xb", "0xa", 20));
+
+        assertThat(adjacency(changed.compacted().withChanges(next))).isEqualTo(adjacency(changed.withChanges(next)));
+    }
+
+    @Test
+    void buildsRowsBeyondTheExpectedSizesWithParallelEdges() {
+        TrustGraph.Builder builder = TrustGraph.builder(1, 1);
+        for (int node = 0; node < 20; node++) {
+            assertThat(builder.addNode(100 + node, "0x" + node, "u" + node, "img" + node)).isEqualTo(node);
+        }
+        // edges added by descending source, every user trusts the next one twice
+        for (int node = 19; node > 0; node--) {
+            builder.addEdge(node, node - 1, node);
+            builder.addEdge(node, node - 1, 1);
+            builder.addEdge(0, node, 2);
+        }
+
+        TrustGraph graph = builder.build();
+
+        assertThat(graph.nodeCount()).isEqualTo(20);
+        assertThat(graph.edgeCount()).isEqualTo(57);
+        assertThat(graph.nodeId(7)).isEqualTo(107);
+        assertThat(graph.imageUrl(7)).isEqualTo("img7");
+        assertThat(adjacency(graph)).contains(
+                "0x7 out: 0x6/7.0 0x6/1.0",
+                "0x6 in: 0x0/2.0 0x7/7.0 0x7/1.0",
+                "0x0 in: 0x1/1.0 0x1/1.0");
+        assertThat(graph.outDegree(0)).isEqualTo(19);
+        assertThat(graph.outTarget(0, 0)).isEqualTo(19);
+    }
+
+    @Test
+    void compactionAfterManyBatchesMatchesAFreshBuild() {
+        Random random = new Random(11);
+        Map<String, Double> edges = new HashMap<>();
+        TrustGraph graph = fixture();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int k = 0; k < graph.outDegree(node); k++) {
+                edges.put(graph.address(node) + ">" + graph.address(graph.outTarget(node, k)), graph.outAmount(node, k));
+            }
+        }
+        for (int batch = 0; batch < 10; batch++) {
+            List<TrustEdgeChange> changes = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                String truster = "0x" + (char) ('a' + random.nextInt(8));
+                String trustee = "0x" + (char) ('a' + random.nextInt(8));
+                if (random.nextBoolean()) {
+                    changes.add(TrustEdgeChange.remove(truster, trustee));
+                    edges.remove(truster + ">" + trustee);
+                } else {
+                    int amount = 1 + random.nextInt(100);
+                    changes.add(TrustEdgeChange.upsert(truster, trustee, amount));
+                    edges.put(truster + ">" + trustee, (double) amount);
+                }
+            }
+            graph = graph.withChanges(changes);
+        }
+
+        TrustGraph compacted = graph.compacted();
+
+        assertThat(compacted.overlaySize()).isZero();
+        assertThat(compacted.edgeCount()).isEqualTo(edges.size());
+        List<String> expected = new ArrayList<>();
+        edges.forEach((edge, amount) -> expected.add(edge + "/" + amount));
+        List<String> actual = new ArrayList<>();
+        for (int node = 0; node < compacted.nodeCount(); node++) {
+            for (int k = 0; k < compacted.outDegree(node); k++) {
+                actual.add(compacted.address(node) + ">" + compacted.address(compacted.outTarget(node, k)) + "/" + compacted.outAmount(node, k));
+            }
+            TrustGraph.Row trusters = compacted.inRow(node);
+            int[] sources = Arrays.copyOfRange(trusters.nodes(), trusters.start(), trusters.end());
+            assertThat(sources).isSorted();
+        }
+        assertThat(actual).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(sorted(adjacency(compacted))).isEqualTo(sorted(adjacency(graph)));
+    }
+
+    // adjacency lines with their neighbours sorted, overlay rows keep changed edges at their end
+    private static List<String> sorted(List<String> lines) {
+        return lines.stream().map(line -> {
+            String[] parts = line.split(": ?", 2);
+            String[] neighbours = parts[1].isEmpty() ? new String[0] : parts[1].split(" ");
+            Arrays.sort(neighbours);
+            return parts[0] + ": " + String.join(" ", neighbours);
+        }).toList();
+    }
+}
@@ -0,0 +1,107 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScoreTableTest {
+
+    private static String names(ScoredRows rows) {
+        return rows.stream().map(row -> row.get("name") + ":" + row.get("score")).collect(Collectors.joining(" "));
+    }
+
+    @Test
+    void sortsByDescendingScoreAndAscendingName() {
+        UserDictionary dictionary = new UserDictionary();
+        int[] users = { dictionary.intern("0xc", "c"), dictionary.intern("0xa", "a"), dictionary.intern("0xd", null),
+                dictionary.intern("0xb", "b"), dictionary.intern("0xe", "e") };
+
+        ScoreTable table = new ScoreTable(dictionary, users, new double[] { 1, 1, 1, 2, 0.5 });
+
+        assertThat(names(table.all())).isEqualTo("b:2.0 a:1.0 c:1.0 null:1.0 e:0.5");
+    }
+
+    @Test
+    void sortsOnlyTiesOfDescendingScores() {
+        UserDictionary dictionary = new UserDictionary();
+        int[] users = { dictionary.intern("0xb", "b"), dictionary.intern("0xz", "z"), dictionary.intern("0xy", "y"),
+                dictionary.intern("0xa", "a") };
+
+        ScoreTable table = new ScoreTable(dictionary, users, new double[] { 3, 2, 2, 1 });
+
+        assertThat(names(table.all())).isEqualTo("b:3.0 y:2.0 z:2.0 a:1.0");
+    }
+
+    // two users named "a" (0xa1, 0xa2), b, c and a user without an address named "x"
+    private static ScoreTable table(UserDictionary dictionary) {
+        int[] users = { dictionary.intern("0xa1", "a"), dictionary.intern("0xb", "b"), dictionary.intern("0xa2", "a"),
+                dictionary.intern(null, "x"), dictionary.intern("0xc", "c") };
+        return new ScoreTable(dictionary, users, new double[] { 5, 4, 3, 2, 1 });
+    }
+
+    @Test
+    void looksUpRowsByNameAndAddress() {
+        ScoreTable table = table(new UserDictionary());
+
+        assertThat(names(table.byName("a"))).isEqualTo("a:5.0 a:3.0");
+        assertThat(table.byName("a").get(1)).containsEntry("address", "0xa2");
+        assertThat(names(table.byName("x"))).isEqualTo("x:2.0");
+        assertThat(names(table.byAddress("0xb"))).isEqualTo("b:4.0");
+        assertThat(table.byName("z")).isEmpty();
+        assertThat(table.byName(null)).isEmpty();
+        assertThat(table.byAddress("0xz")).isEmpty();
+        assertThat(table.byAddress(null)).isEmpty();
+    }
+
+    @Test
+    void findsRenamedUsersOnlyByTheirNewName() {
+        UserDictionary dictionary = new UserDictionary();
+        ScoreTable table = table(dictionary);
+
+        dictionary.intern("0xb", "bob");
+
+        assertThat(table.byName("b")).isEmpty();
+        assertThat(names(table.byName("bob"))).isEqualTo("bob:4.0");
+        assertThat(names(table.byAddress("0xb"))).isEqualTo("bob:4.0");
+    }
+
+    @Test
+    void ignoresDictionaryUsersWithoutScore() {
+        UserDictionary dictionary = new UserDictionary();
+        ScoreTable table = table(dictionary);
+
+        dictionary.intern("0xa3", "a");
+        dictionary.intern("0xd", "d");
+
+        assertThat(names(table.byName("a"))).isEqualTo("a:5.0 a:3.0");
+        assertThat(table.byAddress("0xd")).isEmpty();
+    }
+
+    @Test
+    void countsRowsAtLeastMinScore() {
+        ScoreTable table = table(new UserDictionary());
+
+        assertThat(table.all().countAtLeast(3)).isEqualTo(3);
+        assertThat(table.all().countAtLeast(3.5)).isEqualTo(2);
+        assertThat(table.all().countAtLeast(0)).isEqualTo(5);
+        assertThat(table.all().countAtLeast(6)).isZero();
+        assertThat(table.byName("a").countAtLeast(4)).isEqualTo(1);
+    }
+
+    @Test
+    void ranksUsersByTheirRow() {
+        ScoreTable table = table(new UserDictionary());
+
+        assertThat(table.rankByAddress("0xb")).singleElement().satisfies(rank -> assertThat(rank)
+                .containsEntry("name", "b")
+                .containsEntry("rank", 2)
+                .containsEntry("total", 5)
+                .containsEntry("percentile", 60.0));
+        assertThat(table.rankByName("a")).extracting(rank -> rank.get("rank")).containsExactly(1, 3);
+        assertThat(table.rankByAddress("0xc").get(0)).containsEntry("percentile", 0.0);
+        assertThat(table.rankByName("z")).isEmpty();
+        assertThat(table.rankByAddress("0xz")).isEmpty();
+    }
+}
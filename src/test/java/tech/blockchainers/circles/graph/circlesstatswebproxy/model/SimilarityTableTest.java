@@ -0,0 +1,104 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import org.junit.jupiter.api.Test;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.NodeSimilarity;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimilarityTableTest {
+
+    // a trusts x, y and z, b trusts x and y, c trusts z: a~b = 2/3, a~c = 1/3
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(6, 6);
+        List<String> users = List.of("a", "b", "c", "x", "y", "z");
+        for (int node = 0; node < users.size(); node++) {
+            builder.addNode(node, "0x" + users.get(node), users.get(node), null);
+        }
+        builder.addEdge(0, 3, 100);
+        builder.addEdge(0, 4, 100);
+        builder.addEdge(0, 5, 100);
+        builder.addEdge(1, 3, 100);
+        builder.addEdge(1, 4, 100);
+        builder.addEdge(2, 5, 100);
+        return builder.build();
+    }
+
+    private static List<String> pairs(ScoredRows rows) {
+        return rows.stream().map(row -> row.get("user1Name") + "~" + row.get("user2Name")).collect(Collectors.toList());
+    }
+
+    @Test
+    void mergesSortedGroupsByDescendingValueAndRow() {
+        int[] groups = { 0, 0, 0, 1, 1, 2, 3, 3 };
+        double[] values = { 0.9, 0.5, 0.1, 0.7, 0.5, 0.9, 0.6, 0.0 };
+
+        assertThat(SimilarityTable.mergeGroups(groups, values)).containsExactly(0, 5, 3, 6, 1, 4, 2, 7);
+        assertThat(SimilarityTable.mergeGroups(new int[0], new double[0])).isEmpty();
+    }
+
+    @Test
+    void ordersRowsOfGraphResultBySimilarity() {
+        TrustGraph graph = graph();
+        SimilarityTable table = SimilarityTable.fromGraph(graph, NodeSimilarity.compute(graph, 2, ForkJoinPool.commonPool()),
+                new UserDictionary());
+
+        assertThat(pairs(table.all())).containsExactly("a~b", "b~a", "a~c", "c~a");
+        assertThat(table.similarities()).isSortedAccordingTo((x, y) -> Double.compare(y, x));
+        assertThat(pairs(table.byName("c"))).containsExactly("a~c", "c~a");
+        assertThat(pairs(table.byAddress("0xb"))).containsExactly("a~b", "b~a");
+        assertThat(table.distribution()).containsEntry("max", 2 / 3.0).containsEntry("min", 1 / 3.0);
+    }
+
+    @Test
+    void breaksSimilarityTiesByUserNames() {
+        UserDictionary dictionary = new UserDictionary();
+        int a = dictionary.intern("0xa", "a");
+        int b = dictionary.intern("0xb", "b");
+        int c = dictionary.intern("0xc", "c");
+        int unnamed = dictionary.intern("0xd", null);
+
+        SimilarityTable table = new SimilarityTable(dictionary, new int[] { c, b, unnamed, b, a },
+                new int[] { a, c, a, a, c }, new double[] { 0.5, 0.5, 0.5, 0.9, 0.5 });
+
+        assertThat(pairs(table.all())).containsExactly("b~a", "a~c", "b~c", "c~a", "null~a");
+    }
+
+    @Test
+    void looksUpPairsOfAllUsersWithTheName() {
+        UserDictionary dictionary = new UserDictionary();
+        int a1 = dictionary.intern("0xa1", "a");
+        int a2 = dictionary.intern("0xa2", "a");
+        int b = dictionary.intern("0xb", "b");
+        int c = dictionary.intern("0xc", "c");
+
+        SimilarityTable table = new SimilarityTable(dictionary, new int[] { a1, b, a1, c }, new int[] { a2, c, b, a2 },
+                new double[] { 0.9, 0.8, 0.7, 0.6 });
+
+        // the a~a pair is listed once, although it belongs to both users named "a"
+        assertThat(pairs(table.byName("a"))).containsExactly("a~a", "a~b", "c~a");
+        assertThat(pairs(table.byAddress("0xa2"))).containsExactly("a~a", "c~a");
+        assertThat(pairs(table.byName("b"))).containsExactly("b~c", "a~b");
+        assertThat(table.byName("z")).isEmpty();
+        assertThat(table.byAddress("0xz")).isEmpty();
+    }
+
+    @Test
+    void findsNoPairsOfUsersInternedAfterTheTable() {
+        UserDictionary dictionary = new UserDictionary();
+        int a = dictionary.intern("0xa", "a");
+        int b = dictionary.intern("0xb", "b");
+        SimilarityTable table = new SimilarityTable(dictionary, new int[] { a }, new int[] { b }, new double[] { 0.5 });
+
+        dictionary.intern("0xd", "d");
+        dictionary.intern("0xa2", "a");
+
+        assertThat(table.byAddress("0xd")).isEmpty();
+        assertThat(table.byName("d")).isEmpty();
+        assertThat(pairs(table.byName("a"))).containsExactly("a~b");
+    }
+}
@@ -0,0 +1,74 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TableCodecTest {
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static ByteBuffer written(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+            out.writeInt(0xCAFE);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Test
+    void roundTripsScores() throws IOException {
+        UserDictionary dictionary = new UserDictionary();
+        int alice = dictionary.intern("0xa", "alice");
+        int unnamed = dictionary.intern("0xb", null);
+        int carol = dictionary.intern(null, "carol");
+        dictionary.intern("0xd", "unused");
+        ScoreTable table = new ScoreTable(dictionary, new int[] { unnamed, alice, carol }, new double[] { 0.5, 2.0, 0.25 });
+
+        ByteBuffer in = written(out -> TableCodec.writeScores(table, out));
+        UserDictionary other = new UserDictionary();
+        other.intern("0xz", "zoe");
+        ScoreTable read = TableCodec.readScores(in, other);
+
+        assertThat(in.getInt()).isEqualTo(0xCAFE);
+        assertThat(read.all()).containsExactlyElementsOf(table.all());
+        assertThat(read.byName("alice")).containsExactlyElementsOf(table.byName("alice"));
+        assertThat(other.size()).isEqualTo(4);
+    }
+
+    @Test
+    void roundTripsSimilarities() throws IOException {
+        UserDictionary dictionary = new UserDictionary();
+        int alice = dictionary.intern("0xa", "alice");
+        int bob = dictionary.intern("0xb", "bob");
+        int carol = dictionary.intern("0xc", "carol");
+        SimilarityTable table = new SimilarityTable(dictionary, new int[] { alice, bob, alice }, new int[] { bob, carol, carol },
+                new double[] { 0.75, 0.5, 0.125 });
+
+        ByteBuffer in = written(out -> TableCodec.writeSimilarities(table, out));
+        SimilarityTable read = TableCodec.readSimilarities(in, new UserDictionary());
+
+        assertThat(in.getInt()).isEqualTo(0xCAFE);
+        assertThat(read.all()).containsExactlyElementsOf(table.all());
+        assertThat(read.byAddress("0xc")).containsExactlyElementsOf(table.byAddress("0xc"));
+    }
+
+    @Test
+    void roundTripsEmptyTable() throws IOException {
+        ScoreTable table = new ScoreTable(new UserDictionary(), new int[0], new double[0]);
+
+        ByteBuffer in = written(out -> TableCodec.writeScores(table, out));
+
+        assertThat(TableCodec.readScores(in, new UserDictionary()).size()).isZero();
+        assertThat(in.getInt()).isEqualTo(0xCAFE);
+    }
+}
@@ -0,0 +1,59 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDictionaryTest {
+
+    @Test
+    void internsAddressesOnce() {
+        UserDictionary dictionary = new UserDictionary();
+
+        int alice = dictionary.intern("0xa", "alice");
+        int bob = dictionary.intern("0xb", "bob");
+
+        assertThat(dictionary.intern("0xa", "alice")).isEqualTo(alice);
+        assertThat(bob).isNotEqualTo(alice);
+        assertThat(dictionary.size()).isEqualTo(2);
+        assertThat(dictionary.indexOfAddress("0xb")).isEqualTo(bob);
+        assertThat(dictionary.indexesOfName("alice")).containsExactly(alice);
+    }
+
+    @Test
+    void reusesEntriesOfUsersWithoutAddress() {
+        UserDictionary dictionary = new UserDictionary();
+
+        for (int recompute = 0; recompute < 3; recompute++) {
+            dictionary.intern(null, "alice");
+            dictionary.intern(null, null);
+        }
+
+        assertThat(dictionary.size()).isEqualTo(2);
+        assertThat(dictionary.indexesOfName("alice")).containsExactly(dictionary.intern(null, "alice"));
+    }
+
+    @Test
+    void renamesUsers() {
+        UserDictionary dictionary = new UserDictionary();
+        int alice = dictionary.intern("0xa", "alice");
+
+        assertThat(dictionary.intern("0xa", "alicia")).isEqualTo(alice);
+
+        assertThat(dictionary.name(alice)).isEqualTo("alicia");
+        assertThat(dictionary.indexesOfName("alicia")).containsExactly(alice);
+        assertThat(dictionary.indexesOfName("alice")).isEmpty();
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        UserDictionary dictionary = new UserDictionary();
+
+        for (int user = 0; user < 3000; user++) {
+            assertThat(dictionary.intern("0x" + user, "user" + user)).isEqualTo(user);
+        }
+
+        assertThat(dictionary.address(2999)).isEqualTo("0x2999");
+        assertThat(dictionary.name(1024)).isEqualTo("user1024");
+    }
+}
@@ -0,0 +1,93 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnalyticsCacheTest {
+
+    private final AnalyticsCache cache = new AnalyticsCache(new SimpleMeterRegistry(), 2);
+
+    @AfterEach
+    void shutdown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void computesOnceAndServesSnapshot() {
+        AtomicInteger loads = new AtomicInteger();
+        AnalyticsCache.Slot<Integer> slot = cache.register("count", loads::incrementAndGet);
+
+        assertThat(slot.get().value()).isEqualTo(1);
+        assertThat(slot.get().value()).isEqualTo(1);
+        assertThat(slot.refresh().join().value()).isEqualTo(2);
+        assertThat(slot.get().version()).isGreaterThan(0);
+    }
+
+    @Test
+    void completesExceptionallyOnError() {
+        AnalyticsCache.Slot<Integer> slot = cache.register("broken", () -> {
+            throw new StackOverflowError();
+        });
+
+        CompletableFuture<AnalyticsCache.Snapshot<Integer>> refresh = slot.refresh();
+
+        assertThatThrownBy(() -> refresh.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        assertThat(slot.isRefreshing()).isFalse();
+        assertThatThrownBy(slot::get).isInstanceOf(CompletionException.class);
+    }
+
+    @Test
+    void failingListenerDoesNotFailComputation() throws InterruptedException {
+        CountDownLatch notified = new CountDownLatch(1);
+        AnalyticsCache.Slot<String> slot = cache.register("listened", () -> "value");
+        slot.onComputed(snapshot -> {
+            throw new IllegalStateException("listener");
+        });
+        slot.onComputed(snapshot -> notified.countDown());
+
+        // listeners run after the future is completed
+        assertThat(slot.refresh().join().value()).isEqualTo("value");
+        assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void recomputeQueuesBehindRunningComputation() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AnalyticsCache.Slot<String> slot = cache.register("queued", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "loader";
+        });
+
+        CompletableFuture<AnalyticsCache.Snapshot<String>> running = slot.refresh();
+        started.await();
+        CompletableFuture<AnalyticsCache.Snapshot<String>> queued = slot.recompute(() -> "source");
+        release.countDown();
+
+        assertThat(running.join().value()).isEqualTo("loader");
+        assertThat(queued.join().value()).isEqualTo("source");
+        assertThat(slot.peek().value()).isEqualTo("source");
+    }
+
+    @Test
+    void namesRefreshThreadsDistinctly() {
+        AnalyticsCache.Slot<String> slot = cache.register("thread", () -> Thread.currentThread().getName());
+
+        assertThat(slot.refresh().join().value()).matches("analytics-refresh-\\d+");
+    }
+}
@@ -0,0 +1,94 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadsTest {
+
+    private final Bulkheads bulkheads = new Bulkheads(new MockEnvironment()
+            .withProperty("circles.bulkhead.test.concurrency", "1")
+            .withProperty("circles.bulkhead.test.queue", "1")
+            .withProperty("circles.bulkhead.test.timeout-ms", "200"), new SimpleMeterRegistry());
+
+    @AfterEach
+    void shutdown() {
+        bulkheads.shutdown();
+    }
+
+    @Test
+    void interruptsTasksPastTheirDeadlineAndFreesTheThread() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Integer> spinning = bulkheads.submit("test", () -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.onSpinWait();
+            }
+            interrupted.countDown();
+            return 0;
+        });
+
+        assertThatThrownBy(spinning::get).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bulkheads.submit("test", () -> 42).get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        assertThat(bulkheads.timeoutMs("test")).isEqualTo(200);
+    }
+
+    @Test
+    void reportsErrorsAsFailuresNotTimeouts() {
+        CompletableFuture<Object> failing = bulkheads.submit("test", () -> {
+            throw new StackOverflowError();
+        });
+
+        assertThatThrownBy(() -> failing.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StackOverflowError.class);
+    }
+
+    @Test
+    void rejectsWhenTheQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        bulkheads.submit("test", () -> await(release));
+        bulkheads.submit("test", () -> await(release));
+
+        assertThatThrownBy(() -> bulkheads.submit("test", () -> 1).join()).hasCauseInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+    }
+
+    @Test
+    void sharesSlotsBetweenPermitsAndTasks() throws Exception {
+        Bulkheads.Permit permit = bulkheads.tryAcquire("test");
+
+        assertThatThrownBy(() -> bulkheads.tryAcquire("test")).isInstanceOf(RejectedExecutionException.class);
+        CompletableFuture<Integer> waiting = bulkheads.submit("test", () -> 42);
+        Thread.sleep(50);
+        assertThat(waiting).isNotDone();
+
+        permit.close();
+        permit.close();
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        bulkheads.tryAcquire("test").close();
+        try (Bulkheads.Permit again = bulkheads.tryAcquire("test")) {
+            assertThatThrownBy(() -> bulkheads.tryAcquire("test")).isInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphChangedEvent;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.FlatUser;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LookupCacheTest {
+
+    private static final TrustGraph GRAPH = graph();
+
+    private final LookupCache cache = new LookupCache(new SimpleMeterRegistry(), true, 1000, 60_000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    // users 0xa..0xd named a..d, no edges needed for the name lookups of the invalidation
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(4, 0);
+        for (String user : List.of("a", "b", "c", "d")) {
+            builder.addNode(user.charAt(0), "0x" + user, user, null);
+        }
+        return builder.build();
+    }
+
+    private static List<User> path(String... addresses) {
+        return Arrays.stream(addresses).map(address -> {
+            User user = new User();
+            user.setAddress(address);
+            user.setName(address.substring(2));
+            return user;
+        }).toList();
+    }
+
+    private Supplier<List<User>> loader(List<User> path) {
+        return () -> {
+            loads.incrementAndGet();
+            return path;
+        };
+    }
+
+    private Supplier<Collection<FlatUser>> users() {
+        return () -> {
+            loads.incrementAndGet();
+            return List.of(new FlatUser());
+        };
+    }
+
+    private void changed(TrustEdgeChange... changes) {
+        cache.onTrustGraphChanged(new TrustGraphChangedEvent(GRAPH, GRAPH, List.of(changes)));
+    }
+
+    @Test
+    void removalDropsOnlyPathsThroughTouchedUsers() {
+        cache.path(true, "a", "c", loader(path("0xa", "0xb", "0xc")));
+        cache.path(true, "a", "d", loader(path("0xa", "0xd")));
+
+        changed(TrustEdgeChange.remove("0xc", "0xb"));
+        cache.path(true, "a", "c", loader(path("0xa", "0xc")));
+        cache.path(true, "a", "d", loader(path("0xa", "0xd")));
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void addedTrustClearsAllPaths() {
+        cache.path(true, "a", "d", loader(path("0xa", "0xd")));
+
+        changed(TrustEdgeChange.upsert("0xb", "0xc", 10));
+        cache.path(true, "a", "d", loader(path("0xa", "0xd")));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void initialLoadClearsPathsOfTheFallback() {
+        cache.path(true, "a", "d", loader(path("0xa", "0xd")));
+
+        cache.onTrustGraphChanged(new TrustGraphChangedEvent(null, GRAPH, List.of()));
+        cache.path(true, "a", "d", loader(path("0xa", "0xd")));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void doesNotKeepPathComputedDuringRemoval() {
+        // the removal is handled while the path is computed, before the path is registered by its users
+        cache.path(true, "a", "c", () -> {
+            loads.incrementAndGet();
+            changed(TrustEdgeChange.remove("0xc", "0xb"));
+            return path("0xa", "0xb", "0xc");
+        });
+        cache.path(true, "a", "c", loader(path("0xa", "0xc")));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidatesTrustersAndTrusteesOfChangedEdge() {
+        cache.trusters("b", users());
+        cache.trustees("c", users());
+        cache.trusters("d", users());
+
+        changed(TrustEdgeChange.upsert("0xc", "0xb", 10));
+        cache.trusters("b", users());
+        cache.trustees("c", users());
+        cache.trusters("d", users());
+
+        assertThat(loads).hasValue(5);
+    }
+
+    @Test
+    void expiresTrustersAfterWrite() throws InterruptedException {
+        LookupCache expiring = new LookupCache(new SimpleMeterRegistry(), true, 1000, 1);
+        expiring.trusters("b", users());
+        Thread.sleep(20);
+        expiring.trusters("b", users());
+
+        assertThat(loads).hasValue(2);
+    }
+}
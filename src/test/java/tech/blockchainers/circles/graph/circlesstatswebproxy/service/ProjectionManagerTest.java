@@ -0,0 +1,82 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.neo4j.core.Neo4jClient;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProjectionManagerTest {
+
+    private static final String DROP = "CALL gds.graph.drop";
+
+    private final Neo4jClient neo4jClient = mock(Neo4jClient.class, RETURNS_DEEP_STUBS);
+
+    @Test
+    void dropsOnlyOwnStaleProjectionsOnStartup() {
+        when(neo4jClient.query(startsWith("CALL gds.graph.list")).bind(any()).to(anyString()).fetchAs(String.class).mappedBy(any()).all())
+                .thenReturn(List.of("circles-a-1", "circles-a-2", "circles-a_b-3", "circles-a-x", "circles-4"));
+        ProjectionManager projectionManager = new ProjectionManager(neo4jClient, "a", true);
+
+        projectionManager.dropStaleProjections();
+
+        verify(neo4jClient, times(2)).query(startsWith(DROP));
+        assertThat(projectionManager.nextName()).matches("circles-a-\\d+");
+    }
+
+    @Test
+    void usesSanitizedInstanceIdOrHostName() {
+        assertThat(new ProjectionManager(neo4jClient, "proxy-1.eu", false).nextName()).matches("circles-proxy_1_eu-\\d+");
+        assertThat(new ProjectionManager(neo4jClient, "", false).nextName()).matches("circles-[A-Za-z0-9_]+-\\d+");
+    }
+
+    @Test
+    void keepsProjectionsWhenDisabled() {
+        new ProjectionManager(neo4jClient, "a", false).dropStaleProjections();
+
+        verify(neo4jClient, never()).query(anyString());
+    }
+
+    @Test
+    void dropsReplacedProjectionOnlyAfterItsComputations() throws Exception {
+        ProjectionManager projectionManager = new ProjectionManager(neo4jClient, "a", false);
+        projectionManager.switchTo("circles-1");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> computation = CompletableFuture.supplyAsync(() -> projectionManager.withCurrent(name -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return name;
+        }));
+        started.await();
+
+        CompletableFuture<Void> replaced = CompletableFuture.runAsync(() -> projectionManager.replace("circles-2"));
+        Thread.sleep(100);
+        verify(neo4jClient, never()).query(startsWith(DROP));
+        assertThat(replaced).isNotDone();
+
+        release.countDown();
+        assertThat(computation.get(5, TimeUnit.SECONDS)).isEqualTo("circles-1");
+        replaced.get(5, TimeUnit.SECONDS);
+        verify(neo4jClient, timeout(5000)).query(startsWith(DROP));
+        assertThat(projectionManager.currentName()).isEqualTo("circles-2");
+    }
+}
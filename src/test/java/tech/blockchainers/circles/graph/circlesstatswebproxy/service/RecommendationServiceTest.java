@@ -0,0 +1,97 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.RecommendationIndex;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraphChangedEvent;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecommendationServiceTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+    private final TrustGraphService trustGraphService = mock(TrustGraphService.class);
+    private final RecommendationService service = new RecommendationService(trustGraphService, pool, 100);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // b trusts a and c: c is recommended to a and a to c
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(3, 2);
+        builder.addNode(1, "0xa", "a", null);
+        builder.addNode(2, "0xb", "b", null);
+        builder.addNode(3, "0xc", "c", null);
+        builder.addEdge(1, 0, 50);
+        builder.addEdge(1, 2, 50);
+        return builder.build();
+    }
+
+    private void current(TrustGraph graph) {
+        when(trustGraphService.current()).thenReturn(Optional.of(graph));
+        when(trustGraphService.require()).thenReturn(graph);
+    }
+
+    private RecommendationIndex awaitIndex(TrustGraph graph) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<RecommendationIndex> index = service.current();
+            if (index.isPresent()) {
+                assertThat(index.get().graph()).isSameAs(graph);
+                return index.get();
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Recommendation index was not built");
+    }
+
+    @Test
+    void buildsIndexOnFirstRead() throws InterruptedException {
+        TrustGraph graph = graph();
+        current(graph);
+
+        assertThat(service.current()).isEmpty();
+        RecommendationIndex index = awaitIndex(graph);
+
+        assertThat(index.candidates(graph.indexOfAddress("0xa"))).containsExactly(graph.indexOfAddress("0xc"));
+    }
+
+    @Test
+    void updatesIndexForAppliedChanges() throws InterruptedException {
+        TrustGraph graph = graph();
+        current(graph);
+        awaitIndex(graph);
+
+        TrustGraph changed = graph.withChanges(List.of(TrustEdgeChange.remove("0xb", "0xc")));
+        current(changed);
+        service.onTrustGraphChanged(new TrustGraphChangedEvent(graph, changed, List.of(TrustEdgeChange.remove("0xb", "0xc"))));
+
+        assertThat(awaitIndex(changed).candidates(changed.indexOfAddress("0xa"))).isEmpty();
+    }
+
+    @Test
+    void rebuildsIndexLeftBehindByTheGraph() throws InterruptedException {
+        TrustGraph graph = graph();
+        current(graph);
+        awaitIndex(graph);
+
+        // no event arrives, e.g. because the update failed
+        TrustGraph changed = graph.withChanges(List.of(TrustEdgeChange.upsert("0xa", "0xc", 10)));
+        current(changed);
+
+        assertThat(service.current()).isEmpty();
+        RecommendationIndex index = awaitIndex(changed);
+        assertThat(index.candidates(changed.indexOfAddress("0xa"))).isEmpty();
+        assertThat(index.candidates(changed.indexOfAddress("0xc"))).containsExactly(changed.indexOfAddress("0xa"));
+    }
+}
@@ -0,0 +1,81 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.ScoreTable;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.UserDictionary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotStoreTest {
+
+    private static final Instant COMPUTED_AT = Instant.ofEpochMilli(1_650_000_000_000L);
+
+    @TempDir
+    Path directory;
+
+    private static ScoreTable scores() {
+        UserDictionary dictionary = new UserDictionary();
+        int alice = dictionary.intern("0xa", "alice");
+        int bob = dictionary.intern("0xb", "bob");
+        return new ScoreTable(dictionary, new int[] { alice, bob }, new double[] { 2.0, 1.0 });
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void loadsWhatWasSaved() {
+        SnapshotStore store = new SnapshotStore(directory.toString());
+        ScoreTable table = scores();
+        store.saveScores("pagerank", "native damping 0.85", "graph 1", COMPUTED_AT, table);
+
+        Optional<SnapshotStore.Stored<ScoreTable>> stored = store.loadScores("pagerank", "native damping 0.85", new UserDictionary());
+
+        assertThat(stored).isPresent();
+        assertThat(stored.get().tag()).isEqualTo("graph 1");
+        assertThat(stored.get().computedAt()).isEqualTo(COMPUTED_AT);
+        assertThat(stored.get().value().all()).containsExactlyElementsOf(table.all());
+    }
+
+    @Test
+    void ignoresSnapshotOfOtherConfiguration() {
+        SnapshotStore store = new SnapshotStore(directory.toString());
+        store.saveScores("pagerank", "gds", "projection circles-1", COMPUTED_AT, scores());
+
+        assertThat(store.loadScores("pagerank", "native damping 0.85", new UserDictionary())).isEmpty();
+        assertThat(store.loadSimilarities("pagerank", "gds", new UserDictionary())).isEmpty();
+        assertThat(store.loadScores("betweenness", "gds", new UserDictionary())).isEmpty();
+    }
+
+    @Test
+    void deletesTemporaryFileWhenSaveFails() throws IOException {
+        // a non-empty directory in place of the snapshot file makes the final move fail
+        Files.createDirectories(directory.resolve("pagerank.snap"));
+        Files.writeString(directory.resolve("pagerank.snap").resolve("keep"), "x");
+        SnapshotStore store = new SnapshotStore(directory.toString());
+
+        store.saveScores("pagerank", "gds", "projection circles-1", COMPUTED_AT, scores());
+
+        assertThat(files()).isEqualTo(1);
+    }
+
+    @Test
+    void isDisabledWithoutDirectory() {
+        SnapshotStore store = new SnapshotStore("");
+        store.saveScores("pagerank", "gds", "projection circles-1", COMPUTED_AT, scores());
+
+        assertThat(store.isEnabled()).isFalse();
+        assertThat(store.loadScores("pagerank", "gds", new UserDictionary())).isEmpty();
+    }
+}
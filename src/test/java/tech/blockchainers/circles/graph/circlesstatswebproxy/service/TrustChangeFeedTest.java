@@ -0,0 +1,176 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TrustChangeFeedTest {
+
+    @TempDir
+    Path dir;
+
+    private TrustGraphService trustGraphService;
+    private TrustGraphLoader loader;
+    private Neo4jClient neo4jClient;
+
+    @BeforeEach
+    void setup() {
+        trustGraphService = mock(TrustGraphService.class);
+        loader = mock(TrustGraphLoader.class);
+        neo4jClient = mock(Neo4jClient.class, RETURNS_DEEP_STUBS);
+        TrustGraph graph = TrustGraph.builder(0, 0).build();
+        when(trustGraphService.current()).thenReturn(Optional.of(graph));
+        when(trustGraphService.apply(anyList())).thenReturn(graph);
+    }
+
+    private TrustChangeFeed feed(String source, Path logFile, int batchSize) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new TrustChangeFeed(neo4jClient, new QueryMetrics(registry), trustGraphService, loader, new ObjectMapper(), registry,
+                source, logFile.toString(), batchSize);
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void readsAPartialLastLineAgainOnceItIsComplete() throws IOException {
+        Path log = dir.resolve("changes.ndjson");
+        append(log, "{\"truster\":\"0xa\",\"trustee\":\"0xb\",\"amount\":50,\"removed\":false}\n{\"truster\":\"0xb\",");
+        TrustChangeFeed feed = feed("log", log, 1000);
+
+        feed.poll();
+        append(log, "\"trustee\":\"0xa\",\"amount\":0,\"removed\":true}\n");
+        feed.poll();
+        feed.poll();
+
+        var order = inOrder(trustGraphService);
+        order.verify(trustGraphService).apply(List.of(TrustEdgeChange.upsert("0xa", "0xb", 50)));
+        order.verify(trustGraphService).apply(List.of(TrustEdgeChange.remove("0xb", "0xa")));
+        verify(trustGraphService, times(2)).apply(anyList());
+        assertThat(feed.stats()).containsEntry("applied", 2L).containsEntry("marker", Files.size(log));
+    }
+
+    @Test
+    void skipsInvalidLinesAndReadsATruncatedFileFromTheStart() throws IOException {
+        Path log = dir.resolve("changes.ndjson");
+        append(log, "not json\n{\"truster\":\"0xa\",\"trustee\":\"0xb\",\"amount\":50,\"removed\":false}\n");
+        TrustChangeFeed feed = feed("log", log, 1000);
+
+        feed.poll();
+        Files.writeString(log, "{\"truster\":\"0xc\",\"trustee\":\"0xd\",\"amount\":5,\"removed\":false}\n", StandardCharsets.UTF_8);
+        feed.poll();
+
+        var order = inOrder(trustGraphService);
+        order.verify(trustGraphService).apply(List.of(TrustEdgeChange.upsert("0xa", "0xb", 50)));
+        order.verify(trustGraphService).apply(List.of(TrustEdgeChange.upsert("0xc", "0xd", 5)));
+    }
+
+    @Test
+    void skipsChangesWithoutAddressInsteadOfFailingTheBatch() throws IOException {
+        Path log = dir.resolve("changes.ndjson");
+        append(log, "{\"truster\":null,\"trustee\":\"0xb\",\"amount\":50,\"removed\":false}\n"
+                + "{\"trustee\":\"0xb\",\"amount\":50}\n"
+                + "null\n"
+                + "{\"truster\":\"0xa\",\"trustee\":\"0xb\",\"amount\":50,\"removed\":false}\n");
+        TrustChangeFeed feed = feed("log", log, 1000);
+
+        feed.poll();
+        feed.poll();
+
+        verify(trustGraphService).apply(List.of(TrustEdgeChange.upsert("0xa", "0xb", 50)));
+        assertThat(feed.stats()).containsEntry("applied", 1L).containsEntry("marker", Files.size(log));
+    }
+
+    @Test
+    void skipsNeo4jRowsWithoutAddressAndMovesPastTheirBlock() {
+        when(loader.loads()).thenReturn(1L);
+        when(loader.blockNumber()).thenReturn(6L);
+        Map<String, Object> withoutAddress = new HashMap<>(row("0xa", "0xb", 8));
+        withoutAddress.put("trustee", null);
+        when(neo4jClient.query(argThat((String query) -> (query != null) && query.contains("LIMIT"))).bind(any()).to("since").bind(any()).to("limit").fetch().all())
+                .thenReturn(List.of(row("0xa", "0xb", 7), withoutAddress), List.of());
+        TrustChangeFeed feed = feed("neo4j", dir.resolve("unused"), 1000);
+
+        feed.poll();
+        feed.poll();
+
+        verify(trustGraphService).apply(List.of(TrustEdgeChange.upsert("0xa", "0xb", 50)));
+        assertThat(feed.stats()).containsEntry("marker", 8L).containsEntry("applied", 1L);
+    }
+
+    @Test
+    void keepsTheOffsetWhenApplyingFails() throws IOException {
+        Path log = dir.resolve("changes.ndjson");
+        append(log, "{\"truster\":\"0xa\",\"trustee\":\"0xb\",\"amount\":50,\"removed\":false}\n"
+                + "{\"truster\":\"0xb\",\"trustee\":\"0xa\",\"amount\":50,\"removed\":false}\n");
+        when(trustGraphService.apply(anyList())).thenThrow(new IllegalStateException("Trust graph is not loaded"))
+                .thenReturn(TrustGraph.builder(0, 0).build());
+        TrustChangeFeed feed = feed("log", log, 1000);
+
+        feed.poll();
+        feed.poll();
+
+        verify(trustGraphService, times(2)).apply(List.of(TrustEdgeChange.upsert("0xa", "0xb", 50), TrustEdgeChange.upsert("0xb", "0xa", 50)));
+        assertThat(feed.stats()).containsEntry("applied", 2L);
+    }
+
+    @Test
+    void readsBlocksLargerThanABatchAsAWhole() {
+        when(loader.loads()).thenReturn(1L);
+        when(loader.blockNumber()).thenReturn(6L);
+        when(neo4jClient.query(argThat((String query) -> (query != null) && query.contains("LIMIT"))).bind(any()).to("since").bind(any()).to("limit").fetch().all())
+                .thenReturn(List.of(row("0xa", "0xb", 7), row("0xa", "0xc", 7)), List.of());
+        when(neo4jClient.query(argThat((String query) -> (query != null) && query.contains("= $block"))).bind(any()).to("block").fetch().all())
+                .thenReturn(List.of(row("0xa", "0xb", 7), row("0xa", "0xc", 7), row("0xb", "0xc", 7)));
+        TrustChangeFeed feed = feed("neo4j", dir.resolve("unused"), 2);
+
+        feed.poll();
+
+        verify(trustGraphService).apply(List.of(TrustEdgeChange.upsert("0xa", "0xb", 50), TrustEdgeChange.upsert("0xa", "0xc", 50),
+                TrustEdgeChange.upsert("0xb", "0xc", 50)));
+        assertThat(feed.stats()).containsEntry("marker", 7L).containsEntry("applied", 3L);
+    }
+
+    @Test
+    void doesNothingWithoutSourceOrGraph() throws IOException {
+        Path log = dir.resolve("changes.ndjson");
+        append(log, "{\"truster\":\"0xa\",\"trustee\":\"0xb\",\"amount\":50,\"removed\":false}\n");
+        feed("none", log, 1000).poll();
+        when(trustGraphService.current()).thenReturn(Optional.empty());
+        feed("log", log, 1000).poll();
+
+        verify(trustGraphService, never()).apply(anyList());
+    }
+
+    private static Map<String, Object> row(String truster, String trustee, long blockNumber) {
+        return Map.of("truster", truster, "trustee", trustee, "amount", 50L, "blockNumber", blockNumber);
+    }
+}
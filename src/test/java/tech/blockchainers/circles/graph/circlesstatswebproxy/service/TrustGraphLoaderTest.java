@@ -0,0 +1,156 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.QueryRunner;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrustGraphLoaderTest {
+
+    // users with gaps in their ids, keyed by id: name
+    private final TreeMap<Long, String> users = new TreeMap<>();
+    private final List<long[]> trusts = new ArrayList<>();
+    private final List<Long> lastIds = new CopyOnWriteArrayList<>();
+    private Neo4jClient neo4jClient;
+    private TrustGraphLoader loader;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        for (long id : new long[] { 3, 4, 10, 11, 12, 40, 41 }) {
+            users.put(id, "u" + id);
+        }
+        trust(3, 4, 50);
+        trust(4, 41, 20);
+        trust(41, 3, 10);
+        trust(12, 10, 5);
+        trust(10, 12, 5);
+        // the trustee was created after its page was read
+        trust(40, 99, 30);
+        neo4jClient = mock(Neo4jClient.class, RETURNS_DEEP_STUBS);
+        when(neo4jClient.query(anyString()).fetchAs(Long.class).mappedBy(any()).one()).thenReturn(Optional.of(1234L));
+        QueryRunner runner = mock(QueryRunner.class);
+        when(runner.run(anyString(), any(Value.class))).thenAnswer(invocation -> result(invocation.getArgument(0), invocation.getArgument(1)));
+        when(neo4jClient.delegateTo(any())).thenAnswer(invocation -> {
+            Function<QueryRunner, Optional<Object>> callback = invocation.getArgument(0);
+            Neo4jClient.OngoingDelegation<Object> delegation = mock(Neo4jClient.OngoingDelegation.class);
+            when(delegation.run()).thenAnswer(run -> callback.apply(runner));
+            return delegation;
+        });
+        loader = new TrustGraphLoader(neo4jClient, new QueryMetrics(new SimpleMeterRegistry()), 3, 2);
+    }
+
+    @AfterEach
+    void shutdown() {
+        loader.shutdown();
+    }
+
+    private void trust(long truster, long trustee, double amount) {
+        trusts.add(new long[] { truster, trustee, (long) amount });
+    }
+
+    // answers the users and trusts page queries from the maps above
+    private Result result(String query, Value parameters) {
+        List<Record> records = new ArrayList<>();
+        if (query.contains("$last")) {
+            long last = parameters.get("last").asLong();
+            lastIds.add(last);
+            users.tailMap(last, false).entrySet().stream().limit(parameters.get("limit").asLong()).forEach(user ->
+                    records.add(new InternalRecord(List.of("id", "address", "name", "imageUrl"), new Value[] {
+                            Values.value(user.getKey()), Values.value("0x" + user.getKey()), Values.value(user.getValue()), Values.NULL })));
+        } else {
+            Set<Long> ids = new HashSet<>(parameters.get("ids").asList(Value::asLong));
+            for (long[] trust : trusts) {
+                if (ids.contains(trust[0])) {
+                    records.add(new InternalRecord(List.of("src", "dst", "amount"),
+                            new Value[] { Values.value(trust[0]), Values.value(trust[1]), Values.value((double) trust[2]) }));
+                }
+            }
+        }
+        Result result = mock(Result.class);
+        when(result.list()).thenReturn(records);
+        return result;
+    }
+
+    private static List<String> edges(TrustGraph graph) {
+        List<String> edges = new ArrayList<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int k = 0; k < graph.outDegree(node); k++) {
+                edges.add(graph.name(node) + "->" + graph.name(graph.outTarget(node, k)) + ":" + graph.outAmount(node, k));
+            }
+        }
+        return edges;
+    }
+
+    @Test
+    void pagesUsersAfterTheLastIdOfThePreviousPage() {
+        TrustGraph graph = loader.load();
+
+        assertThat(lastIds).containsExactly(-1L, 10L, 40L);
+        assertThat(graph.nodeCount()).isEqualTo(7);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            assertThat(graph.name(node)).isEqualTo("u" + graph.nodeId(node));
+        }
+        assertThat(graph.indexOfAddress("0x41")).isEqualTo(6);
+        assertThat(loader.lastLoad()).containsEntry("users", 7).containsEntry("pages", 3).containsEntry("blockNumber", 1234L);
+        assertThat(loader.blockNumber()).isEqualTo(1234L);
+        assertThat(loader.loads()).isEqualTo(1);
+    }
+
+    @Test
+    void resolvesTrustsAcrossPagesAndDropsUnknownUsers() {
+        TrustGraph graph = loader.load();
+
+        assertThat(edges(graph)).containsExactlyInAnyOrder("u3->u4:50.0", "u4->u41:20.0", "u41->u3:10.0", "u12->u10:5.0", "u10->u12:5.0");
+        assertThat(graph.edgeCount()).isEqualTo(5);
+    }
+
+    @Test
+    void stopsAtAPageShorterThanThePageSize() {
+        users.remove(41L);
+        users.remove(40L);
+        users.remove(12L);
+
+        TrustGraph graph = loader.load();
+
+        // 3, 4, 10 fill the first page and 11 the second one
+        assertThat(lastIds).containsExactly(-1L, 10L);
+        assertThat(graph.nodeCount()).isEqualTo(4);
+        assertThat(edges(graph)).containsExactly("u3->u4:50.0");
+    }
+
+    @Test
+    void loadsAnEmptyGraph() {
+        users.clear();
+
+        TrustGraph graph = loader.load();
+
+        assertThat(lastIds).containsExactly(-1L);
+        assertThat(graph.nodeCount()).isZero();
+        assertThat(graph.edgeCount()).isZero();
+    }
+}
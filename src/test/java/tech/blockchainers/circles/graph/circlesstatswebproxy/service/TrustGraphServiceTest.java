@@ -0,0 +1,64 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustEdgeChange;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrustGraphServiceTest {
+
+    private TrustGraphService service;
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    private static TrustGraph graph() {
+        TrustGraph.Builder builder = TrustGraph.builder(3, 2);
+        builder.addNode(1, "0xa", "a", null);
+        builder.addNode(2, "0xb", "b", null);
+        builder.addNode(3, "0xc", "c", null);
+        builder.addEdge(0, 1, 50);
+        builder.addEdge(1, 2, 50);
+        return builder.build();
+    }
+
+    @Test
+    void compactsTheOverlayWithoutLosingChanges() throws InterruptedException {
+        TrustGraphLoader loader = mock(TrustGraphLoader.class);
+        when(loader.load()).thenReturn(graph());
+        service = new TrustGraphService(loader, mock(ApplicationEventPublisher.class), new SimpleMeterRegistry(), 4);
+        service.reload();
+
+        for (int i = 0; i < 20; i++) {
+            service.apply(List.of(TrustEdgeChange.upsert("0xn" + i, "0xa", i + 1), TrustEdgeChange.remove("0xa", "0xb"),
+                    TrustEdgeChange.upsert("0xa", "0xb", i)));
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((service.current().orElseThrow().overlaySize() >= 4) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+
+        TrustGraph current = service.current().orElseThrow();
+        assertThat(current.overlaySize()).isLessThan(4);
+        assertThat(current.nodeCount()).isEqualTo(23);
+        assertThat(current.edgeCount()).isEqualTo(22);
+        int a = current.indexOfAddress("0xa");
+        assertThat(current.inDegree(a)).isEqualTo(20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(current.inSource(a, i)).isEqualTo(current.indexOfAddress("0xn" + i));
+            assertThat(current.inAmount(a, i)).isEqualTo(i + 1);
+        }
+        assertThat(current.outDegree(a)).isEqualTo(1);
+        assertThat(current.outAmount(a, 0)).isEqualTo(19);
+    }
+}
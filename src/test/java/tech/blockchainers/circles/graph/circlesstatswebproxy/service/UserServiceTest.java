@@ -0,0 +1,97 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.server.ResponseStatusException;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.graph.TrustGraph;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.model.PathRequest;
+import tech.blockchainers.circles.graph.circlesstatswebproxy.repository.UserRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Bulkheads bulkheads = new Bulkheads(new MockEnvironment(), registry);
+    private final TrustGraphService trustGraphService = mock(TrustGraphService.class);
+    private UserService userService;
+
+    @BeforeEach
+    void setup() {
+        // every user trusts every other user: many simple paths of every length
+        TrustGraph.Builder builder = TrustGraph.builder(8, 56);
+        for (int node = 0; node < 8; node++) {
+            builder.addNode(node, "0x" + node, "u" + node, null);
+        }
+        for (int source = 0; source < 8; source++) {
+            for (int target = 0; target < 8; target++) {
+                if (source != target) {
+                    builder.addEdge(source, target, 10);
+                }
+            }
+        }
+        TrustGraph graph = builder.build();
+        when(trustGraphService.current()).thenReturn(Optional.of(graph));
+        when(trustGraphService.require()).thenReturn(graph);
+        userService = new UserService(mock(UserRepository.class), mock(Neo4jClient.class), trustGraphService, mock(RecommendationService.class),
+                new LookupCache(registry, false, 100, 1000), new QueryMetrics(registry), pool, bulkheads, 3, 1000, 5);
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+        bulkheads.shutdown();
+    }
+
+    @Test
+    void capsClientLimitsForAllPaths() {
+        List<List<Map<String, String>>> paths = userService.calcAllPathNames("u0", "u7", 1_000_000, 50, Long.MAX_VALUE);
+
+        assertThat(paths).hasSize(5);
+        assertThat(paths).allSatisfy(path -> assertThat(path.size()).isLessThanOrEqualTo(4));
+        assertThat(userService.calcAllPathAddrs("0x0", "0x7", 2, 1, 1000)).containsExactly(List.of(Map.of("0x0", "u0"), Map.of("0x7", "u7")));
+        assertThat(userService.calcAllPathAddrs("0x0", "0x7", 0, 4, 1000)).isEmpty();
+    }
+
+    @Test
+    void answersBatchPathsInRequestOrder() {
+        List<PathRequest> pairs = List.of(new PathRequest("u0", "u7"), new PathRequest("u1", "u1"), new PathRequest("u0", "u3"),
+                new PathRequest("u0", "nobody"));
+
+        assertThat(userService.calcBatchPathNames(pairs)).containsExactly(List.of("u0", "u7"), List.of("u1"), List.of("u0", "u3"), List.of());
+    }
+
+    @Test
+    void stopsBatchPathsAtThePathsDeadline() {
+        Bulkheads expired = new Bulkheads(new MockEnvironment().withProperty("circles.bulkhead.paths.timeout-ms", "0"), registry);
+        UserService service = new UserService(mock(UserRepository.class), mock(Neo4jClient.class), trustGraphService, mock(RecommendationService.class),
+                new LookupCache(registry, false, 100, 1000), new QueryMetrics(registry), pool, expired, 3, 1000, 5);
+
+        assertThatThrownBy(() -> service.calcBatchPathNames(List.of(new PathRequest("u0", "u7"), new PathRequest("u1", "u2"))))
+                .isInstanceOf(CancellationException.class);
+        expired.shutdown();
+    }
+
+    @Test
+    void rejectsMaxFlowForUnknownUsers() {
+        assertThat(userService.calcMaxFlowAddrs("0x0", "0x7", 0, 2, 1000)).containsEntry("value", 70.0).containsEntry("complete", true);
+        assertThatThrownBy(() -> userService.calcMaxFlowAddrs("0x0", "0x8", 0, 2, 1000))
+                .isInstanceOfSatisfying(ResponseStatusException.class, ex -> assertThat(ex.getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+        assertThatThrownBy(() -> userService.calcMaxFlowNames("nobody", "u7", 0, 2, 1000)).isInstanceOf(ResponseStatusException.class);
+    }
+}
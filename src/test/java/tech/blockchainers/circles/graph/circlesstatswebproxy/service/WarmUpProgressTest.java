@@ -0,0 +1,89 @@
+package tech.blockchainers.circles.graph.circlesstatswebproxy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WarmUpProgressTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final WarmUpProgress progress = new WarmUpProgress();
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Runnable record(String name) {
+        return () -> ran.add(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stage(int index) {
+        return ((List<Map<String, Object>>) progress.toMap().get("stages")).get(index);
+    }
+
+    @Test
+    void runsStagesOnlyAfterTheirPrerequisite() {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        progress.start();
+        CompletableFuture<Void> graph = progress.stage("graph", ready, executor, record("graph"));
+        CompletableFuture<Void> pagerank = progress.stage("pagerank", graph, executor, record("pagerank"));
+        CompletableFuture<Void> betweenness = progress.stage("betweenness", graph, executor, record("betweenness"));
+
+        assertThat(progress.state()).isEqualTo(WarmUpProgress.State.RUNNING);
+        assertThat(stage(1)).containsEntry("state", WarmUpProgress.State.PENDING);
+        assertThat(ran).isEmpty();
+
+        ready.complete(null);
+        CompletableFuture.allOf(pagerank, betweenness).join();
+        progress.complete();
+
+        assertThat(ran).hasSize(3).startsWith("graph").contains("pagerank", "betweenness");
+        assertThat(progress.state()).isEqualTo(WarmUpProgress.State.DONE);
+        assertThat(progress.toMap()).containsEntry("completed", 3L).containsEntry("total", 3);
+        assertThat(stage(2)).containsEntry("name", "betweenness").containsEntry("state", WarmUpProgress.State.DONE);
+    }
+
+    @Test
+    void isolatesFailedStagesFromTheOthers() {
+        progress.start();
+        CompletableFuture<Void> graph = progress.stage("graph", CompletableFuture.completedFuture(null), executor, () -> {
+            throw new IllegalStateException("Trust graph is not loaded");
+        });
+        CompletableFuture<Void> pagerank = progress.stage("pagerank", graph, executor, record("pagerank"));
+        CompletableFuture<Void> failed = progress.stage("similarity", graph, executor, () -> {
+            throw new RuntimeException(new IllegalArgumentException("no projection"));
+        });
+        CompletableFuture<Void> betweenness = progress.stage("betweenness", CompletableFuture.failedFuture(new IllegalStateException()),
+                executor, record("betweenness"));
+
+        CompletableFuture.allOf(graph, pagerank, failed, betweenness).join();
+
+        assertThat(graph).isCompleted().isNotCompletedExceptionally();
+        assertThat(failed).isNotCompletedExceptionally();
+        assertThat(ran).containsExactlyInAnyOrder("pagerank", "betweenness");
+        assertThat(stage(0)).containsEntry("state", WarmUpProgress.State.FAILED)
+                .containsEntry("error", "java.lang.IllegalStateException: Trust graph is not loaded");
+        assertThat(stage(1)).containsEntry("state", WarmUpProgress.State.DONE);
+        assertThat(stage(2)).containsEntry("state", WarmUpProgress.State.FAILED)
+                .containsEntry("error", "java.lang.IllegalArgumentException: no projection");
+        assertThat(stage(3)).containsEntry("state", WarmUpProgress.State.DONE);
+        assertThat(progress.toMap()).containsEntry("completed", 4L);
+    }
+
+    @Test
+    void isPendingUntilStarted() {
+        assertThat(progress.state()).isEqualTo(WarmUpProgress.State.PENDING);
+        assertThat(progress.toMap()).containsEntry("durationMs", null).containsEntry("total", 0);
+    }
+}